@@ -0,0 +1,207 @@
+package typinggame;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks for the game's hot paths.
+ *
+ * 用法：
+ *   java -Djava.awt.headless=true -cp "bin:lib/*" typinggame.GameBenchmarks [--json out.json]
+ *        [--sizes 1000,10000,100000] [--only engine|words|dictionary|leaderboard]
+ *
+ * 排行榜預設量測到 10^5 筆；10^6、10^7 需要較大的 heap (-Xmx4g 以上)，用 --sizes 指定。
+ */
+public final class GameBenchmarks {
+
+    private static final int[] OBSTACLE_COUNTS = {1, 10, 100, 1000, 10000};
+    private static final int[] DIFFICULTY_LEVELS = {0, 2, 4, 6, 8, 10};
+    private static final int[] DEFAULT_SIZES = {1_000, 10_000, 100_000};
+
+    private GameBenchmarks() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String jsonOut = null;
+        String only = null;
+        int[] sizes = DEFAULT_SIZES;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--json": jsonOut = args[++i]; break;
+                case "--only": only = args[++i]; break;
+                case "--sizes": sizes = parseSizes(args[++i]); break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        MicroBench bench = new MicroBench(5, 10);
+        if (only == null || only.equals("engine")) {
+            engineUpdate(bench);
+        }
+        if (only == null || only.equals("words")) {
+            wordNext(bench);
+        }
+        if (only == null || only.equals("dictionary")) {
+            dictionaryLoad(bench);
+        }
+        if (only == null || only.equals("leaderboard")) {
+            leaderboard(bench, sizes);
+        }
+
+        String json = bench.toJson();
+        if (jsonOut != null) {
+            Files.write(Paths.get(jsonOut), json.getBytes(StandardCharsets.UTF_8));
+            System.err.println("Results written to " + jsonOut);
+        } else {
+            System.out.print(json);
+        }
+    }
+
+    /** GameEngine.update()：畫面上同時有 N 個障礙物。 */
+    private static void engineUpdate(MicroBench bench) throws Exception {
+        GameEngine engine = new GameEngine("bench", new MemoryLeaderboard(), new ManualClock());
+        engine.setSpawning(false); // 只量測手動放入的 N 個障礙物，不讓自然生成的障礙物撞到玩家
+        for (int count : OBSTACLE_COUNTS) {
+            bench.run("GameBenchmarks.engineUpdate", params("obstacles", count), 2_000, () -> {
+                engine.startGame();
+                // 放在畫面右側很遠處：一個 iteration 內不會撞到玩家，也不會離開畫面
+                for (int i = 0; i < count; i++) {
+                    engine.addObstacle(20_000 + i * 50.0, "bench");
+                }
+                return i -> {
+                    engine.update();
+                    return engine.getObstacleCount();
+                };
+            });
+        }
+    }
+
+    /** WordGenerator.next(int)：每個難度等級。 */
+    private static void wordNext(MicroBench bench) throws Exception {
+        WordGenerator generator = new WordGenerator();
+        for (int level : DIFFICULTY_LEVELS) {
+            bench.run("GameBenchmarks.wordNext", params("difficulty", level), 100_000,
+                    () -> i -> generator.next(level).length());
+        }
+    }
+
+    /** 字典串流解析（從記憶體中的 bytes，排除磁碟 I/O），以及從二進位快取 map 回來。 */
+    private static void dictionaryLoad(MicroBench bench) throws Exception {
+        byte[] json = readDictionaryBytes();
+        bench.run("GameBenchmarks.dictionaryLoad", params("bytes", json.length), 20, () -> i -> {
+            Reader reader = new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8);
+            return DictionaryLoader.parse(reader).size();
+        });
+
+        WordIndex parsed = DictionaryLoader.parse(
+                new InputStreamReader(new ByteArrayInputStream(json), StandardCharsets.UTF_8));
+        Path cache = Files.createTempFile("bench-dictionary-", ".bin");
+        try {
+            DictionaryLoader.writeCache(cache, 1L, parsed);
+            bench.run("GameBenchmarks.dictionaryCacheMap", params("bytes", Files.size(cache)), 20,
+                    () -> i -> DictionaryLoader.mapCache(cache, 1L).size());
+        } finally {
+            Files.deleteIfExists(cache);
+        }
+    }
+
+    /** MemoryLeaderboard / FileLeaderboard 的 saveScore / getTopScores：預先填入 N 筆分數。 */
+    private static void leaderboard(MicroBench bench, int[] sizes) throws Exception {
+        for (int size : sizes) {
+            List<ScoreEntry> seed = randomEntries(size, 42);
+            List<ScoreEntry> inserts = randomEntries(1_000, 7);
+            int saveOps = size >= 1_000_000 ? 5 : 100;
+
+            bench.run("GameBenchmarks.leaderboardSave", params("entries", size), saveOps, () -> {
+                MemoryLeaderboard board = new MemoryLeaderboard();
+                board.preload(seed);
+                return i -> {
+                    board.saveScore(inserts.get(i % inserts.size()));
+                    return 1;
+                };
+            });
+
+            MemoryLeaderboard board = new MemoryLeaderboard();
+            board.preload(seed);
+            bench.run("GameBenchmarks.leaderboardTop5", params("entries", size), 10_000,
+                    () -> i -> board.getTopScores(5).size());
+
+            fileLeaderboard(bench, size, seed, inserts, saveOps);
+        }
+    }
+
+    /** FileLeaderboard：預先寫入 N 筆並合併成索引，量測 fsync 寫入與 memory-map 查詢。 */
+    private static void fileLeaderboard(MicroBench bench, int size, List<ScoreEntry> seed, List<ScoreEntry> inserts,
+                                        int saveOps) throws Exception {
+        Path dir = Files.createTempDirectory("bench-leaderboard-");
+        try {
+            try (FileLeaderboard fill = new FileLeaderboard(dir, false, GameConfig.LEADERBOARD_COMPACT_THRESHOLD)) {
+                fill.saveScores(seed);
+                fill.compactNow();
+            }
+            try (FileLeaderboard board = new FileLeaderboard(dir)) {
+                bench.run("GameBenchmarks.fileLeaderboardSave", params("entries", size), saveOps, () -> i -> {
+                    board.saveScore(inserts.get(i % inserts.size()));
+                    return 1;
+                });
+                bench.run("GameBenchmarks.fileLeaderboardTop5", params("entries", size), 10_000,
+                        () -> i -> board.getTopScores(5).size());
+                bench.run("GameBenchmarks.fileLeaderboardRank", params("entries", size), 10_000,
+                        () -> i -> (int) board.getRank(i % 600));
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    private static List<ScoreEntry> randomEntries(int n, long seed) {
+        Random random = new Random(seed);
+        List<ScoreEntry> list = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            list.add(new ScoreEntry("p" + random.nextInt(1000), random.nextInt(600)));
+        }
+        Collections.shuffle(list, random);
+        return list;
+    }
+
+    private static byte[] readDictionaryBytes() throws IOException {
+        try (InputStream is = GameBenchmarks.class.getResourceAsStream("/typinggame/assets/dictionary.json")) {
+            if (is != null) {
+                return is.readAllBytes();
+            }
+        }
+        return Files.readAllBytes(Paths.get("src/typinggame/assets/dictionary.json"));
+    }
+
+    private static Map<String, String> params(String key, Object value) {
+        Map<String, String> m = new LinkedHashMap<>();
+        m.put(key, String.valueOf(value));
+        return m;
+    }
+
+    private static int[] parseSizes(String csv) {
+        String[] parts = csv.split(",");
+        int[] out = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            out[i] = Integer.parseInt(parts[i].trim());
+        }
+        return out;
+    }
+}
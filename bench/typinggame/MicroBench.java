@@ -0,0 +1,139 @@
+package typinggame;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Minimal JMH-style benchmark harness (warmup + measured iterations, average time per op).
+ *
+ * 專案沒有建置工具，無法引入 JMH，因此用這個小工具代替：
+ * 每個 iteration 先執行未計時的 setup，再計時執行 opsPerIteration 次操作。
+ * 結果以 JMH 相同的 JSON 結構輸出，可直接丟進既有的 JMH 報表工具比較。
+ */
+public final class MicroBench {
+
+    /** 一次 iteration 的未計時準備工作，回傳要被計時的操作。 */
+    public interface Setup {
+        Op prepare() throws Exception;
+    }
+
+    /** 被量測的操作；回傳值會被吸收，避免 JIT 把整段程式刪掉。 */
+    public interface Op {
+        long run(int index) throws Exception;
+    }
+
+    public static final class Result {
+        final String benchmark;
+        final Map<String, String> params;
+        final double[] nanosPerOp;
+
+        Result(String benchmark, Map<String, String> params, double[] nanosPerOp) {
+            this.benchmark = benchmark;
+            this.params = params;
+            this.nanosPerOp = nanosPerOp;
+        }
+
+        double mean() {
+            double sum = 0;
+            for (double v : nanosPerOp) {
+                sum += v;
+            }
+            return sum / nanosPerOp.length;
+        }
+
+        /** 99.9% 信賴區間半寬（與 JMH 的 scoreError 同義，此處用常態近似）。 */
+        double error() {
+            if (nanosPerOp.length < 2) {
+                return Double.NaN;
+            }
+            double mean = mean();
+            double var = 0;
+            for (double v : nanosPerOp) {
+                var += (v - mean) * (v - mean);
+            }
+            var /= nanosPerOp.length - 1;
+            return 3.29 * Math.sqrt(var / nanosPerOp.length);
+        }
+    }
+
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final List<Result> results = new ArrayList<>();
+    private volatile long sink; // 吸收回傳值 (volatile 寫入，JIT 無法省略)
+
+    public MicroBench(int warmupIterations, int measurementIterations) {
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+    }
+
+    public Result run(String benchmark, Map<String, String> params, int opsPerIteration, Setup setup) throws Exception {
+        for (int i = 0; i < warmupIterations; i++) {
+            iteration(opsPerIteration, setup);
+        }
+        double[] samples = new double[measurementIterations];
+        for (int i = 0; i < measurementIterations; i++) {
+            samples[i] = iteration(opsPerIteration, setup);
+        }
+        Result r = new Result(benchmark, new LinkedHashMap<>(params), samples);
+        results.add(r);
+        System.err.printf(Locale.ROOT, "%-40s %-24s %14.1f ± %.1f ns/op%n",
+                benchmark, params, r.mean(), r.error());
+        return r;
+    }
+
+    private double iteration(int ops, Setup setup) throws Exception {
+        Op op = setup.prepare();
+        long acc = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ops; i++) {
+            acc += op.run(i);
+        }
+        long elapsed = System.nanoTime() - start;
+        sink += acc;
+        return (double) elapsed / ops;
+    }
+
+    public List<Result> getResults() {
+        return results;
+    }
+
+    /** 以 JMH 的 JSON 格式輸出 (mode = avgt, 單位 ns/op)。 */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder("[\n");
+        for (int i = 0; i < results.size(); i++) {
+            Result r = results.get(i);
+            sb.append("  {\n");
+            sb.append("    \"benchmark\" : \"typinggame.").append(r.benchmark).append("\",\n");
+            sb.append("    \"mode\" : \"avgt\",\n");
+            sb.append("    \"warmupIterations\" : ").append(warmupIterations).append(",\n");
+            sb.append("    \"measurementIterations\" : ").append(measurementIterations).append(",\n");
+            sb.append("    \"params\" : {");
+            int p = 0;
+            for (Map.Entry<String, String> e : r.params.entrySet()) {
+                sb.append(p++ == 0 ? " " : ", ")
+                        .append('"').append(e.getKey()).append("\" : \"").append(e.getValue()).append('"');
+            }
+            sb.append(p == 0 ? "},\n" : " },\n");
+            sb.append("    \"primaryMetric\" : {\n");
+            sb.append("      \"score\" : ").append(num(r.mean())).append(",\n");
+            sb.append("      \"scoreError\" : ").append(num(r.error())).append(",\n");
+            sb.append("      \"scoreUnit\" : \"ns/op\",\n");
+            sb.append("      \"rawData\" : [ [");
+            for (int j = 0; j < r.nanosPerOp.length; j++) {
+                sb.append(j == 0 ? " " : ", ").append(num(r.nanosPerOp[j]));
+            }
+            sb.append(" ] ]\n");
+            sb.append("    }\n");
+            sb.append(i == results.size() - 1 ? "  }\n" : "  },\n");
+        }
+        sb.append("]\n");
+        return sb.toString();
+    }
+
+    private static String num(double v) {
+        return Double.isNaN(v) ? "\"NaN\"" : String.format(Locale.ROOT, "%.3f", v);
+    }
+}
@@ -0,0 +1,82 @@
+package typinggame;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+
+/**
+ * Helpers for keeping sprites in a format Java2D can accelerate.
+ *
+ * ImageIO 讀進來或自己 new 的 TYPE_INT_ARGB 圖片不一定能放進顯示卡記憶體；
+ * 轉成 {@link GraphicsConfiguration#createCompatibleImage} 的格式後，Java2D 才能快取成貼圖。
+ * 以 -Dtypinggame.accelImages=false 可停用，用來比較兩種路徑的幀時間。
+ */
+public final class AcceleratedImages {
+
+    private AcceleratedImages() {
+        // no instances
+    }
+
+    /** 目前螢幕的設定；headless 或停用時回傳 null。 */
+    static GraphicsConfiguration defaultConfiguration() {
+        if (!GameConfig.ACCELERATED_IMAGES || GraphicsEnvironment.isHeadless()) {
+            return null;
+        }
+        return GraphicsEnvironment.getLocalGraphicsEnvironment()
+                .getDefaultScreenDevice().getDefaultConfiguration();
+    }
+
+    /** 轉成與螢幕相容的格式（保留透明度）；無法轉換時原樣回傳。 */
+    public static BufferedImage toCompatible(BufferedImage src) {
+        GraphicsConfiguration gc = defaultConfiguration();
+        if (gc == null || src.getColorModel().equals(gc.getColorModel(src.getTransparency()))) {
+            return src;
+        }
+        BufferedImage dst = gc.createCompatibleImage(src.getWidth(), src.getHeight(), src.getTransparency());
+        Graphics2D g = dst.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.drawImage(src, 0, 0, null);
+        g.dispose();
+        return dst;
+    }
+
+    /**
+     * 以 {@link VolatileImage} 快取一張不透明的大圖（例如背景），每幀直接從顯示卡記憶體貼上。
+     * VolatileImage 的內容可能隨時被系統回收，draw 時會檢查並從原圖重新複製。
+     */
+    public static final class VolatileCopy {
+        private final BufferedImage source;
+        private VolatileImage vram;
+
+        public VolatileCopy(BufferedImage source) {
+            this.source = source;
+        }
+
+        public void draw(Graphics g, int x, int y) {
+            if (!GameConfig.ACCELERATED_IMAGES || !(g instanceof Graphics2D)) {
+                g.drawImage(source, x, y, null);
+                return;
+            }
+            GraphicsConfiguration gc = ((Graphics2D) g).getDeviceConfiguration();
+            do {
+                int status = vram == null ? VolatileImage.IMAGE_INCOMPATIBLE : vram.validate(gc);
+                if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+                    if (vram != null) {
+                        vram.flush();
+                    }
+                    vram = gc.createCompatibleVolatileImage(source.getWidth(), source.getHeight(), Transparency.OPAQUE);
+                    restore();
+                } else if (status == VolatileImage.IMAGE_RESTORED) {
+                    restore();
+                }
+                g.drawImage(vram, x, y, null);
+            } while (vram.contentsLost());
+        }
+
+        private void restore() {
+            Graphics2D g = vram.createGraphics();
+            g.drawImage(source, 0, 0, null);
+            g.dispose();
+        }
+    }
+}
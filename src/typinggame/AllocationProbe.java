@@ -0,0 +1,85 @@
+package typinggame;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures heap bytes allocated by the current thread between {@link #begin()} and {@link #end(long)}.
+ *
+ * 使用 HotSpot 的 com.sun.management.ThreadMXBean；其他 JVM 不支援時 begin() 回傳 -1，
+ * end() 直接忽略。以 -Dtypinggame.allocStats=true 啟動時，每 5 秒印出一次每幀平均配置量。
+ */
+public final class AllocationProbe {
+
+    private static final com.sun.management.ThreadMXBean MX = lookup();
+    private static final long REPORT_INTERVAL_NANOS = 5_000_000_000L;
+
+    private final String name;
+    private final boolean report;
+
+    private long lastFrameBytes;
+    private long windowBytes;
+    private long windowFrames;
+    private long windowStartNanos = System.nanoTime();
+    private volatile double averageBytesPerFrame;
+
+    public AllocationProbe(String name) {
+        this(name, Boolean.getBoolean("typinggame.allocStats"));
+    }
+
+    public AllocationProbe(String name, boolean report) {
+        this.name = name;
+        this.report = report;
+    }
+
+    private static com.sun.management.ThreadMXBean lookup() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) bean;
+            if (sun.isThreadAllocatedMemorySupported()) {
+                sun.setThreadAllocatedMemoryEnabled(true);
+                return sun;
+            }
+        }
+        return null;
+    }
+
+    public static boolean isSupported() {
+        return MX != null;
+    }
+
+    /** 回傳目前執行緒累計的配置量，不支援時回傳 -1。 */
+    public long begin() {
+        return MX == null ? -1 : MX.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /** 必須在呼叫 begin() 的同一個執行緒上呼叫。 */
+    public void end(long startBytes) {
+        if (startBytes < 0) {
+            return;
+        }
+        lastFrameBytes = MX.getThreadAllocatedBytes(Thread.currentThread().getId()) - startBytes;
+        windowBytes += lastFrameBytes;
+        windowFrames++;
+
+        long now = System.nanoTime();
+        if (now - windowStartNanos >= REPORT_INTERVAL_NANOS) {
+            averageBytesPerFrame = (double) windowBytes / windowFrames;
+            if (report) {
+                System.out.printf("[%s] %.0f bytes/frame over %d frames (last %d)%n",
+                        name, averageBytesPerFrame, windowFrames, lastFrameBytes);
+            }
+            windowBytes = 0;
+            windowFrames = 0;
+            windowStartNanos = now;
+        }
+    }
+
+    public long getLastFrameBytes() {
+        return lastFrameBytes;
+    }
+
+    /** 最近一個 5 秒區間的平均值。 */
+    public double getAverageBytesPerFrame() {
+        return averageBytesPerFrame;
+    }
+}
@@ -0,0 +1,217 @@
+package typinggame;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import javax.imageio.ImageIO;
+
+/**
+ * Loads every game image once per process and packs the sprites into one atlas.
+ *
+ * 啟動時呼叫 {@link #preload()}，各張 PNG 在背景平行讀取與縮放，完成後排進同一張圖集
+ * (shelf packing)，再轉成顯示卡可加速的格式。之後 Player / Obstacle 只拿 {@link Sprite}
+ * （圖集中的一塊區域），同一個 process 裡有多少個 GameEngine 都只有一份圖片。
+ * 背景是一整張不透明的大圖，不放進圖集，另外共用。
+ */
+public final class Assets {
+
+    private static final double PLAYER_SCALE = 0.35;
+    private static final double CACTUS_SCALE = 0.3;
+    private static final String[] PLAYER_FRAMES = {
+            "/typinggame/assets/dino1.png", // 站立/中
+            "/typinggame/assets/dino2.png", // 左腳
+            "/typinggame/assets/dino3.png"  // 右腳
+    };
+    private static final String CACTUS = "/typinggame/assets/cactus.png";
+
+    private static final int ATLAS_MAX_WIDTH = 512;
+    private static final int ATLAS_PADDING = 1; // 放大繪製時避免取樣到隔壁的圖
+
+    private static CompletableFuture<Assets> loading;
+
+    private final Sprite[] playerFrames;
+    private final Sprite cactus;
+    private final BufferedImage background;
+    private final BufferedImage atlas;
+
+    private Assets(Sprite[] playerFrames, Sprite cactus, BufferedImage background, BufferedImage atlas) {
+        this.playerFrames = playerFrames;
+        this.cactus = cactus;
+        this.background = background;
+        this.atlas = atlas;
+    }
+
+    /** 開始在背景載入（重複呼叫回傳同一個 future）。 */
+    public static synchronized CompletableFuture<Assets> preload() {
+        if (loading == null) {
+            loading = load();
+        }
+        return loading;
+    }
+
+    /** 取得已載入的資源；尚未載入完成時會等待。 */
+    public static Assets get() {
+        return preload().join();
+    }
+
+    private static CompletableFuture<Assets> load() {
+        // 每張圖片各自讀取 + 縮放，彼此平行
+        List<CompletableFuture<BufferedImage>> parts = new ArrayList<>();
+        for (String path : PLAYER_FRAMES) {
+            parts.add(CompletableFuture.supplyAsync(() -> loadScaled(path, PLAYER_SCALE, 40, 60, Color.GREEN)));
+        }
+        parts.add(CompletableFuture.supplyAsync(() -> loadScaled(CACTUS, CACTUS_SCALE, 12, 24, null)));
+        CompletableFuture<BufferedImage> background = CompletableFuture.supplyAsync(Assets::createBackground);
+
+        return CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[0]))
+                .thenCombine(background, (ignored, bg) -> {
+                    BufferedImage[] images = new BufferedImage[parts.size()];
+                    for (int i = 0; i < images.length; i++) {
+                        images[i] = parts.get(i).join();
+                    }
+                    return pack(images, bg);
+                });
+    }
+
+    /** 讀取並縮放一張圖片；讀不到時改用 fallback 大小的色塊（color 為 null 代表透明）。 */
+    private static BufferedImage loadScaled(String path, double scale, int fallbackW, int fallbackH, Color fallbackColor) {
+        BufferedImage raw;
+        try {
+            URL url = Assets.class.getResource(path);
+            if (url == null) {
+                throw new IOException("not found");
+            }
+            raw = ImageIO.read(url);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("⚠️ Error loading image " + path + ". Using fallback.");
+            BufferedImage box = new BufferedImage(fallbackW, fallbackH, BufferedImage.TYPE_INT_ARGB);
+            if (fallbackColor != null) {
+                Graphics g = box.getGraphics();
+                g.setColor(fallbackColor);
+                g.fillRect(0, 0, fallbackW, fallbackH);
+                g.dispose();
+            }
+            // 備案色塊本來就是最終大小，不再縮放
+            return box;
+        }
+        int newW = Math.max(1, (int) (raw.getWidth() * scale));
+        int newH = Math.max(1, (int) (raw.getHeight() * scale));
+        BufferedImage scaled = new BufferedImage(newW, newH, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = scaled.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        g2.drawImage(raw, 0, 0, newW, newH, null);
+        g2.dispose();
+        return scaled;
+    }
+
+    /** 程序化生成背景：白色底與灰色小雲，不需讀取外部檔案。 */
+    private static BufferedImage createBackground() {
+        int width = GameConfig.WIDTH;
+        int height = GameConfig.HEIGHT;
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB); // 整張不透明
+        Graphics2D g = image.createGraphics();
+
+        // 1. 填滿白色背景
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, width, height);
+
+        // 2. 繪製灰色小雲
+        g.setColor(new Color(220, 220, 220)); // 淺灰色
+
+        // 手動配置幾朵雲的位置 (x, y)，你可以自由增減
+        drawSmallCloud(g, 50, 40);
+        drawSmallCloud(g, 250, 80);
+        drawSmallCloud(g, 450, 30);
+        drawSmallCloud(g, 650, 100);
+        drawSmallCloud(g, 780, 50);
+
+        g.dispose();
+        return AcceleratedImages.toCompatible(image);
+    }
+
+    /** 輔助方法：畫一朵較小的雲 */
+    private static void drawSmallCloud(Graphics2D g, int x, int y) {
+        // 用三個橢圓組合成一朵雲，尺寸縮小
+        g.fillOval(x, y, 30, 20);       // 左
+        g.fillOval(x + 15, y - 10, 35, 25); // 中 (較高)
+        g.fillOval(x + 30, y + 5, 25, 15);  // 右
+    }
+
+    /**
+     * Shelf packing：由高到低排序，一列放滿 ATLAS_MAX_WIDTH 就換下一列。
+     * images 的順序為 PLAYER_FRAMES 之後接著仙人掌。
+     */
+    private static Assets pack(BufferedImage[] images, BufferedImage background) {
+        Integer[] order = new Integer[images.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt((Integer i) -> images[i].getHeight()).reversed());
+
+        int[] px = new int[images.length];
+        int[] py = new int[images.length];
+        int x = 0;
+        int y = 0;
+        int shelfHeight = 0;
+        int atlasWidth = 0;
+        for (int i : order) {
+            BufferedImage img = images[i];
+            if (x > 0 && x + img.getWidth() > ATLAS_MAX_WIDTH) {
+                x = 0;
+                y += shelfHeight + ATLAS_PADDING;
+                shelfHeight = 0;
+            }
+            px[i] = x;
+            py[i] = y;
+            x += img.getWidth() + ATLAS_PADDING;
+            shelfHeight = Math.max(shelfHeight, img.getHeight());
+            atlasWidth = Math.max(atlasWidth, x);
+        }
+        int atlasHeight = y + shelfHeight;
+
+        BufferedImage atlas = new BufferedImage(Math.max(1, atlasWidth), Math.max(1, atlasHeight),
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = atlas.createGraphics();
+        for (int i = 0; i < images.length; i++) {
+            g.drawImage(images[i], px[i], py[i], null);
+        }
+        g.dispose();
+        atlas = AcceleratedImages.toCompatible(atlas);
+
+        Sprite[] sprites = new Sprite[images.length];
+        for (int i = 0; i < images.length; i++) {
+            sprites[i] = new Sprite(atlas, px[i], py[i], images[i].getWidth(), images[i].getHeight());
+        }
+        Sprite[] player = Arrays.copyOf(sprites, PLAYER_FRAMES.length);
+        return new Assets(player, sprites[PLAYER_FRAMES.length], background, atlas);
+    }
+
+    public int getPlayerFrameCount() {
+        return playerFrames.length;
+    }
+
+    public Sprite getPlayerFrame(int index) {
+        return playerFrames[index];
+    }
+
+    public Sprite getCactus() {
+        return cactus;
+    }
+
+    /** 共用的背景圖（不透明，大小為 GameConfig.WIDTH x HEIGHT）；呼叫端不可修改內容。 */
+    public BufferedImage getBackground() {
+        return background;
+    }
+
+    @Override
+    public String toString() {
+        return "Assets[atlas=" + atlas.getWidth() + "x" + atlas.getHeight()
+                + " playerFrames=" + playerFrames.length + " cactus=" + cactus + "]";
+    }
+}
@@ -0,0 +1,336 @@
+package typinggame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Decorator that moves all storage I/O to a background writer thread.
+ *
+ * saveScore 只把分數放進有界佇列就立即返回；背景執行緒一次取出多筆，
+ * 以 {@link LeaderboardStorage#saveScores} 批次寫入。查詢也排進同一個佇列，
+ * 因此一定會看到先前送出的分數。close() 會把佇列中剩下的寫入送完再結束。
+ * 背景執行緒結束時（關閉或意外終止），佇列中還沒處理的查詢一律以失敗完成，呼叫端不會永遠等下去。
+ */
+public class AsyncLeaderboard implements LeaderboardStorage, AutoCloseable {
+
+    /** 佇列中的工作：寫入一筆分數，或一個查詢（只是等待之前的工作完成的 flush / close 也算查詢）。 */
+    private static final class Op {
+        final ScoreEntry entry;
+        final Runnable query;
+        final CompletableFuture<?> result; // 查詢的結果，背景執行緒結束時用來通知失敗
+
+        Op(ScoreEntry entry, Runnable query, CompletableFuture<?> result) {
+            this.entry = entry;
+            this.query = query;
+            this.result = result;
+        }
+
+        boolean isWrite() {
+            return entry != null;
+        }
+    }
+
+    private final LeaderboardStorage delegate;
+    private final BlockingQueue<Op> queue;
+    private final int batchSize;
+    private final Thread writer;
+
+    // 放進佇列時持有 read lock，close() 與背景執行緒結束時持有 write lock：
+    // 兩者之後不會再有工作進入佇列，也就不會有分數或查詢在關閉的瞬間被默默丟掉
+    private final ReadWriteLock enqueueLock = new ReentrantReadWriteLock();
+    private volatile boolean closed;
+    private volatile boolean writerStopped;
+
+    public AsyncLeaderboard(LeaderboardStorage delegate) {
+        this(delegate, GameConfig.ASYNC_QUEUE_CAPACITY, GameConfig.ASYNC_BATCH_SIZE);
+    }
+
+    public AsyncLeaderboard(LeaderboardStorage delegate, int queueCapacity, int batchSize) {
+        this.delegate = delegate;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.writer = new Thread(this::runWriter, "leaderboard-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * 不會阻塞也不會丟出例外：佇列滿了、已關閉或背景執行緒已停止時就丟棄並印出警告，
+     * 遊戲畫面不會因為資料庫而卡住（關機 hook 關閉 storage 時遊戲執行緒可能還在結算分數）。
+     */
+    @Override
+    public void saveScore(ScoreEntry entry) {
+        String dropped;
+        enqueueLock.readLock().lock();
+        try {
+            if (closed) {
+                dropped = "already closed";
+            } else if (writerStopped) {
+                dropped = "writer stopped";
+            } else {
+                dropped = queue.offer(new Op(entry, null, null)) ? null : "queue full";
+            }
+        } finally {
+            enqueueLock.readLock().unlock();
+        }
+        if (dropped != null) {
+            System.err.println("⚠️ Leaderboard " + dropped + ", dropping score of " + entry.getPlayerName());
+        }
+    }
+
+    @Override
+    public void saveScores(List<ScoreEntry> entries) {
+        for (ScoreEntry e : entries) {
+            saveScore(e);
+        }
+    }
+
+    /** 同步版本：會等到背景執行緒處理完（盡量改用 getTopScoresAsync）。 */
+    @Override
+    public List<ScoreEntry> getTopScores(int limit) {
+        return getTopScoresAsync(limit).join();
+    }
+
+    @Override
+    public CompletableFuture<List<ScoreEntry>> getTopScoresAsync(int limit) {
+        return submit(() -> delegate.getTopScores(limit));
+    }
+
+    // 進階查詢同樣排進佇列（看得到先前送出的分數），呼叫端等待結果
+
+    @Override
+    public ScorePage getScores(TimeWindow window, int limit, String cursor) {
+        return submit(() -> delegate.getScores(window, limit, cursor)).join();
+    }
+
+    @Override
+    public ScoreEntry getPersonalBest(String playerName, TimeWindow window) {
+        return submit(() -> delegate.getPersonalBest(playerName, window)).join();
+    }
+
+    @Override
+    public ScorePage getPlayerHistory(String playerName, int limit, String cursor) {
+        return submit(() -> delegate.getPlayerHistory(playerName, limit, cursor)).join();
+    }
+
+    /** 排在佇列中先前的寫入之後執行；走訪期間背景執行緒不處理其他工作。 */
+    @Override
+    public void forEachScore(Consumer<? super ScoreEntry> action) {
+        submit(() -> {
+            delegate.forEachScore(action);
+            return null;
+        }).join();
+    }
+
+    @Override
+    public long countScoresAbove(long score, TimeWindow window) {
+        return submit(() -> delegate.countScoresAbove(score, window)).join();
+    }
+
+    @Override
+    public long countScores(TimeWindow window) {
+        return submit(() -> delegate.countScores(window)).join();
+    }
+
+    @Override
+    public long getRank(long score, TimeWindow window) {
+        return submit(() -> delegate.getRank(score, window)).join();
+    }
+
+    @Override
+    public long getPlayerRank(String playerName, TimeWindow window) {
+        return submit(() -> delegate.getPlayerRank(playerName, window)).join();
+    }
+
+    @Override
+    public double getPercentile(long score, TimeWindow window) {
+        return submit(() -> delegate.getPercentile(score, window)).join();
+    }
+
+    /** 把查詢排進佇列，由背景執行緒執行；佇列滿或已關閉時回傳失敗的 future。 */
+    private <T> CompletableFuture<T> submit(Supplier<T> query) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Op op = new Op(null, () -> {
+            try {
+                result.complete(query.get());
+            } catch (Throwable e) {
+                // 包含 Error（例如 driver 的 LinkageError）：呼叫端收到失敗，背景執行緒照常運作
+                result.completeExceptionally(e);
+            }
+        }, result);
+        enqueueLock.readLock().lock();
+        try {
+            enqueue(op, 0);
+        } finally {
+            enqueueLock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * 回傳的 future 在目前佇列中的工作都處理完後完成；佇列一直是滿的時最多等
+     * {@link GameConfig#ASYNC_FLUSH_TIMEOUT_MS} 排進去，逾時則以 TimeoutException 失敗。
+     */
+    public CompletableFuture<Void> flush() {
+        CompletableFuture<Void> barrier = new CompletableFuture<>();
+        enqueueLock.readLock().lock();
+        try {
+            enqueue(new Op(null, () -> barrier.complete(null), barrier), GameConfig.ASYNC_FLUSH_TIMEOUT_MS);
+        } finally {
+            enqueueLock.readLock().unlock();
+        }
+        return barrier;
+    }
+
+    /** 呼叫端持有 lock；排不進去時讓 op 的 future 失敗。timeoutMillis = 0 表示不等待。 */
+    private void enqueue(Op op, long timeoutMillis) {
+        if (closed || writerStopped) {
+            op.result.completeExceptionally(new IllegalStateException(
+                    closed ? "Leaderboard already closed" : "Leaderboard writer stopped"));
+            return;
+        }
+        try {
+            if (!queue.offer(op, timeoutMillis, TimeUnit.MILLISECONDS)) {
+                op.result.completeExceptionally(timeoutMillis == 0
+                        ? new IllegalStateException("Leaderboard queue full")
+                        : new TimeoutException("Leaderboard queue still full after " + timeoutMillis + " ms"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            op.result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * 停止接受新工作，送完佇列後關閉底層 storage（若它也需要關閉）。
+     * 排進佇列與等待送完合計最多 {@link GameConfig#ASYNC_FLUSH_TIMEOUT_MS}，資料庫卡住時也不會讓關機卡住。
+     */
+    @Override
+    public void close() {
+        enqueueLock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            enqueueLock.writeLock().unlock();
+        }
+        // 之後不會再有人放進佇列，排在最後的 barrier 完成就代表佇列送完了
+        // （背景執行緒已經停止時剩下的工作在它結束時就處理掉了，barrier 不會完成，只等它結束）
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(GameConfig.ASYNC_FLUSH_TIMEOUT_MS);
+        CompletableFuture<Void> barrier = new CompletableFuture<>();
+        try {
+            if (writerStopped) {
+                barrier.complete(null);
+            } else if (!queue.offer(new Op(null, () -> barrier.complete(null), barrier),
+                    GameConfig.ASYNC_FLUSH_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                throw new TimeoutException("queue still full after " + GameConfig.ASYNC_FLUSH_TIMEOUT_MS + " ms");
+            }
+            barrier.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (Exception e) {
+            System.err.println("⚠️ Leaderboard flush did not finish: " + e);
+        }
+        writer.interrupt();
+        try {
+            // 背景執行緒卡在資料庫呼叫裡時不再等它
+            writer.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (delegate instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) delegate).close();
+            } catch (Exception e) {
+                System.err.println("⚠️ Error closing leaderboard: " + e.getMessage());
+            }
+        }
+    }
+
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    private void runWriter() {
+        List<Op> drained = new ArrayList<>(batchSize);
+        List<ScoreEntry> pendingWrites = new ArrayList<>(batchSize);
+        try {
+            while (true) {
+                drained.add(queue.take());
+                queue.drainTo(drained, batchSize - 1);
+
+                for (Op op : drained) {
+                    if (op.isWrite()) {
+                        pendingWrites.add(op.entry);
+                        continue;
+                    }
+                    // 查詢前先把累積的寫入送出，確保讀得到自己的分數
+                    writeBatch(pendingWrites);
+                    op.query.run();
+                }
+                writeBatch(pendingWrites);
+                drained.clear();
+            }
+        } catch (InterruptedException e) {
+            // close() 結束背景執行緒
+        } catch (Throwable e) {
+            System.err.println("⚠️ Leaderboard writer stopped unexpectedly: " + e);
+        } finally {
+            stopWriter(drained);
+        }
+    }
+
+    /**
+     * 不再接受新工作，並讓還沒處理的查詢失敗（等待中的 join() / future 不會永遠卡住）。
+     * inProgress 是意外終止時正在處理的那一批，其中已經完成的查詢不受影響。
+     */
+    private void stopWriter(List<Op> inProgress) {
+        enqueueLock.writeLock().lock();
+        try {
+            writerStopped = true;
+        } finally {
+            enqueueLock.writeLock().unlock();
+        }
+        IllegalStateException stopped = new IllegalStateException("Leaderboard writer stopped");
+        for (Op op : inProgress) {
+            if (!op.isWrite()) {
+                op.result.completeExceptionally(stopped);
+            }
+        }
+        List<Op> unfinished = new ArrayList<>();
+        queue.drainTo(unfinished);
+        int droppedWrites = 0;
+        for (Op op : unfinished) {
+            if (op.isWrite()) {
+                droppedWrites++;
+            } else {
+                op.result.completeExceptionally(stopped);
+            }
+        }
+        if (droppedWrites > 0) {
+            System.err.println("⚠️ Leaderboard writer stopped, " + droppedWrites + " score(s) not saved");
+        }
+    }
+
+    private void writeBatch(List<ScoreEntry> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            delegate.saveScores(batch);
+        } catch (Throwable e) {
+            // 包含 Error：寫入失敗只印警告，背景執行緒繼續處理後面的工作
+            System.err.println("⚠️ Failed to save " + batch.size() + " score(s): " + e);
+        }
+        batch.clear();
+    }
+}
@@ -0,0 +1,73 @@
+package typinggame;
+
+import java.util.Random;
+
+/**
+ * Simulated player for headless runs. 每個模擬步呼叫一次 {@link #tick}，
+ * 由 bot 決定要不要透過 {@link GameEngine#handleTypedChar} 打一個字。
+ */
+public interface BotTypist {
+
+    void tick(GameEngine engine);
+
+    /** 每個執行緒各自建立一個 bot（bot 本身不需要 thread-safe）。 */
+    interface Factory {
+        BotTypist create(long seed);
+    }
+
+    /** 固定節奏、永不打錯的腳本式 bot：每 ticksPerChar 步打一個正確字母。 */
+    static Factory scripted(int ticksPerChar) {
+        return seed -> new BotTypist() {
+            private int wait = ticksPerChar;
+
+            @Override
+            public void tick(GameEngine engine) {
+                if (--wait > 0) {
+                    return;
+                }
+                wait = ticksPerChar;
+                char next = nextCorrectChar(engine);
+                if (next != 0) {
+                    engine.handleTypedChar(next);
+                }
+            }
+        };
+    }
+
+    /**
+     * 機率式 bot：平均每秒打 charsPerSecond 個字，每個字有 errorRate 機率打錯。
+     */
+    static Factory probabilistic(double charsPerSecond, double errorRate) {
+        double perTick = charsPerSecond / GameConfig.SIM_HZ;
+        return seed -> new BotTypist() {
+            private final Random random = new Random(seed);
+
+            @Override
+            public void tick(GameEngine engine) {
+                if (random.nextDouble() >= perTick) {
+                    return;
+                }
+                char next = nextCorrectChar(engine);
+                if (next == 0) {
+                    return;
+                }
+                if (random.nextDouble() < errorRate) {
+                    char wrong = (char) ('a' + random.nextInt(26));
+                    engine.handleTypedChar(wrong == next ? (char) ('a' + (next - 'a' + 1) % 26) : wrong);
+                } else {
+                    engine.handleTypedChar(next);
+                }
+            }
+        };
+    }
+
+    /** 目前單字中下一個該打的字母；沒有目標或已打完時回傳 0。 */
+    static char nextCorrectChar(GameEngine engine) {
+        String word = engine.getCurrentWord();
+        if (word == null || engine.isCurrentWordCleared()) {
+            return 0; // 已打完的障礙物等它被跳過，不要重打
+        }
+        int typed = engine.getTypedLength();
+        return typed < word.length() ? Character.toLowerCase(word.charAt(typed)) : 0;
+    }
+}
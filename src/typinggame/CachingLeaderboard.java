@@ -0,0 +1,227 @@
+package typinggame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Read-through cache for top-N queries.
+ *
+ * 記住目前前 capacity 名：本機寫入的分數若擠進門檻，就直接插入快取並踢掉最後一名，
+ * 不必重新查詢；只有快取過期 (其他客戶端也在寫入同一個資料庫) 或查詢超過 capacity 時
+ * 才會真正打到底層 storage。
+ */
+public class CachingLeaderboard implements LeaderboardStorage, AutoCloseable {
+
+    private final LeaderboardStorage delegate;
+    private final int capacity;
+    private final long ttlMillis;
+    private final GameClock clock;
+
+    private List<ScoreEntry> cached;   // 由高到低，最多 capacity 筆；null 代表尚未載入或已作廢
+    private long loadedAt;
+    private long generation;           // 每次重新載入加一，寫入期間若有重新載入就不再增量更新
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder incrementalUpdates = new LongAdder();
+
+    public CachingLeaderboard(LeaderboardStorage delegate) {
+        this(delegate, GameConfig.LEADERBOARD_CACHE_SIZE, GameConfig.LEADERBOARD_CACHE_TTL_MS, GameClock.SYSTEM);
+    }
+
+    public CachingLeaderboard(LeaderboardStorage delegate, int capacity, long ttlMillis, GameClock clock) {
+        this.delegate = delegate;
+        this.capacity = capacity;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * 寫入底層後把分數套用到快取。寫入不持有 lock（不擋住讀取），期間可能有其他執行緒重新載入，
+     * 載入的結果可能已經包含這筆：這時只補上還不在快取裡的，避免同一筆出現兩次。
+     */
+    @Override
+    public void saveScore(ScoreEntry entry) {
+        long before = currentGeneration();
+        delegate.saveScore(entry);
+        synchronized (this) {
+            applyAfterWrite(entry, generation != before);
+        }
+    }
+
+    @Override
+    public void saveScores(List<ScoreEntry> entries) {
+        long before = currentGeneration();
+        delegate.saveScores(entries);
+        synchronized (this) {
+            boolean reloaded = generation != before;
+            for (ScoreEntry e : entries) {
+                applyAfterWrite(e, reloaded);
+            }
+        }
+    }
+
+    private synchronized long currentGeneration() {
+        return generation;
+    }
+
+    @Override
+    public List<ScoreEntry> getTopScores(int limit) {
+        if (limit > capacity) {
+            // 超出快取範圍，直接查詢
+            misses.increment();
+            return delegate.getTopScores(limit);
+        }
+        synchronized (this) {
+            if (cached != null && clock.millis() - loadedAt < ttlMillis) {
+                hits.increment();
+            } else {
+                // 持有 lock 期間查詢：同時過期時只會有一個執行緒真的去查
+                misses.increment();
+                cached = new ArrayList<>(delegate.getTopScores(capacity));
+                loadedAt = clock.millis();
+                generation++;
+            }
+            return new ArrayList<>(cached.subList(0, Math.min(limit, cached.size())));
+        }
+    }
+
+    // 進階查詢不經過快取
+
+    @Override
+    public ScorePage getScores(TimeWindow window, int limit, String cursor) {
+        return delegate.getScores(window, limit, cursor);
+    }
+
+    @Override
+    public ScoreEntry getPersonalBest(String playerName, TimeWindow window) {
+        return delegate.getPersonalBest(playerName, window);
+    }
+
+    @Override
+    public ScorePage getPlayerHistory(String playerName, int limit, String cursor) {
+        return delegate.getPlayerHistory(playerName, limit, cursor);
+    }
+
+    @Override
+    public void forEachScore(Consumer<? super ScoreEntry> action) {
+        delegate.forEachScore(action);
+    }
+
+    @Override
+    public long countScoresAbove(long score, TimeWindow window) {
+        return delegate.countScoresAbove(score, window);
+    }
+
+    @Override
+    public long countScores(TimeWindow window) {
+        return delegate.countScores(window);
+    }
+
+    @Override
+    public long getRank(long score, TimeWindow window) {
+        return delegate.getRank(score, window);
+    }
+
+    @Override
+    public long getPlayerRank(String playerName, TimeWindow window) {
+        return delegate.getPlayerRank(playerName, window);
+    }
+
+    @Override
+    public double getPercentile(long score, TimeWindow window) {
+        return delegate.getPercentile(score, window);
+    }
+
+    /** 作廢快取，下次查詢重新載入。 */
+    public synchronized void invalidate() {
+        cached = null;
+    }
+
+    /**
+     * 寫入期間有重新載入時，載入的結果若已包含這筆就不再插入；不包含代表載入在寫入之前，
+     * 或這筆本來就擠不進前 capacity 名（apply 也會略過），兩種情況照常套用都正確。
+     */
+    private void applyAfterWrite(ScoreEntry entry, boolean reloaded) {
+        if (reloaded && cached != null && cached.contains(entry)) {
+            return;
+        }
+        apply(entry);
+    }
+
+    /** 只在快取有效時更新：分數超過門檻才插入（同分排在既有紀錄之後）。 */
+    private void apply(ScoreEntry entry) {
+        if (cached == null) {
+            return;
+        }
+        // 快取未滿代表底層的總筆數本來就少於 capacity，直接插入仍然精確
+        boolean full = cached.size() >= capacity;
+        if (full && entry.getScore() <= cached.get(cached.size() - 1).getScore()) {
+            return;
+        }
+        int pos = insertionPoint(entry.getScore());
+        cached.add(pos, entry);
+        if (cached.size() > capacity) {
+            cached.remove(cached.size() - 1);
+        }
+        incrementalUpdates.increment();
+    }
+
+    /** 第一個分數嚴格小於 score 的位置。 */
+    private int insertionPoint(long score) {
+        int lo = 0;
+        int hi = cached.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cached.get(mid).getScore() >= score) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getIncrementalUpdateCount() {
+        return incrementalUpdates.sum();
+    }
+
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    /** 目前快取內容（除錯用）。 */
+    public synchronized List<ScoreEntry> snapshot() {
+        return cached == null ? Collections.emptyList() : new ArrayList<>(cached);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CachingLeaderboard[hits=%d misses=%d updates=%d hitRate=%.2f]",
+                getHitCount(), getMissCount(), getIncrementalUpdateCount(), getHitRate());
+    }
+
+    @Override
+    public void close() {
+        if (delegate instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) delegate).close();
+            } catch (Exception e) {
+                System.err.println("⚠️ Error closing leaderboard: " + e.getMessage());
+            }
+        }
+    }
+}
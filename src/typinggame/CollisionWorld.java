@@ -0,0 +1,327 @@
+package typinggame;
+
+import java.util.Arrays;
+
+/**
+ * Allocation-free collision detection: primitive AABBs in a uniform grid (spatial hash) broad phase.
+ *
+ * 每個物體 (body) 是一個軸對齊矩形，依所覆蓋的格子登記在雜湊表中。查詢時只看與查詢範圍重疊的格子，
+ * 成本只與附近的物體數有關，與整個世界有多少物體無關。
+ * 座標使用「世界座標」：障礙物隨畫面捲動但在世界中是靜止的，只在生成時登記一次、消失時移除；
+ * 只有真的會動的物體（玩家、投射物、飛行物）才需要每步 {@link #move}，而且只有跨格時才重新登記。
+ *
+ * 所有資料都是平行的基本型別陣列，容量不足時才加倍；遊戲中新增、移動、查詢都不建立物件。
+ */
+final class CollisionWorld {
+
+    // 物體種類（可用 | 組合成查詢遮罩）
+    static final int PLAYER = 1;
+    static final int OBSTACLE = 1 << 1;
+    static final int FLYING = 1 << 2;
+    static final int PROJECTILE = 1 << 3;
+    static final int HAZARDS = OBSTACLE | FLYING | PROJECTILE;
+
+    private static final int NONE = -1;
+
+    private final double cellSize;
+
+    // --- bodies（依 id 索引） ---
+    private double[] minX;
+    private double[] minY;
+    private double[] maxX;
+    private double[] maxY;
+    private int[] kind;        // 0 = 未使用
+    private long[] tag;        // 呼叫端的識別碼（例如障礙物的生成序號）
+    private int[] cx0, cy0, cx1, cy1; // 目前登記的格子範圍
+    private int[] seenStamp;   // 查詢時去除重複（一個物體可能跨好幾格）
+    private int[] nextFreeBody;
+    private int bodyCapacity;
+    private int bodyTop;
+    private int freeBody = NONE;
+    private int bodyCount;
+
+    // --- 空間雜湊：每個 bucket 是 entry 串列 ---
+    private int[] bucketHead;
+    private int bucketMask;
+    private int[] entryBody;
+    private int[] entryCellX;
+    private int[] entryCellY;
+    private int[] entryNext;
+    private int entryTop;
+    private int freeEntry = NONE;
+    private int liveEntries;
+
+    // --- 查詢結果 ---
+    private int[] results = new int[16];
+    private int stamp;
+
+    CollisionWorld(double cellSize) {
+        this(cellSize, 64, 1024);
+    }
+
+    CollisionWorld(double cellSize, int initialBodies, int buckets) {
+        this.cellSize = cellSize;
+        growBodies(Math.max(4, initialBodies));
+        int b = Integer.highestOneBit(Math.max(16, buckets - 1)) << 1;
+        bucketHead = new int[b];
+        Arrays.fill(bucketHead, NONE);
+        bucketMask = b - 1;
+        entryBody = new int[initialBodies * 2];
+        entryCellX = new int[initialBodies * 2];
+        entryCellY = new int[initialBodies * 2];
+        entryNext = new int[initialBodies * 2];
+    }
+
+    // ------------------------------------------------------------------ bodies
+
+    /** 新增一個物體，回傳 id（移除後 id 會被重複使用）。 */
+    int add(int bodyKind, long bodyTag, double x, double y, double width, double height) {
+        if (bodyKind == 0) {
+            throw new IllegalArgumentException("kind must be non-zero");
+        }
+        int id;
+        if (freeBody != NONE) {
+            id = freeBody;
+            freeBody = nextFreeBody[id];
+        } else {
+            if (bodyTop == bodyCapacity) {
+                growBodies(bodyCapacity * 2);
+            }
+            id = bodyTop++;
+        }
+        kind[id] = bodyKind;
+        tag[id] = bodyTag;
+        seenStamp[id] = stamp;
+        setBounds(id, x, y, width, height);
+        insertCells(id);
+        bodyCount++;
+        return id;
+    }
+
+    /** 移到新位置（大小不變）；仍在同樣的格子時不需重新登記。 */
+    void move(int id, double x, double y) {
+        double w = maxX[id] - minX[id];
+        double h = maxY[id] - minY[id];
+        setBounds(id, x, y, w, h);
+        if (cell(minX[id]) != cx0[id] || cell(minY[id]) != cy0[id]
+                || cell(maxX[id]) != cx1[id] || cell(maxY[id]) != cy1[id]) {
+            removeCells(id);
+            insertCells(id);
+        }
+    }
+
+    void remove(int id) {
+        if (kind[id] == 0) {
+            return;
+        }
+        removeCells(id);
+        kind[id] = 0;
+        nextFreeBody[id] = freeBody;
+        freeBody = id;
+        bodyCount--;
+    }
+
+    void clear() {
+        Arrays.fill(bucketHead, NONE);
+        Arrays.fill(kind, 0, bodyTop, 0);
+        bodyTop = 0;
+        freeBody = NONE;
+        bodyCount = 0;
+        entryTop = 0;
+        freeEntry = NONE;
+        liveEntries = 0;
+    }
+
+    int size() {
+        return bodyCount;
+    }
+
+    int kind(int id) {
+        return kind[id];
+    }
+
+    long tag(int id) {
+        return tag[id];
+    }
+
+    double minX(int id) { return minX[id]; }
+    double minY(int id) { return minY[id]; }
+    double maxX(int id) { return maxX[id]; }
+    double maxY(int id) { return maxY[id]; }
+
+    // ------------------------------------------------------------------ 查詢
+
+    /**
+     * 找出與矩形重疊、且種類符合 kindMask 的物體（邊界相接不算重疊，與 Rectangle.intersects 相同）。
+     * 回傳數量，結果以 {@link #result(int)} 取得，在下一次查詢前有效。
+     */
+    int query(double x, double y, double width, double height, int kindMask, int excludeId) {
+        double qx1 = x + width;
+        double qy1 = y + height;
+        if (++stamp == 0) {
+            // stamp 繞回 0 時重設，避免與舊標記混淆
+            Arrays.fill(seenStamp, 0);
+            stamp = 1;
+        }
+        int found = 0;
+        int x0 = cell(x), x1 = cell(qx1), y0 = cell(y), y1 = cell(qy1);
+        for (int gx = x0; gx <= x1; gx++) {
+            for (int gy = y0; gy <= y1; gy++) {
+                for (int e = bucketHead[hash(gx, gy)]; e != NONE; e = entryNext[e]) {
+                    int id = entryBody[e];
+                    if (entryCellX[e] != gx || entryCellY[e] != gy || seenStamp[id] == stamp) {
+                        continue; // 雜湊碰撞或已經看過
+                    }
+                    seenStamp[id] = stamp;
+                    if (id == excludeId || (kind[id] & kindMask) == 0) {
+                        continue;
+                    }
+                    if (minX[id] < qx1 && x < maxX[id] && minY[id] < qy1 && y < maxY[id]) {
+                        if (found == results.length) {
+                            results = Arrays.copyOf(results, found * 2);
+                        }
+                        results[found++] = id;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /** 以某個物體本身的範圍查詢（不包含自己）。 */
+    int queryBody(int id, int kindMask) {
+        return query(minX[id], minY[id], maxX[id] - minX[id], maxY[id] - minY[id], kindMask, id);
+    }
+
+    int result(int i) {
+        return results[i];
+    }
+
+    // ------------------------------------------------------------------ 內部
+
+    private void setBounds(int id, double x, double y, double w, double h) {
+        minX[id] = x;
+        minY[id] = y;
+        maxX[id] = x + w;
+        maxY[id] = y + h;
+    }
+
+    private int cell(double v) {
+        return (int) Math.floor(v / cellSize);
+    }
+
+    private int hash(int gx, int gy) {
+        return (gx * 0x9E3779B1 ^ gy * 0x85EBCA77) & bucketMask;
+    }
+
+    private void insertCells(int id) {
+        int x0 = cell(minX[id]), x1 = cell(maxX[id]), y0 = cell(minY[id]), y1 = cell(maxY[id]);
+        cx0[id] = x0;
+        cx1[id] = x1;
+        cy0[id] = y0;
+        cy1[id] = y1;
+        for (int gx = x0; gx <= x1; gx++) {
+            for (int gy = y0; gy <= y1; gy++) {
+                int e = allocEntry();
+                int b = hash(gx, gy);
+                entryBody[e] = id;
+                entryCellX[e] = gx;
+                entryCellY[e] = gy;
+                entryNext[e] = bucketHead[b];
+                bucketHead[b] = e;
+                liveEntries++;
+            }
+        }
+        // 平均每個 bucket 超過 2 個 entry 就加倍，讓串列維持很短
+        if (liveEntries > bucketHead.length * 2) {
+            rehash(bucketHead.length * 2);
+        }
+    }
+
+    private void rehash(int buckets) {
+        int[] oldHead = bucketHead;
+        bucketHead = new int[buckets];
+        Arrays.fill(bucketHead, NONE);
+        bucketMask = buckets - 1;
+        for (int head : oldHead) {
+            for (int e = head; e != NONE; ) {
+                int next = entryNext[e];
+                int b = hash(entryCellX[e], entryCellY[e]);
+                entryNext[e] = bucketHead[b];
+                bucketHead[b] = e;
+                e = next;
+            }
+        }
+    }
+
+    private void removeCells(int id) {
+        for (int gx = cx0[id]; gx <= cx1[id]; gx++) {
+            for (int gy = cy0[id]; gy <= cy1[id]; gy++) {
+                int b = hash(gx, gy);
+                int prev = NONE;
+                for (int e = bucketHead[b]; e != NONE; prev = e, e = entryNext[e]) {
+                    if (entryBody[e] == id && entryCellX[e] == gx && entryCellY[e] == gy) {
+                        if (prev == NONE) {
+                            bucketHead[b] = entryNext[e];
+                        } else {
+                            entryNext[prev] = entryNext[e];
+                        }
+                        entryNext[e] = freeEntry;
+                        freeEntry = e;
+                        liveEntries--;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private int allocEntry() {
+        if (freeEntry != NONE) {
+            int e = freeEntry;
+            freeEntry = entryNext[e];
+            return e;
+        }
+        if (entryTop == entryBody.length) {
+            int cap = entryTop * 2;
+            entryBody = Arrays.copyOf(entryBody, cap);
+            entryCellX = Arrays.copyOf(entryCellX, cap);
+            entryCellY = Arrays.copyOf(entryCellY, cap);
+            entryNext = Arrays.copyOf(entryNext, cap);
+        }
+        return entryTop++;
+    }
+
+    private void growBodies(int capacity) {
+        minX = grow(minX, capacity);
+        minY = grow(minY, capacity);
+        maxX = grow(maxX, capacity);
+        maxY = grow(maxY, capacity);
+        kind = grow(kind, capacity);
+        tag = grow(tag, capacity);
+        cx0 = grow(cx0, capacity);
+        cy0 = grow(cy0, capacity);
+        cx1 = grow(cx1, capacity);
+        cy1 = grow(cy1, capacity);
+        seenStamp = grow(seenStamp, capacity);
+        nextFreeBody = grow(nextFreeBody, capacity);
+        bodyCapacity = capacity;
+    }
+
+    private static double[] grow(double[] a, int capacity) {
+        return a == null ? new double[capacity] : Arrays.copyOf(a, capacity);
+    }
+
+    private static long[] grow(long[] a, int capacity) {
+        return a == null ? new long[capacity] : Arrays.copyOf(a, capacity);
+    }
+
+    private static int[] grow(int[] a, int capacity) {
+        return a == null ? new int[capacity] : Arrays.copyOf(a, capacity);
+    }
+
+    @Override
+    public String toString() {
+        return "CollisionWorld[bodies=" + bodyCount + " entries=" + liveEntries + " buckets=" + bucketHead.length + "]";
+    }
+}
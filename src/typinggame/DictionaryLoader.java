@@ -0,0 +1,294 @@
+package typinggame;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Streaming dictionary loader with a memory-mapped binary cache.
+ *
+ * 第一次載入時以串流方式掃描 JSON（不建立整份字串、不用 regex），
+ * 字元直接寫進共用的 char 陣列，再依長度排好寫成快取檔；
+ * 之後啟動時直接 memory-map 快取檔，完全跳過解析。
+ * 每個來源位置只有一個快取檔；來源的大小或修改時間變了（header 中的 key 不符）就重新解析並覆蓋。
+ *
+ * 快取檔格式 (big-endian)：
+ *   int magic, int version, long sourceKey, int wordCount, int maxLen,
+ *   int[maxLen + 2] lengthOffsets, char[totalChars] packedChars
+ */
+public final class DictionaryLoader {
+
+    private static final int MAGIC = 0x54475744; // "TGWD"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 4 + 4;
+    private static final String CACHE_PREFIX = "wordindex-";
+
+    /** 快取目錄，可用 -Dtypinggame.cacheDir 指定。 */
+    static final Path CACHE_DIR = Paths.get(System.getProperty("typinggame.cacheDir",
+            Paths.get(System.getProperty("java.io.tmpdir"), "typinggame").toString()));
+
+    private DictionaryLoader() {
+    }
+
+    /**
+     * 載入字典：快取檔存在且 key 相符就直接 map，否則串流解析並寫出（覆蓋）快取。
+     * 快取讀寫失敗時只印出警告，仍回傳解析結果。
+     */
+    public static WordIndex load(URL source) throws IOException {
+        long key = sourceKey(source);
+        Path cache = CACHE_DIR.resolve(CACHE_PREFIX + Long.toHexString(locationHash(source)) + ".bin");
+
+        if (Files.isRegularFile(cache)) {
+            try {
+                WordIndex cached = mapCache(cache, key);
+                if (cached != null) {
+                    return cached;
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("⚠️ Dictionary cache unreadable, re-parsing: " + e.getMessage());
+            }
+        }
+
+        WordIndex index;
+        try (Reader reader = new InputStreamReader(source.openStream(), StandardCharsets.UTF_8)) {
+            index = parse(reader);
+        }
+        try {
+            writeCache(cache, key, index);
+        } catch (IOException e) {
+            System.err.println("⚠️ Could not write dictionary cache: " + e.getMessage());
+        }
+        return index;
+    }
+
+    /** 快取檔名只由來源位置決定，來源更新時覆蓋同一個檔案。 */
+    private static long locationHash(URL source) {
+        long h = 1125899906842597L;
+        for (char c : source.toExternalForm().toCharArray()) {
+            h = 31 * h + c;
+        }
+        return h;
+    }
+
+    /** 由來源位置、大小與修改時間組成的快取 key（存在 header 中）；任何一項變動都會重新解析。 */
+    private static long sourceKey(URL source) throws IOException {
+        URLConnection conn = source.openConnection();
+        long length = conn.getContentLengthLong();
+        long modified = conn.getLastModified();
+        // 有些 URLConnection (file:, jar:) 查詢長度時會順便開啟串流，這裡明確關掉
+        conn.getInputStream().close();
+        long h = locationHash(source);
+        h = 31 * h + length;
+        h = 31 * h + modified;
+        return h;
+    }
+
+    // ------------------------------------------------------------------
+    // 串流解析
+    // ------------------------------------------------------------------
+
+    /**
+     * 串流掃描第一個 JSON 陣列中的字串：去掉引號與撇號，只保留全為字母的字並轉小寫。
+     * 陣列以外的內容（例如 description 欄位）會被略過。
+     */
+    public static WordIndex parse(Reader reader) throws IOException {
+        Accumulator acc = new Accumulator();
+        char[] buf = new char[8192];
+        char[] token = new char[64];
+        int tokenLen = 0;
+
+        boolean inArray = false;
+        boolean inString = false;
+        boolean escape = false;
+        boolean valid = true;
+        boolean trailing = false; // 字母後面出現過空白（與舊版 trim 行為一致）
+        int depth = 0;
+
+        int n;
+        outer:
+        while ((n = reader.read(buf)) > 0) {
+            for (int i = 0; i < n; i++) {
+                char c = buf[i];
+                if (!inArray) {
+                    if (c == '[') {
+                        inArray = true;
+                        depth = 1;
+                    }
+                    continue;
+                }
+                if (inString) {
+                    if (escape) {
+                        escape = false;
+                        valid = false; // 含跳脫字元的 token 不會是純字母單字
+                    } else if (c == '\\') {
+                        escape = true;
+                    } else if (c == '"') {
+                        inString = false;
+                        if (valid && tokenLen > 0) {
+                            acc.add(token, tokenLen);
+                        }
+                    } else if (c == '\'') {
+                        // 與舊版一致：撇號直接移除 (don't -> dont)
+                    } else if (Character.isLetter(c)) {
+                        if (trailing) {
+                            valid = false; // 字中間夾空白，例如 "ice cream"
+                        }
+                        if (tokenLen == token.length) {
+                            token = Arrays.copyOf(token, tokenLen * 2);
+                        }
+                        token[tokenLen++] = Character.toLowerCase(c);
+                    } else if (Character.isWhitespace(c)) {
+                        trailing = tokenLen > 0;
+                    } else {
+                        valid = false;
+                    }
+                    continue;
+                }
+                if (c == '"') {
+                    inString = true;
+                    tokenLen = 0;
+                    valid = true;
+                    trailing = false;
+                } else if (c == '[') {
+                    depth++;
+                } else if (c == ']' && --depth == 0) {
+                    break outer;
+                }
+            }
+        }
+        return acc.build();
+    }
+
+    /** 解析過程中累積字元：所有字接在同一個 char 陣列，另記起點與長度。 */
+    private static final class Accumulator {
+        private char[] chars = new char[1 << 14];
+        private int[] starts = new int[1 << 10];
+        private int[] lengths = new int[1 << 10];
+        private int charCount;
+        private int wordCount;
+        private int maxLen;
+
+        void add(char[] token, int len) {
+            if (charCount + len > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charCount + len));
+            }
+            if (wordCount == starts.length) {
+                starts = Arrays.copyOf(starts, wordCount * 2);
+                lengths = Arrays.copyOf(lengths, wordCount * 2);
+            }
+            System.arraycopy(token, 0, chars, charCount, len);
+            starts[wordCount] = charCount;
+            lengths[wordCount] = len;
+            charCount += len;
+            wordCount++;
+            maxLen = Math.max(maxLen, len);
+        }
+
+        /** counting sort 依長度重新排列，產生 WordIndex 需要的格式。 */
+        WordIndex build() {
+            int[] offsets = new int[maxLen + 2];
+            for (int i = 0; i < wordCount; i++) {
+                offsets[lengths[i] + 1]++;
+            }
+            for (int len = 1; len < offsets.length; len++) {
+                offsets[len] += offsets[len - 1];
+            }
+
+            int[] cursor = new int[maxLen + 1];
+            int base = 0;
+            for (int len = 0; len <= maxLen; len++) {
+                cursor[len] = base;
+                base += (offsets[len + 1] - offsets[len]) * len;
+            }
+
+            char[] packed = new char[charCount];
+            for (int i = 0; i < wordCount; i++) {
+                int len = lengths[i];
+                System.arraycopy(chars, starts[i], packed, cursor[len], len);
+                cursor[len] += len;
+            }
+            return new WordIndex(CharBuffer.wrap(packed), offsets);
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // 二進位快取
+    // ------------------------------------------------------------------
+
+    static void writeCache(Path cache, long key, WordIndex index) throws IOException {
+        Files.createDirectories(cache.getParent());
+        int[] offsets = index.lengthOffsets();
+        CharBuffer chars = index.packedChars();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES + offsets.length * 4).order(ByteOrder.BIG_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putLong(key).putInt(index.size()).putInt(offsets.length - 2);
+        for (int off : offsets) {
+            header.putInt(off);
+        }
+        header.flip();
+
+        ByteBuffer body = ByteBuffer.allocate(chars.remaining() * 2).order(ByteOrder.BIG_ENDIAN);
+        body.asCharBuffer().put(chars);
+
+        // 先寫暫存檔再原子搬移，避免其他行程讀到寫一半的快取
+        Path tmp = Files.createTempFile(cache.getParent(), CACHE_PREFIX, ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining()) {
+                ch.write(header);
+            }
+            while (body.hasRemaining()) {
+                ch.write(body);
+            }
+        }
+        try {
+            Files.move(tmp, cache, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+    }
+
+    /** map 快取檔；key 不符（來源已更新）時回傳 null，格式錯誤時丟出 IOException。 */
+    static WordIndex mapCache(Path cache, long expectedKey) throws IOException {
+        try (FileChannel ch = FileChannel.open(cache, StandardOpenOption.READ)) {
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            map.order(ByteOrder.BIG_ENDIAN);
+
+            if (map.getInt() != MAGIC || map.getInt() != VERSION) {
+                throw new IOException("Not a dictionary cache: " + cache);
+            }
+            if (map.getLong() != expectedKey) {
+                return null;
+            }
+            int wordCount = map.getInt();
+            int maxLen = map.getInt();
+            if (maxLen < 0 || HEADER_BYTES + (long) (maxLen + 2) * 4 > map.limit()) {
+                throw new IOException("Corrupt dictionary cache header: " + cache);
+            }
+            int[] offsets = new int[maxLen + 2];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = map.getInt();
+            }
+            if (offsets[offsets.length - 1] != wordCount) {
+                throw new IOException("Corrupt dictionary cache offsets: " + cache);
+            }
+            // 對應檔案剩下的部分即為字元資料，不複製到 heap
+            CharBuffer chars = map.slice().order(ByteOrder.BIG_ENDIAN).asCharBuffer();
+            return new WordIndex(chars, offsets);
+        }
+    }
+}
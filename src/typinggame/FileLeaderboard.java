@@ -0,0 +1,860 @@
+package typinggame;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Embedded leaderboard stored in a directory: an append-only score log plus a memory-mapped sorted index.
+ *
+ * 不需要任何外部服務（離線機台用）。每筆分數附上 CRC32 附加到 scores.log，寫入後 force 到磁碟
+ * （可用 -Dtypinggame.leaderboardFsync=false 關閉），所以 saveScore 回傳後分數就不會因當機而遺失。
+ * 查詢走 memory-map 的排序索引 (分數高到低、同分先到者優先，每筆 16 bytes)，前 N 名與名次都是
+ * 二分搜尋 / 依序讀取，不經過系統呼叫；還沒進索引的新分數放在記憶體中的排序串列，查詢時一起合併。
+ * 索引外累積 {@link GameConfig#LEADERBOARD_COMPACT_THRESHOLD} 筆後，由背景執行緒把兩者合併成新一代索引，
+ * 寫完再換上，讀取不會被擋住。
+ *
+ * 檔案格式 (big-endian)：
+ *   scores.log：int magic, int version，之後每筆 int payloadLength, int crc32(payload),
+ *               payload = long score, long epochMillis, short nameLength, byte[] UTF-8 name,
+ *                         [跑分統計 {@link ScoreEntry#STATS_BYTES} bytes，舊版的紀錄沒有這一段]
+ *   index-&lt;generation&gt;.idx：int magic, int version, long coveredLogBytes, int count, int crc32(entries),
+ *               entries = count × (long score, long logOffset)
+ *
+ * 索引只是由 log 推導出來的資料：開啟時找不到有效的索引就從 log 重建；log 結尾不完整或 CRC 不符的紀錄
+ * （寫到一半斷電）會被截掉並印出警告。同一個目錄同時只能由一個 process 開啟 (file lock)。
+ * log 以單一 mapping 讀取，上限 2 GB（約五千萬筆）。
+ */
+public class FileLeaderboard implements LeaderboardStorage, AutoCloseable {
+
+    private static final int LOG_MAGIC = 0x54474c47;   // "TGLG"
+    private static final int INDEX_MAGIC = 0x54474958; // "TGIX"
+    private static final int VERSION = 1;
+    private static final int LOG_HEADER_BYTES = 4 + 4;
+    private static final int RECORD_HEADER_BYTES = 4 + 4;
+    private static final int PAYLOAD_FIXED_BYTES = 8 + 8 + 2;
+    private static final int INDEX_HEADER_BYTES = 4 + 4 + 8 + 4 + 4;
+    private static final int INDEX_ENTRY_BYTES = 8 + 8;
+    private static final int MAX_NAME_BYTES = 0xFFFF;
+    private static final String LOG_FILE = "scores.log";
+    private static final String INDEX_PREFIX = "index-";
+    private static final String INDEX_SUFFIX = ".idx";
+
+    /** 還沒合併進索引的分數；offset 是它在 log 中的位置，同分時用來維持先到先排。 */
+    private static final class Pending {
+        final ScoreEntry entry;
+        final long score;
+        final long offset;
+
+        Pending(ScoreEntry entry, long offset) {
+            this.entry = entry;
+            this.score = entry.getScore();
+            this.offset = offset;
+        }
+    }
+
+    private final Path dir;
+    private final boolean fsync;
+    private final int compactThreshold;
+    private final FileChannel log;
+    private final FileLock lock;
+    private final ExecutorService compactor;
+    private final ByteBuffer writeBuffer = ByteBuffer.allocate(4096);
+
+    private long logEnd;                      // 下一筆紀錄寫入的位置
+    private MappedByteBuffer logMap;          // log 前 covered bytes（索引涵蓋的部分）
+    private MappedByteBuffer index;           // 目前這一代索引；沒有時為 null
+    private int indexCount;
+    private long generation;
+    private final List<Pending> delta = new ArrayList<>(); // 依名次排序
+    private final List<Pending> unsorted = new ArrayList<>(); // 大量寫入時先依 log 順序堆著，查詢前才併入 delta
+    private boolean compacting;
+    private final Object compactLock = new Object(); // 同時只做一次合併
+    private boolean closed;
+
+    public FileLeaderboard(Path dir) throws IOException {
+        this(dir, GameConfig.LEADERBOARD_FSYNC, GameConfig.LEADERBOARD_COMPACT_THRESHOLD);
+    }
+
+    public FileLeaderboard(Path dir, boolean fsync, int compactThreshold) throws IOException {
+        if (compactThreshold <= 0) {
+            throw new IllegalArgumentException("compactThreshold must be positive: " + compactThreshold);
+        }
+        this.dir = dir;
+        this.fsync = fsync;
+        this.compactThreshold = compactThreshold;
+        Files.createDirectories(dir);
+        this.log = FileChannel.open(dir.resolve(LOG_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock acquired;
+            try {
+                acquired = log.tryLock();
+            } catch (OverlappingFileLockException e) {
+                acquired = null; // 同一個 JVM 已經開啟
+            }
+            this.lock = acquired;
+            if (lock == null) {
+                throw new IOException("Leaderboard directory is already in use: " + dir);
+            }
+            open();
+        } catch (IOException | RuntimeException e) {
+            log.close();
+            throw e;
+        }
+        this.compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "leaderboard-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+        synchronized (this) {
+            maybeCompact();
+        }
+    }
+
+    // ------------------------------------------------------------------ 開啟 / 復原
+
+    private void open() throws IOException {
+        long size = log.size();
+        if (size < LOG_HEADER_BYTES) {
+            // 新檔（或連檔頭都沒寫完）：重新寫檔頭
+            ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_BYTES).putInt(LOG_MAGIC).putInt(VERSION);
+            header.flip();
+            log.truncate(0);
+            writeFully(header, 0);
+            log.force(true);
+            size = LOG_HEADER_BYTES;
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_BYTES);
+            readFully(header, 0);
+            header.flip();
+            if (header.getInt() != LOG_MAGIC || header.getInt() != VERSION) {
+                // 不認得的檔案不要覆寫
+                throw new IOException("Not a leaderboard log: " + dir.resolve(LOG_FILE));
+            }
+        }
+
+        long covered = LOG_HEADER_BYTES;
+        for (Path file : indexFilesNewestFirst()) {
+            long gen = generationOf(file);
+            if (index == null) {
+                try {
+                    covered = loadIndex(file, size);
+                    generation = gen;
+                    continue;
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("⚠️ Ignoring unreadable leaderboard index " + file.getFileName()
+                            + ": " + e.getMessage());
+                }
+            }
+            deleteQuietly(file);
+        }
+
+        logEnd = scanLog(covered, size);
+        logMap = log.map(FileChannel.MapMode.READ_ONLY, 0, covered);
+    }
+
+    /** 讀入並驗證一個索引檔，回傳它涵蓋到 log 的哪個位置。 */
+    private long loadIndex(Path file, long logSize) throws IOException {
+        MappedByteBuffer map;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+        if (map.capacity() < INDEX_HEADER_BYTES || map.getInt(0) != INDEX_MAGIC || map.getInt(4) != VERSION) {
+            throw new IOException("bad header");
+        }
+        long covered = map.getLong(8);
+        int count = map.getInt(16);
+        int crc = map.getInt(20);
+        if (covered < LOG_HEADER_BYTES || covered > logSize || covered > Integer.MAX_VALUE) {
+            throw new IOException("covers " + covered + " bytes of a " + logSize + "-byte log");
+        }
+        if (count < 0 || map.capacity() != INDEX_HEADER_BYTES + (long) count * INDEX_ENTRY_BYTES) {
+            throw new IOException("truncated");
+        }
+        CRC32 check = new CRC32();
+        ByteBuffer entries = map.duplicate();
+        entries.position(INDEX_HEADER_BYTES);
+        check.update(entries);
+        if ((int) check.getValue() != crc) {
+            throw new IOException("checksum mismatch");
+        }
+        index = map;
+        indexCount = count;
+        return covered;
+    }
+
+    /**
+     * 從 start 開始逐筆驗證 log，把索引還沒涵蓋的紀錄放進 delta，回傳最後一筆完整紀錄的結尾。
+     * 遇到不完整或 CRC 不符的紀錄時，把 log 截在那裡（之後的資料無法信任）。
+     */
+    private long scanLog(long start, long size) throws IOException {
+        long offset = start;
+        log.position(start);
+        // 不關閉：關掉串流會連同 log channel 一起關閉
+        InputStream raw = Channels.newInputStream(log);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(raw, 1 << 16));
+        CRC32 crc = new CRC32();
+        byte[] payload = new byte[256];
+        String problem = null;
+        while (offset < size) {
+            try {
+                int length = in.readInt();
+                int expected = in.readInt();
+                if (length < PAYLOAD_FIXED_BYTES || length > PAYLOAD_FIXED_BYTES + MAX_NAME_BYTES + ScoreEntry.STATS_BYTES
+                        || offset + RECORD_HEADER_BYTES + length > size) {
+                    problem = "bad record length " + length;
+                    break;
+                }
+                if (payload.length < length) {
+                    payload = new byte[Math.max(length, payload.length * 2)];
+                }
+                in.readFully(payload, 0, length);
+                crc.reset();
+                crc.update(payload, 0, length);
+                if ((int) crc.getValue() != expected) {
+                    problem = "checksum mismatch";
+                    break;
+                }
+                delta.add(new Pending(decode(ByteBuffer.wrap(payload, 0, length)), offset));
+                offset += RECORD_HEADER_BYTES + length;
+            } catch (EOFException e) {
+                problem = "incomplete record";
+                break;
+            }
+        }
+        // 依 log 順序讀入，stable sort 後同分仍是先到者在前；沒有索引時可能有上百萬筆，不逐筆插入
+        delta.sort(Comparator.comparingLong((Pending p) -> -p.score));
+        if (problem != null) {
+            System.err.println("⚠️ Leaderboard log damaged at byte " + offset + " (" + problem + "); dropping "
+                    + (size - offset) + " trailing bytes.");
+            log.truncate(offset);
+            log.force(true);
+        }
+        return offset;
+    }
+
+    // ------------------------------------------------------------------ 寫入
+
+    @Override
+    public synchronized void saveScore(ScoreEntry entry) {
+        ensureOpen();
+        append(entry);
+    }
+
+    /** 一次寫入整批、只 force 一次（group commit）。 */
+    @Override
+    public synchronized void saveScores(List<ScoreEntry> entries) {
+        ensureOpen();
+        for (int i = 0; i < entries.size(); ) {
+            // 每次盡量塞滿寫入緩衝，再一起寫出
+            writeBuffer.clear();
+            List<Pending> batch = new ArrayList<>();
+            long offset = logEnd;
+            while (i < entries.size()) {
+                ScoreEntry e = entries.get(i);
+                int before = writeBuffer.position();
+                if (!encode(e, writeBuffer)) {
+                    if (batch.isEmpty()) {
+                        append(e); // 單筆就超過緩衝大小
+                        i++;
+                    }
+                    break;
+                }
+                batch.add(new Pending(e, offset + before));
+                i++;
+            }
+            if (!batch.isEmpty()) {
+                commit(writeBuffer, batch);
+            }
+        }
+    }
+
+    /** 寫入單筆；名字太長放不進共用緩衝時另外配置。 */
+    private void append(ScoreEntry entry) {
+        ByteBuffer buf = writeBuffer;
+        buf.clear();
+        if (!encode(entry, buf)) {
+            buf = ByteBuffer.allocate(RECORD_HEADER_BYTES + PAYLOAD_FIXED_BYTES + MAX_NAME_BYTES + ScoreEntry.STATS_BYTES);
+            encode(entry, buf);
+        }
+        List<Pending> one = new ArrayList<>(1);
+        one.add(new Pending(entry, logEnd));
+        commit(buf, one);
+    }
+
+    private void commit(ByteBuffer buf, List<Pending> batch) {
+        buf.flip();
+        int length = buf.remaining();
+        try {
+            writeFully(buf, logEnd);
+            if (fsync) {
+                log.force(false);
+            }
+        } catch (IOException e) {
+            // 寫到一半的紀錄下次開啟時會被 CRC 檢查截掉；這裡把位置留在原處，下一筆覆寫它
+            throw new UncheckedIOException("Failed to write leaderboard log", e);
+        }
+        logEnd += length;
+        for (Pending p : batch) {
+            insertPending(p);
+        }
+        maybeCompact();
+        awaitCompaction();
+    }
+
+    /** 編碼一筆紀錄到 buf；放不下時不改動 buf 並回傳 false。 */
+    private static boolean encode(ScoreEntry entry, ByteBuffer buf) {
+        byte[] name = entry.getPlayerName().getBytes(StandardCharsets.UTF_8);
+        if (name.length > MAX_NAME_BYTES) {
+            throw new IllegalArgumentException("Player name too long: " + name.length + " bytes");
+        }
+        int length = PAYLOAD_FIXED_BYTES + name.length + ScoreEntry.STATS_BYTES;
+        if (buf.remaining() < RECORD_HEADER_BYTES + length) {
+            return false;
+        }
+        int start = buf.position();
+        buf.putInt(length).putInt(0)
+                .putLong(entry.getScore())
+                .putLong(entry.getEpochMillis())
+                .putShort((short) name.length)
+                .put(name);
+        entry.writeStats(buf);
+        CRC32 crc = new CRC32();
+        ByteBuffer payload = buf.duplicate();
+        payload.position(start + RECORD_HEADER_BYTES).limit(start + RECORD_HEADER_BYTES + length);
+        crc.update(payload);
+        buf.putInt(start + 4, (int) crc.getValue());
+        return true;
+    }
+
+    /** 解出 payload（position 在開頭，limit 在結尾）；沒有跑分統計的舊紀錄統計為 0。 */
+    private static ScoreEntry decode(ByteBuffer payload) {
+        long score = payload.getLong();
+        long millis = payload.getLong();
+        byte[] bytes = new byte[payload.getShort() & 0xFFFF];
+        payload.get(bytes);
+        String name = new String(bytes, StandardCharsets.UTF_8);
+        if (payload.remaining() >= ScoreEntry.STATS_BYTES) {
+            return ScoreEntry.readStats(name, score, millis, payload);
+        }
+        return new ScoreEntry(name, score, millis);
+    }
+
+    /**
+     * 放進 delta 中的名次位置：排在所有分數 >= 它的紀錄之後（同分先到者優先）。
+     * delta 已經很大（例如匯入大量資料、合併跟不上）時改成先堆在 unsorted，避免每筆都搬移整個陣列。
+     */
+    private void insertPending(Pending p) {
+        if (unsorted.isEmpty() && delta.size() < compactThreshold) {
+            delta.add(countAtLeast(p.score), p);
+        } else {
+            unsorted.add(p);
+        }
+    }
+
+    /** 把 unsorted 排序後與 delta 合併（兩者各自依名次排序後做一次 merge）。 */
+    private void sortDelta() {
+        if (unsorted.isEmpty()) {
+            return;
+        }
+        // 依 log 順序加入，stable sort 後同分仍是先到者在前
+        unsorted.sort(Comparator.comparingLong((Pending p) -> -p.score));
+        List<Pending> merged = new ArrayList<>(delta.size() + unsorted.size());
+        int i = 0;
+        int j = 0;
+        while (i < delta.size() || j < unsorted.size()) {
+            // unsorted 的紀錄都比 delta 晚寫入，同分時 delta 在前
+            if (j >= unsorted.size() || (i < delta.size() && delta.get(i).score >= unsorted.get(j).score)) {
+                merged.add(delta.get(i++));
+            } else {
+                merged.add(unsorted.get(j++));
+            }
+        }
+        delta.clear();
+        delta.addAll(merged);
+        unsorted.clear();
+    }
+
+    private int pendingCount() {
+        return delta.size() + unsorted.size();
+    }
+
+    // ------------------------------------------------------------------ 查詢
+
+    @Override
+    public synchronized List<ScoreEntry> getTopScores(int limit) {
+        ensureOpen();
+        sortDelta();
+        int total = indexCount + delta.size();
+        int n = Math.max(0, Math.min(limit, total));
+        List<ScoreEntry> list = new ArrayList<>(n);
+        int i = 0;
+        int j = 0;
+        while (list.size() < n) {
+            boolean fromIndex;
+            if (j >= delta.size()) {
+                fromIndex = true;
+            } else if (i >= indexCount) {
+                fromIndex = false;
+            } else {
+                // 同分時 log 位置小的（先到的）排前面；索引涵蓋的紀錄一定比 delta 早
+                fromIndex = indexScore(i) >= delta.get(j).score;
+            }
+            if (fromIndex) {
+                list.add(readEntry(indexOffset(i++)));
+            } else {
+                list.add(delta.get(j++).entry);
+            }
+        }
+        return list;
+    }
+
+    /** 這個分數目前排第幾名（1 起算，同分並列），涵蓋所有曾經存入的紀錄。 */
+    public synchronized long getRank(long score) {
+        ensureOpen();
+        sortDelta();
+        return indexCountAbove(score) + countAbove(score) + 1;
+    }
+
+    /**
+     * 只支援 ALL_TIME：索引只依分數排序，沒有日期與玩家。游標是 (分數, log 位置)，
+     * 在索引與 delta 中各二分搜尋到游標之後再合併。
+     */
+    @Override
+    public synchronized ScorePage getScores(TimeWindow window, int limit, String cursor) {
+        requireAllTime(window);
+        ensureOpen();
+        sortDelta();
+        int i = 0;
+        int j = 0;
+        if (cursor != null) {
+            long score = ScorePage.cursorValue(cursor);
+            long offset = ScorePage.cursorLongKey(cursor);
+            i = indexAfter(score, offset);
+            j = deltaAfter(score, offset);
+        }
+        List<ScoreEntry> page = new ArrayList<>();
+        long lastScore = 0;
+        long lastOffset = 0;
+        while (page.size() < limit && (i < indexCount || j < delta.size())) {
+            if (j >= delta.size() || (i < indexCount && indexScore(i) >= delta.get(j).score)) {
+                lastScore = indexScore(i);
+                lastOffset = indexOffset(i);
+                page.add(readEntry(indexOffset(i++)));
+            } else {
+                Pending p = delta.get(j++);
+                lastScore = p.score;
+                lastOffset = p.offset;
+                page.add(p.entry);
+            }
+        }
+        boolean more = i < indexCount || j < delta.size();
+        return new ScorePage(page, more && !page.isEmpty() ? ScorePage.cursor(lastScore, lastOffset) : null);
+    }
+
+    /** 只支援 ALL_TIME，與 {@link #getRank(long)} 相同的二分搜尋。 */
+    @Override
+    public synchronized long countScoresAbove(long score, TimeWindow window) {
+        requireAllTime(window);
+        ensureOpen();
+        sortDelta();
+        return indexCountAbove(score) + countAbove(score);
+    }
+
+    private static void requireAllTime(TimeWindow window) {
+        if (window != TimeWindow.ALL_TIME) {
+            throw new UnsupportedOperationException("FileLeaderboard only indexes all-time scores");
+        }
+    }
+
+    /**
+     * 依 log 順序（也就是寫入順序）走訪。紀錄寫入後不再變動，所以只在開頭取得 log 結尾，
+     * 之後不持有鎖，以固定大小的緩衝區分段讀取，不受 2GB mapping 限制、也不阻擋遊戲寫入。
+     */
+    @Override
+    public void forEachScore(Consumer<? super ScoreEntry> action) {
+        long end;
+        synchronized (this) {
+            ensureOpen();
+            end = logEnd;
+        }
+        // 至少要放得下最長的一筆紀錄
+        ByteBuffer buf = ByteBuffer.allocate(1 << 17);
+        buf.limit(0);
+        long readPos = LOG_HEADER_BYTES;
+        long offset = LOG_HEADER_BYTES;
+        try {
+            while (offset < end) {
+                if (buf.remaining() < RECORD_HEADER_BYTES
+                        || buf.remaining() < RECORD_HEADER_BYTES + buf.getInt(buf.position())) {
+                    buf.compact();
+                    buf.limit((int) Math.min(buf.capacity(), buf.position() + (end - readPos)));
+                    while (buf.hasRemaining()) {
+                        int n = log.read(buf, readPos);
+                        if (n < 0) {
+                            throw new EOFException("Leaderboard log ended at byte " + readPos);
+                        }
+                        readPos += n;
+                    }
+                    buf.flip();
+                    continue;
+                }
+                int length = buf.getInt();
+                buf.getInt(); // CRC：開啟時或寫入時已驗證過
+                ByteBuffer payload = buf.duplicate();
+                payload.limit(payload.position() + length);
+                buf.position(buf.position() + length);
+                offset += RECORD_HEADER_BYTES + length;
+                action.accept(decode(payload));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read leaderboard log", e);
+        }
+    }
+
+    /** 曾經存入的總筆數。 */
+    public synchronized long size() {
+        return (long) indexCount + pendingCount();
+    }
+
+    private long indexScore(int i) {
+        return index.getLong(INDEX_HEADER_BYTES + i * INDEX_ENTRY_BYTES);
+    }
+
+    private long indexOffset(int i) {
+        return index.getLong(INDEX_HEADER_BYTES + i * INDEX_ENTRY_BYTES + 8);
+    }
+
+    /** 索引中分數嚴格大於 score 的筆數（索引依分數由高到低排序，二分搜尋）。 */
+    private int indexCountAbove(long score) {
+        int lo = 0;
+        int hi = indexCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (indexScore(mid) > score) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** 索引中第一個排在 (score, offset) 之後的位置。 */
+    private int indexAfter(long score, long offset) {
+        int lo = 0;
+        int hi = indexCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            long s = indexScore(mid);
+            if (s > score || (s == score && indexOffset(mid) <= offset)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** delta 中第一個排在 (score, offset) 之後的位置。 */
+    private int deltaAfter(long score, long offset) {
+        int lo = 0;
+        int hi = delta.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            Pending p = delta.get(mid);
+            if (p.score > score || (p.score == score && p.offset <= offset)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** delta 中分數嚴格大於 score 的筆數。 */
+    private int countAbove(long score) {
+        return score == Long.MAX_VALUE ? 0 : countAtLeast(score + 1);
+    }
+
+    /** delta 中分數 >= score 的筆數。 */
+    private int countAtLeast(long score) {
+        int lo = 0;
+        int hi = delta.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (delta.get(mid).score >= score) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** 直接從 map 進來的 log 解出一筆（索引只會指向開啟時或寫入時驗證過的紀錄）。 */
+    private ScoreEntry readEntry(long offset) {
+        int pos = (int) offset;
+        ByteBuffer payload = logMap.duplicate();
+        payload.position(pos + RECORD_HEADER_BYTES).limit(pos + RECORD_HEADER_BYTES + logMap.getInt(pos));
+        return decode(payload);
+    }
+
+    // ------------------------------------------------------------------ 背景合併
+
+    /**
+     * delta 超過門檻時排進背景合併。門檻隨索引大小成長（索引的 1/4，上限 {@link GameConfig#LEADERBOARD_COMPACT_MAX}），
+     * 大量匯入時每筆資料只會被重寫幾次，而不是每 {@code compactThreshold} 筆就重寫整個索引。
+     */
+    private void maybeCompact() {
+        if (!compacting && !closed && pendingCount() >= compactTrigger()) {
+            compacting = true;
+            compactor.execute(this::runCompaction);
+        }
+    }
+
+    private int compactTrigger() {
+        return Math.max(compactThreshold, Math.min(indexCount / 4, GameConfig.LEADERBOARD_COMPACT_MAX));
+    }
+
+    /**
+     * 寫入比合併快太多時（大量匯入），讓寫入端等目前的合併做完，記憶體中的 delta 不會無限成長。
+     * 呼叫端需持有 this 的鎖。
+     */
+    private void awaitCompaction() {
+        while (compacting && pendingCount() >= 2 * compactTrigger()) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void runCompaction() {
+        try {
+            compactNow();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("⚠️ Leaderboard compaction failed: " + e.getMessage());
+        } finally {
+            synchronized (this) {
+                compacting = false;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 把目前的索引與 delta 合併成新一代索引檔並換上。合併與寫檔不持有鎖，
+     * 期間的查詢照常使用舊索引，新寫入的分數留在 delta 等下一次合併。
+     */
+    void compactNow() throws IOException {
+        synchronized (compactLock) {
+            compactLocked();
+        }
+    }
+
+    private void compactLocked() throws IOException {
+        MappedByteBuffer baseIndex;
+        int baseCount;
+        Pending[] added;
+        long covered;
+        long nextGeneration;
+        synchronized (this) {
+            sortDelta();
+            if (closed || delta.isEmpty()) {
+                return;
+            }
+            baseIndex = index;
+            baseCount = indexCount;
+            added = delta.toArray(new Pending[0]);
+            covered = logEnd;
+            nextGeneration = generation + 1;
+        }
+        if (covered > Integer.MAX_VALUE) {
+            throw new IOException("Leaderboard log exceeds 2 GB; index cannot map it");
+        }
+
+        int count = baseCount + added.length;
+        Path tmp = dir.resolve(INDEX_PREFIX + nextGeneration + INDEX_SUFFIX + ".tmp");
+        Path target = dir.resolve(INDEX_PREFIX + nextGeneration + INDEX_SUFFIX);
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+            CRC32 crc = new CRC32();
+            long pos = INDEX_HEADER_BYTES;
+            int i = 0;
+            int j = 0;
+            while (i < baseCount || j < added.length) {
+                long score;
+                long offset;
+                if (j >= added.length || (i < baseCount
+                        && baseIndex.getLong(INDEX_HEADER_BYTES + i * INDEX_ENTRY_BYTES) >= added[j].score)) {
+                    int at = INDEX_HEADER_BYTES + i * INDEX_ENTRY_BYTES;
+                    score = baseIndex.getLong(at);
+                    offset = baseIndex.getLong(at + 8);
+                    i++;
+                } else {
+                    score = added[j].score;
+                    offset = added[j].offset;
+                    j++;
+                }
+                buf.putLong(score).putLong(offset);
+                if (!buf.hasRemaining()) {
+                    pos += flushEntries(out, buf, crc, pos);
+                }
+            }
+            pos += flushEntries(out, buf, crc, pos);
+
+            ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER_BYTES)
+                    .putInt(INDEX_MAGIC).putInt(VERSION).putLong(covered).putInt(count).putInt((int) crc.getValue());
+            header.flip();
+            while (header.hasRemaining()) {
+                out.write(header, header.position());
+            }
+            out.force(true);
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+
+        MappedByteBuffer newIndex;
+        try (FileChannel ch = FileChannel.open(target, StandardOpenOption.READ)) {
+            newIndex = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+        MappedByteBuffer newLogMap = log.map(FileChannel.MapMode.READ_ONLY, 0, covered);
+        Path previous;
+        synchronized (this) {
+            previous = index == null ? null : dir.resolve(INDEX_PREFIX + generation + INDEX_SUFFIX);
+            index = newIndex;
+            indexCount = count;
+            logMap = newLogMap;
+            generation = nextGeneration;
+            delta.removeIf(p -> p.offset < covered);
+        }
+        if (previous != null) {
+            // 舊的 mapping 要等 GC 才會釋放；某些平台上刪不掉時留到下次開啟再清
+            deleteQuietly(previous);
+        }
+    }
+
+    private static int flushEntries(FileChannel out, ByteBuffer buf, CRC32 crc, long pos) throws IOException {
+        buf.flip();
+        int n = buf.remaining();
+        crc.update(buf.duplicate());
+        long p = pos;
+        while (buf.hasRemaining()) {
+            p += out.write(buf, p);
+        }
+        buf.clear();
+        return n;
+    }
+
+    // ------------------------------------------------------------------ 工具
+
+    private List<Path> indexFilesNewestFirst() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, INDEX_PREFIX + "*")) {
+            for (Path file : stream) {
+                if (file.getFileName().toString().endsWith(INDEX_SUFFIX) && generationOf(file) >= 0) {
+                    files.add(file);
+                } else {
+                    deleteQuietly(file); // 合併到一半留下的 .tmp
+                }
+            }
+        }
+        files.sort((a, b) -> Long.compare(generationOf(b), generationOf(a)));
+        return files;
+    }
+
+    private static long generationOf(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(INDEX_PREFIX) || !name.endsWith(INDEX_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(INDEX_PREFIX.length(), name.length() - INDEX_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // 下次開啟時再試
+        }
+    }
+
+    private void writeFully(ByteBuffer buf, long position) throws IOException {
+        long p = position;
+        while (buf.hasRemaining()) {
+            p += log.write(buf, p);
+        }
+    }
+
+    private void readFully(ByteBuffer buf, long position) throws IOException {
+        long p = position;
+        while (buf.hasRemaining()) {
+            int n = log.read(buf, p);
+            if (n < 0) {
+                throw new EOFException();
+            }
+            p += n;
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Leaderboard already closed");
+        }
+    }
+
+    /** 等進行中的合併結束後關閉檔案（釋放目錄的 file lock）。 */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        compactor.shutdown();
+        try {
+            if (!compactor.awaitTermination(GameConfig.ASYNC_FLUSH_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                System.err.println("⚠️ Leaderboard compaction still running at close.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            log.close();
+        } catch (IOException e) {
+            System.err.println("⚠️ Error closing leaderboard log: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package typinggame;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import javax.management.JMException;
+import javax.management.NotificationEmitter;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Low-overhead per-phase timing: one {@link LatencyHistogram} per phase, published once per window.
+ *
+ * 量測點只呼叫 {@link #start()} / {@link #end(Phase, long)}（兩次 System.nanoTime + 一次 atomic 加一），
+ * 每過 {@link GameConfig#PROFILER_WINDOW_MS} 由遊戲迴圈呼叫 {@link #roll()}，把這段時間的
+ * p50 / p99 / max 固定成 {@link Snapshot} 並清空重新累計；畫面上的疊加資訊 (F3) 與 JMX 都只讀發布後的結果。
+ * GC 暫停時間由 GarbageCollectorMXBean 的通知取得，可以直接和 frame / update / render 的尖峰對照，
+ * 判斷卡頓來自 GC、資料庫還是繪製。
+ *
+ * 以 -Dtypinggame.profile=false 關閉時所有量測都是空操作。
+ */
+public final class FrameProfiler implements FrameProfilerMXBean {
+
+    /** 量測的階段；縮排的是 RENDER 底下的區段。 */
+    public enum Phase {
+        FRAME("frame"),          // 兩次繪製之間的間隔
+        UPDATE("update"),        // 一次 engine.update()
+        RENDER("render"),        // 一整幀的繪製
+        BACKGROUND("  bg"),
+        SPRITES("  sprites"),
+        WORD_BAR("  word bar"),
+        HUD("  hud"),
+        GAME_OVER("  game over"),
+        INPUT("input"),          // 按鍵事件發生到送進引擎（在佇列中等待的時間）
+        KEY_TO_SCREEN("key->screen"), // 按鍵事件發生到回饋畫面送出
+        STORAGE("storage"),      // 一次排行榜讀寫
+        GC("gc pause");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    /** 某個階段在一個統計區間內的結果（不可變）。 */
+    public static final class Snapshot {
+        private final String name;
+        private final long count;
+        private final long p50;
+        private final long p99;
+        private final long max;
+        private final double mean;
+
+        Snapshot(String name, long count, long p50, long p99, long max, double mean) {
+            this.name = name;
+            this.count = count;
+            this.p50 = p50;
+            this.p99 = p99;
+            this.max = max;
+            this.mean = mean;
+        }
+
+        public String getName() { return name; }
+        public long getCount() { return count; }
+        public double getP50Micros() { return p50 / 1000.0; }
+        public double getP99Micros() { return p99 / 1000.0; }
+        public double getMaxMicros() { return max / 1000.0; }
+        public double getMeanMicros() { return mean / 1000.0; }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-11s %6d %8s %8s %8s", name, count,
+                    formatNanos(p50), formatNanos(p99), formatNanos(max));
+        }
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+    private static final String OVERLAY_HEADER = String.format(Locale.ROOT, "%-11s %6s %8s %8s %8s",
+            "phase", "n", "p50", "p99", "max");
+
+    private static final FrameProfiler SHARED = createShared();
+
+    private final boolean enabled;
+    private final long windowNanos;
+    private final LatencyHistogram[] live = new LatencyHistogram[PHASES.length];
+    private long windowStart = System.nanoTime();
+
+    private volatile Snapshot[] published;
+    private volatile String[] overlayLines;
+    private volatile boolean overlayVisible;
+
+    FrameProfiler(boolean enabled, long windowMillis) {
+        this.enabled = enabled;
+        this.windowNanos = windowMillis * 1_000_000L;
+        for (int i = 0; i < live.length; i++) {
+            live[i] = new LatencyHistogram();
+        }
+        Snapshot[] empty = new Snapshot[PHASES.length];
+        for (Phase p : PHASES) {
+            empty[p.ordinal()] = new Snapshot(p.getLabel(), 0, 0, 0, 0, 0);
+        }
+        publish(empty);
+    }
+
+    /** 整個 process 共用的 profiler（第一次使用時註冊 JMX 與 GC 監聽）。 */
+    public static FrameProfiler shared() {
+        return SHARED;
+    }
+
+    private static FrameProfiler createShared() {
+        FrameProfiler profiler = new FrameProfiler(GameConfig.PROFILING, GameConfig.PROFILER_WINDOW_MS);
+        if (profiler.enabled) {
+            profiler.registerMBean();
+            profiler.listenForGc();
+        }
+        return profiler;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // ------------------------------------------------------------------ 量測
+
+    /** 開始量測，回傳的值交給 {@link #end}。 */
+    public long start() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    public void end(Phase phase, long start) {
+        if (enabled) {
+            live[phase.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    public void record(Phase phase, long nanos) {
+        if (enabled) {
+            live[phase.ordinal()].record(nanos);
+        }
+    }
+
+    /** 統計區間結束時發布結果並重新累計；不到時間時只是一次比較。由遊戲迴圈每輪呼叫。 */
+    public void roll() {
+        if (!enabled || System.nanoTime() - windowStart < windowNanos) {
+            return;
+        }
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (now - windowStart < windowNanos) {
+                return;
+            }
+            windowStart = now;
+            Snapshot[] snapshots = new Snapshot[PHASES.length];
+            for (Phase p : PHASES) {
+                LatencyHistogram h = live[p.ordinal()];
+                snapshots[p.ordinal()] = new Snapshot(p.getLabel(), h.count(), h.percentile(50), h.percentile(99),
+                        h.max(), h.mean());
+                h.reset();
+            }
+            publish(snapshots);
+        }
+    }
+
+    private void publish(Snapshot[] snapshots) {
+        // 疊加資訊的文字在這裡組好（每個區間一次），繪製時不再格式化字串
+        String[] lines = new String[snapshots.length + 1];
+        lines[0] = OVERLAY_HEADER;
+        for (int i = 0; i < snapshots.length; i++) {
+            lines[i + 1] = snapshots[i].toString();
+        }
+        published = snapshots;
+        overlayLines = lines;
+    }
+
+    static String formatNanos(long nanos) {
+        if (nanos < 1_000_000L) {
+            return String.format(Locale.ROOT, "%.0fus", nanos / 1e3);
+        }
+        if (nanos < 1_000_000_000L) {
+            return String.format(Locale.ROOT, "%.1fms", nanos / 1e6);
+        }
+        return String.format(Locale.ROOT, "%.2fs", nanos / 1e9);
+    }
+
+    // ------------------------------------------------------------------ 讀取
+
+    public Snapshot snapshot(Phase phase) {
+        return published[phase.ordinal()];
+    }
+
+    /** 最近一個區間的疊加資訊（第一行為標題）；回傳的陣列不可修改。 */
+    String[] getOverlayLines() {
+        return overlayLines;
+    }
+
+    public void toggleOverlay() {
+        overlayVisible = !overlayVisible;
+    }
+
+    @Override public Snapshot getFrame() { return snapshot(Phase.FRAME); }
+    @Override public Snapshot getUpdate() { return snapshot(Phase.UPDATE); }
+    @Override public Snapshot getRender() { return snapshot(Phase.RENDER); }
+    @Override public Snapshot getInput() { return snapshot(Phase.INPUT); }
+    @Override public Snapshot getKeyToScreen() { return snapshot(Phase.KEY_TO_SCREEN); }
+    @Override public Snapshot getStorage() { return snapshot(Phase.STORAGE); }
+    @Override public Snapshot getGc() { return snapshot(Phase.GC); }
+
+    @Override
+    public List<Snapshot> getPhases() {
+        return Collections.unmodifiableList(Arrays.asList(published.clone()));
+    }
+
+    @Override
+    public boolean isOverlayVisible() {
+        return overlayVisible;
+    }
+
+    @Override
+    public void setOverlayVisible(boolean visible) {
+        overlayVisible = visible;
+    }
+
+    // ------------------------------------------------------------------ JMX / GC
+
+    private void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                    .registerMBean(this, new ObjectName("typinggame:type=FrameProfiler"));
+        } catch (JMException e) {
+            System.err.println("⚠️ Failed to register profiler MBean: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 每次 GC 結束時記錄其時間。只看會暫停應用程式的收集器：
+     * 名稱含 Concurrent / Cycles 的是與程式並行的階段（例如 G1 Concurrent GC、ZGC Cycles），不算卡頓。
+     */
+    private void listenForGc() {
+        boolean watching = false;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            String name = gc.getName();
+            if (!(gc instanceof NotificationEmitter) || name.contains("Concurrent") || name.contains("Cycles")) {
+                continue;
+            }
+            ((NotificationEmitter) gc).addNotificationListener((notification, handback) -> {
+                if (com.sun.management.GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION
+                        .equals(notification.getType())) {
+                    com.sun.management.GarbageCollectionNotificationInfo info = com.sun.management
+                            .GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                    record(Phase.GC, info.getGcInfo().getDuration() * 1_000_000L);
+                }
+            }, null, null);
+            watching = true;
+        }
+        if (!watching) {
+            System.err.println("⚠️ No GC notifications available; gc pause will stay empty.");
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package typinggame;
+
+import java.util.List;
+
+/**
+ * JMX view of {@link FrameProfiler}（在 jconsole / VisualVM 的 typinggame:type=FrameProfiler 底下）。
+ * 數值都是最近一個統計區間 ({@link GameConfig#PROFILER_WINDOW_MS}) 的結果。
+ */
+public interface FrameProfilerMXBean {
+
+    FrameProfiler.Snapshot getFrame();
+
+    FrameProfiler.Snapshot getUpdate();
+
+    FrameProfiler.Snapshot getRender();
+
+    FrameProfiler.Snapshot getInput();
+
+    FrameProfiler.Snapshot getKeyToScreen();
+
+    FrameProfiler.Snapshot getStorage();
+
+    FrameProfiler.Snapshot getGc();
+
+    /** 所有階段（包含繪製的各個區段）。 */
+    List<FrameProfiler.Snapshot> getPhases();
+
+    boolean isOverlayVisible();
+
+    void setOverlayVisible(boolean visible);
+}
@@ -0,0 +1,69 @@
+package typinggame;
+
+import java.awt.*;
+import java.awt.image.BufferStrategy;
+
+/**
+ * Active-rendering surface: draws from the game-loop thread into a {@link BufferStrategy}
+ * instead of waiting for Swing's repaint.
+ *
+ * 以 -Dtypinggame.render=active 啟用。繪製不經過 EDT 的 repaint 佇列，
+ * 每幀由 GameLoop 直接畫進後緩衝區再 show()；在支援的平台上會用硬體翻頁 (page flipping)。
+ */
+public class GameCanvas extends Canvas {
+
+    private static final long serialVersionUID = 1L;
+    private static final int BUFFERS = 2;
+
+    private final GameRenderer renderer;
+    private BufferStrategy strategy;
+
+    public GameCanvas(GameRenderer renderer) {
+        this.renderer = renderer;
+        setIgnoreRepaint(true); // 畫面完全由 render() 負責
+        setBackground(Color.WHITE);
+        setPreferredSize(renderer.getScaledSize());
+        setFocusable(true);
+    }
+
+    /** 由 GameLoop 執行緒呼叫；元件尚未顯示時直接略過。 */
+    public void render(double alpha) {
+        BufferStrategy bs = strategy;
+        if (bs == null) {
+            if (!isDisplayable()) {
+                return;
+            }
+            createBufferStrategy(BUFFERS);
+            bs = strategy = getBufferStrategy();
+        }
+        try {
+            // 緩衝區內容可能被系統回收（例如切換顯示模式），此時重畫一次
+            do {
+                do {
+                    Graphics2D g = (Graphics2D) bs.getDrawGraphics();
+                    try {
+                        g.setColor(Color.WHITE);
+                        g.fillRect(0, 0, getWidth(), getHeight());
+                        renderer.render(g, alpha);
+                    } finally {
+                        g.dispose();
+                    }
+                } while (bs.contentsRestored());
+                bs.show();
+            } while (bs.contentsLost());
+        } catch (IllegalStateException e) {
+            // 元件在繪製途中被移除，下次重新建立
+            strategy = null;
+            return;
+        }
+        // 讓畫面立即送出，避免部分平台緩衝導致節奏不穩
+        Toolkit.getDefaultToolkit().sync();
+        renderer.presented();
+    }
+
+    @Override
+    public void removeNotify() {
+        strategy = null;
+        super.removeNotify();
+    }
+}
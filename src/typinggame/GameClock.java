@@ -0,0 +1,15 @@
+package typinggame;
+
+/**
+ * Time source used by the engine for wall-clock style reads (effects, score dates).
+ *
+ * 正常遊戲使用 {@link #SYSTEM}；無視窗模擬則注入 {@link ManualClock}，
+ * 讓時間跟著模擬步數前進，一秒內可以跑完上千場遊戲。
+ */
+public interface GameClock {
+
+    GameClock SYSTEM = System::currentTimeMillis;
+
+    /** 目前時間 (epoch millis)。 */
+    long millis();
+}
@@ -8,15 +8,90 @@ public final class GameConfig {
     public static final int HEIGHT = 300;
     public static final int GROUND_Y = 220;
 
-    public static final int TIMER_DELAY_MS = 16;            // ~60 FPS
+    public static final int SIM_HZ = 60;                    // 固定模擬頻率 (物理/生成皆以此為一幀)
+    public static final long SIM_STEP_NANOS = 1_000_000_000L / SIM_HZ;
+    public static final int TARGET_FPS = Integer.getInteger("typinggame.fps", 60); // 60 / 120 / 144
+    public static final int MAX_CATCH_UP_STEPS = 5;         // 落後時一次最多補算幾步
+    public static final int MAX_FRAME_SKIP = 5;             // 落後時最多連續略過幾次繪製
+    public static final double COLLISION_CELL_SIZE = 64;    // 碰撞偵測格子大小 (px)
+    // 繪製模式：swing = JPanel.repaint()；active = Canvas + BufferStrategy，由 GameLoop 直接繪製
+    public static final boolean ACTIVE_RENDERING = "active".equals(System.getProperty("typinggame.render", "swing"));
+    public static final boolean ACCELERATED_IMAGES =   // 圖片轉成顯示卡可加速的格式
+            !"false".equals(System.getProperty("typinggame.accelImages"));
+    public static final double RENDER_SCALE = parsePositive("typinggame.scale", 1.0); // 視窗放大倍率
     public static final int INITIAL_SPAWN_INTERVAL = 120;   // frames
     public static final int MIN_SPAWN_INTERVAL = 60;        // frames
     public static final int SPAWN_STEP = 2;                 // frames per difficulty bump
     public static final int DIFFICULTY_INTERVAL_MS = 5000;  // how often to speed up
 
+    public static final int LEADERBOARD_CAPACITY = 100;     // 記憶體排行榜保留前 N 名
+    public static final int LEADERBOARD_CACHE_SIZE = 20;    // 快取前 N 名
+    public static final long LEADERBOARD_CACHE_TTL_MS = 30_000; // 快取多久後重新查詢
+    // 排行榜儲存方式：mongo（連不上時改用 file）/ file（本機檔案，離線機台用）/ memory
+    public static final String LEADERBOARD_STORE = System.getProperty("typinggame.leaderboard", "mongo");
+    public static final String LEADERBOARD_DIR = System.getProperty("typinggame.leaderboardDir",
+            System.getProperty("user.home") + "/.typinggame/leaderboard");
+    public static final boolean LEADERBOARD_FSYNC = // 每次寫入都等資料落到磁碟
+            !"false".equals(System.getProperty("typinggame.leaderboardFsync"));
+    public static final int LEADERBOARD_COMPACT_THRESHOLD = 4096; // 索引外累積幾筆後背景合併
+    public static final int LEADERBOARD_COMPACT_MAX = 1 << 18;    // 合併門檻隨索引成長的上限
+    public static final int EXPORT_BATCH_SIZE = 1000;       // 匯出時每次向資料庫取幾筆 (cursor batch)
+    public static final int IMPORT_BATCH_SIZE = 1000;       // 匯入時每批寫入幾筆
+    public static final String MONGO_URI = System.getProperty("typinggame.mongoUri", "mongodb://localhost:27017");
+    public static final int MONGO_MAX_POOL_SIZE = 10;       // 連線池上限（遊戲端寫入量很小）
+    public static final int MONGO_MIN_POOL_SIZE = 0;
+    public static final long MONGO_POOL_WAIT_MS = 2000;     // 等待可用連線的上限
+    public static final long MONGO_CONNECT_TIMEOUT_MS = 1000;
+    public static final long MONGO_SOCKET_TIMEOUT_MS = 5000;
+    public static final long MONGO_SERVER_SELECTION_TIMEOUT_MS = 1500; // 資料庫沒開時多快放棄
+    public static final int ASYNC_QUEUE_CAPACITY = 1024;    // 背景寫入佇列上限
+    public static final int ASYNC_BATCH_SIZE = 64;          // 一次批次寫入最多幾筆
+    public static final long ASYNC_FLUSH_TIMEOUT_MS = 5000; // 關閉時最多等多久把佇列送完
+    public static final int WORD_REPEAT_WINDOW = 8;         // 最近 N 個字不重複出現
+    // 多目標模式：輸入可鎖定畫面上任何一個前綴相符的障礙物，而不只是最前面那個
+    public static final boolean MULTI_TARGET = Boolean.getBoolean("typinggame.multiTarget");
+    public static final int TEXT_SPRITE_CACHE_SIZE = 256;   // 預先畫好的文字圖片最多保留幾張
+    // 各階段耗時統計 (FrameProfiler)：F3 顯示 / JMX 匯出，每個區間重新累計
+    public static final boolean PROFILING = !"false".equals(System.getProperty("typinggame.profile"));
+    public static final long PROFILER_WINDOW_MS = 1000;
+    // 重播：replayDir 設定時每場結束都存一個重播檔；replay 指定檔案時改為播放，replaySpeed 為播放倍速
+    public static final String REPLAY_DIR = System.getProperty("typinggame.replayDir");
+    public static final String REPLAY_FILE = System.getProperty("typinggame.replay");
+    public static final double REPLAY_SPEED = parsePositive("typinggame.replaySpeed", 1.0);
+    // 連線對戰 (RaceServer)：預設只聽本機，-Dtypinggame.raceBind=0.0.0.0 開放給區網
+    public static final int RACE_PORT = Integer.getInteger("typinggame.racePort", 7777);
+    public static final String RACE_BIND = System.getProperty("typinggame.raceBind", "127.0.0.1");
+    public static final int RACE_MAX_SESSIONS = Integer.getInteger("typinggame.raceMaxSessions", 10_000);
+    public static final int RACE_SYNC_TICKS = 6;            // 用戶端每幾步回報一次進度 (100ms)
+    public static final int RACE_MAX_LEAD_TICKS = SIM_HZ / 4; // 用戶端最多可超前伺服器時鐘幾步，超過就等
+    public static final int RACE_MAX_LAG_TICKS = SIM_HZ * 2;  // 伺服器的 engine 最多落後真實時間幾步（用戶端沒推進時自行推進）
+    public static final int RACE_IDLE_MS = 500;             // 多久沒收到資料就檢查一次是否要自行推進
+    public static final int RACE_MAX_KEYS_PER_TICK = 2;     // 同一步最多接受幾個按鍵
+    public static final int RACE_MAX_REJECTED_KEYS = 200;   // 不合法的按鍵超過這個數量就中斷連線
+    public static final int RACE_MAX_NAME_LENGTH = 32;
+    public static final int RACE_STANDINGS_SIZE = 10;       // 比賽中送給玩家的名次數
+    public static final long RACE_STANDINGS_MS = 1000;      // 名次多久重新排序、送出一次
+
     public static final double INITIAL_SPEED = 4.0;
     public static final double SPEED_INCREMENT = 0.1;
 
+    private static double parsePositive(String property, double defaultValue) {
+        String value = System.getProperty(property);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            double parsed = Double.parseDouble(value);
+            if (parsed > 0) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            // 落到下面的警告
+        }
+        System.err.println("⚠️ Invalid " + property + " '" + value + "', using " + defaultValue);
+        return defaultValue;
+    }
+
     private GameConfig() {
         // no instances
     }
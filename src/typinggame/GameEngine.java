@@ -1,10 +1,8 @@
 package typinggame;
 
-import java.awt.*;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Core game logic (state, updates, spawning, collisions, typing).
@@ -13,6 +11,13 @@ import java.util.Random;
  * 1. 取消手動 Space 跳躍、取消滑行，只保留「自動跳躍」。
  * 2. 玩家正確輸入障礙物單字後，當障礙物靠近玩家時自動跳躍並清除障礙物。
  * 3. Space 在 Game Over 畫面中用來重新開始遊戲（在 GamePanel 處理）。
+ * 4. 多目標模式 ({@link GameConfig#MULTI_TARGET})：輸入可以鎖定畫面上任何前綴相符的障礙物，
+ *    由 {@link WordMatcher} 在按鍵當下逐字比對；預設模式仍只比對最前面的障礙物。
+ * 5. 碰撞改由 {@link CollisionWorld}（世界座標 + 格子索引）判斷，玩家會與任何一個還沒打完的障礙物碰撞，
+ *    每步只查詢玩家附近的格子，與障礙物總數無關。
+ * 6. 每場遊戲由一個 seed 決定所有亂數，遊戲邏輯只看模擬步數、不看牆上時間：
+ *    同一個 seed 加上同樣「在第幾步按了什麼鍵」一定得到同樣的結果，可用 {@link ReplayRecorder} 錄下來、
+ *    {@link ReplayPlayer} 重新模擬。
  */
 public class GameEngine {
     private static final int MAX_TYPED_LENGTH = 20;
@@ -24,31 +29,55 @@ public class GameEngine {
     private long lastCorrectInputAt = -1;
     private static final long CORRECT_EFFECT_MS = 200;
 
-    private final List<Obstacle> obstacles = new ArrayList<>();
+    private final ObstacleStore obstacles = new ObstacleStore(); // 環狀緩衝區，遊戲中不配置物件
+    private final CollisionWorld collisions = new CollisionWorld(GameConfig.COLLISION_CELL_SIZE);
+    private int playerBody = -1;
     private final Player player;
     private final WordGenerator wordGenerator;
-    private final Random random = new Random();
+    private final Random seeds = new Random();     // 沒有指定 seed 時，用來產生每場的 seed
+    private final Random random = new Random();    // 本場遊戲的亂數，每場以 seed 重設
+    private long seed;
+    private ReplayRecorder recorder;
 
     private final StringBuilder typedInput = new StringBuilder();
+    // 單一目標模式：typedInput 前 matchedLen 個字已確認符合 matchedSeq 這個障礙物，每步只比對新打的字
+    private long matchedSeq = -1;
+    private int matchedLen;
+
+    private boolean multiTargetSetting = GameConfig.MULTI_TARGET;
+    private boolean multiTarget;                   // 本場遊戲使用的模式（startGame 時套用設定）
+    private final WordMatcher matcher = new WordMatcher();
     private final ScrollingBackground background; // 背景物件
 
     private boolean running;
     private boolean gameOver;
-    private long startTime;
-    private long endedAt;
+    private long elapsedNanos;  // 模擬時間：每次 update 固定前進一步，不受繪製卡頓影響
 
+    private boolean spawning = true;
     private int spawnCounter;
     private int spawnInterval;
     private double speed;
-    private long lastDifficultyIncreaseAt;
+    // 本場的打字統計（存進 ScoreEntry）
+    private int letterKeys;      // 按下的字母鍵數
+    private int wordsCleared;
+    private int clearedChars;    // 打完的單字總字數
+    private long lastDifficultyIncreaseAt; // 模擬時間 (ns)
 
     private String playerName;
     private final LeaderboardStorage leaderboard;
-    private List<ScoreEntry> topScores; // 暫存排行榜給 UI 顯示用
+    private final GameClock clock;
+    private volatile List<ScoreEntry> topScores; // 暫存排行榜給 UI 顯示用（查詢完成前為 null）
+    private volatile CompletableFuture<List<ScoreEntry>> pendingTopScores;
 
     public GameEngine(String playerName, LeaderboardStorage leaderboard) {
+        this(playerName, leaderboard, GameClock.SYSTEM);
+    }
+
+    /** 可注入時鐘的版本，供無視窗模擬 ({@link HeadlessSimulation}) 使用。 */
+    public GameEngine(String playerName, LeaderboardStorage leaderboard, GameClock clock) {
         this.playerName = playerName;
         this.leaderboard = leaderboard;
+        this.clock = clock;
 
         this.player = new Player(80, GameConfig.GROUND_Y);
         this.wordGenerator = new WordGenerator();
@@ -56,23 +85,41 @@ public class GameEngine {
         // 假設你有一張 bg.png，沒有的話它會自動用備案的藍天圖
         // 係數 0.5 代表它移動速度是障礙物的一半 (製造遠景感)
         this.background = new ScrollingBackground(0.5);
+        // 沒打完就離開畫面的單字要從多目標比對中移除
+        obstacles.setRemovalListener(slot -> {
+            removeBody(slot);
+            if (multiTarget && !obstacles.isCleared(slot)) {
+                forgetWord(obstacles.seq(slot), obstacles.word(slot));
+            }
+        });
         resetGameState();
     }
 
     private void resetGameState() {
         obstacles.clear();
+        matcher.clear();
+        multiTarget = multiTargetSetting;
         player.reset(80, GameConfig.GROUND_Y);
+        collisions.clear();
+        playerBody = collisions.add(CollisionWorld.PLAYER, 0, player.getX(), player.getY(),
+                player.getWidth(), player.getHeight());
         typedInput.setLength(0);
+        matchedSeq = -1;
+        matchedLen = 0;
+        topScores = null;
+        pendingTopScores = null;
 
         running = false;
         gameOver = false;
-        startTime = 0L;
-        endedAt = 0L;
+        elapsedNanos = 0L;
 
         spawnInterval = GameConfig.INITIAL_SPAWN_INTERVAL;
         spawnCounter = spawnInterval;
         speed = GameConfig.INITIAL_SPEED;
-        lastDifficultyIncreaseAt = System.currentTimeMillis();
+        lastDifficultyIncreaseAt = 0L;
+        letterKeys = 0;
+        wordsCleared = 0;
+        clearedChars = 0;
 
         if (background != null) {
             background.reset();
@@ -80,34 +127,40 @@ public class GameEngine {
     }
 
     public void startGame() {
+        startGame(seeds.nextLong());
+    }
+
+    /** 以指定的 seed 開始新的一場（同一個 seed 抽到的單字序列相同）。 */
+    public void startGame(long gameSeed) {
         resetGameState();
+        seed = gameSeed;
+        random.setSeed(gameSeed);
+        wordGenerator.reseed(random.nextLong());
         running = true;
         gameOver = false;
-        startTime = System.currentTimeMillis();
-        lastDifficultyIncreaseAt = startTime;
+        if (recorder != null) {
+            recorder.begin(gameSeed, multiTarget, playerName, clock.millis(), wordGenerator.dictionaryFingerprint());
+        }
     }
 
+    /** 前進一個固定模擬步 ({@link GameConfig#SIM_STEP_NANOS})。 */
     public void update() {
         if (!running) {
             return;
         }
 
+        elapsedNanos += GameConfig.SIM_STEP_NANOS;
+
         player.update();
 
         // 更新背景 (傳入當前的遊戲速度)
         background.update(speed);
 
-        // 移動障礙物並移除離開畫面的
-        for (int i = obstacles.size() - 1; i >= 0; i--) {
-            Obstacle o = obstacles.get(i);
-            o.moveLeft(speed);
-            if (o.getX() + o.getWidth() < 0) {
-                obstacles.remove(i);
-            }
-        }
+        // 移動障礙物並移除離開畫面的（一定在隊首，O(1)）
+        obstacles.moveLeftAndExpire(speed);
 
         // 生成計數
-        if (--spawnCounter <= 0) {
+        if (spawning && --spawnCounter <= 0) {
             spawnObstacle();
             spawnCounter = spawnInterval;
         }
@@ -128,17 +181,49 @@ public class GameEngine {
         String word = wordGenerator.next(difficultyLevel);
 
         Obstacle.Type type = Obstacle.Type.JUMP; // 只保留跳躍型障礙
-        int width = 40 + word.length() * 4;
-        int height = 40;
-        int y = GameConfig.GROUND_Y - height;
+        // 大小與 y 由圖片決定（貼齊地面）
+        register(obstacles.add(GameConfig.WIDTH, word, type, Assets.get().getCactus()));
+    }
+
+    /** 直接在 x 放入一個障礙物（效能量測 / 壓力測試用）。 */
+    void addObstacle(double x, String word) {
+        register(obstacles.add(x, word, Obstacle.Type.JUMP, Assets.get().getCactus()));
+    }
+
+    /** 新障礙物登記到碰撞世界與單字比對。 */
+    private void register(int slot) {
+        int id = collisions.add(CollisionWorld.OBSTACLE, obstacles.seq(slot), obstacles.worldX(slot),
+                obstacles.y(slot), obstacles.width(slot), obstacles.height(slot));
+        obstacles.setBody(slot, id);
+        if (multiTarget) {
+            matcher.add(obstacles.seq(slot), obstacles.word(slot));
+        }
+    }
+
+    /** 打完的障礙物不再造成碰撞，等它到玩家面前時自動跳過。 */
+    private void markCleared(int slot) {
+        wordsCleared++;
+        clearedChars += obstacles.word(slot).length();
+        obstacles.markCleared(slot);
+        removeBody(slot);
+    }
+
+    private void removeBody(int slot) {
+        int id = obstacles.body(slot);
+        if (id >= 0) {
+            collisions.remove(id);
+            obstacles.setBody(slot, -1);
+        }
+    }
 
-        obstacles.add(new Obstacle(GameConfig.WIDTH, y, width, height, word, type));
+    /** 停止自動生成（效能量測 / 壓力測試用，只留下手動放入的障礙物）。 */
+    void setSpawning(boolean spawning) {
+        this.spawning = spawning;
     }
 
     private void maybeIncreaseDifficulty() {
-        long now = System.currentTimeMillis();
-        if (now - lastDifficultyIncreaseAt >= GameConfig.DIFFICULTY_INTERVAL_MS) {
-            lastDifficultyIncreaseAt = now;
+        if (elapsedNanos - lastDifficultyIncreaseAt >= GameConfig.DIFFICULTY_INTERVAL_MS * 1_000_000L) {
+            lastDifficultyIncreaseAt = elapsedNanos;
             speed += GameConfig.SPEED_INCREMENT;
             spawnInterval = Math.max(GameConfig.MIN_SPAWN_INTERVAL,
                     spawnInterval - GameConfig.SPAWN_STEP);
@@ -152,72 +237,136 @@ public class GameEngine {
         if (!running || gameOver) {
             return;
         }
+        if (recorder != null) {
+            recorder.record(getTick(), ch);
+        }
 
         // Backspace
         if (ch == '\b') {
             if (typedInput.length() > 0) {
                 typedInput.setLength(typedInput.length() - 1);
+                matcher.backspace();
+                // 被刪掉的字可能在同一步內被換成別的字，要重新比對
+                matchedLen = Math.min(matchedLen, typedInput.length());
             }
             return;
         }
 
         // 只接受英文字母
         if (Character.isLetter(ch)) {
+            letterKeys++;
             if (typedInput.length() < MAX_TYPED_LENGTH) {
-                typedInput.append(Character.toLowerCase(ch));
+                char lower = Character.toLowerCase(ch);
+                if (multiTarget) {
+                    typeMultiTarget(lower);
+                } else {
+                    typedInput.append(lower);
+                    // 按鍵當下就比對，打完的字立刻標記，不等下一個模擬步
+                    if (!obstacles.isEmpty()) {
+                        matchHeadWord(obstacles.slot(0));
+                    }
+                }
             }
         }
     }
 
+    /** 多目標模式：按鍵當下就在 trie 中前進一步。 */
+    private void typeMultiTarget(char ch) {
+        switch (matcher.advance(ch)) {
+            case WordMatcher.MISMATCH:
+                // 沒有任何單字以此開頭：清空重打 + 錯誤特效
+                typedInput.setLength(0);
+                matcher.reset();
+                lastWrongInputAt = clock.millis();
+                break;
+            case WordMatcher.COMPLETE:
+                long key = matcher.completedKey();
+                int index = obstacles.indexOfSeq(key);
+                if (index >= 0) {
+                    int slot = obstacles.slot(index);
+                    markCleared(slot);
+                    forgetWord(key, obstacles.word(slot));
+                }
+                typedInput.setLength(0);
+                lastCorrectInputAt = clock.millis();
+                break;
+            default:
+                typedInput.append(ch);
+                break;
+        }
+    }
+
+    /** 從多目標比對中移除；目前輸入若因此沒有任何目標就一併清空。 */
+    private void forgetWord(long seq, String word) {
+        matcher.remove(seq, word);
+        if (matcher.depth() < typedInput.length()) {
+            typedInput.setLength(matcher.depth());
+        }
+    }
+
     /**
      * 碰撞與自動跳躍判斷：
      * - 若玩家打對單字，會把該障礙物標記為 cleared。
      * - 當 cleared 的障礙物接近玩家時，自動跳躍並清除。
-     * - 若未 cleared 且發生碰撞，Game Over。
+     * - 與任何未 cleared 的障礙物碰撞，Game Over。
      */
     private void checkCollisionOrAvoid() {
-        if (obstacles.isEmpty()) {
-            return;
-        }
+        if (!obstacles.isEmpty()) {
+            int first = obstacles.slot(0);
 
-        Obstacle first = obstacles.get(0);
+            // 處理打字與前綴（多目標模式在按鍵時就處理完了）
+            if (!multiTarget) {
+                matchHeadWord(first);
+            }
 
-        // 處理打字與前綴
-        String target = first.getWord().toLowerCase();
-        String typed = typedInput.toString();
+            // 已經打對單字的障礙物到達玩家 X 範圍附近：自動跳躍並清除
+            if (obstacles.isCleared(first) && obstacles.x(first) < player.getX() + player.getWidth()) {
+                performAvoidAction(obstacles.type(first));
+                obstacles.popHead();
+            }
+        }
 
-        if (!typed.isEmpty() && !target.startsWith(typed)) {
-            // 打錯，清空重打 + 啟動錯誤特效
-            typedInput.setLength(0);
-            typed = "";
-            lastWrongInputAt = System.currentTimeMillis();
+        // 沒打對：只查詢玩家附近的格子
+        collisions.move(playerBody, player.getX() + obstacles.scroll(), player.getY());
+        if (collisions.queryBody(playerBody, CollisionWorld.HAZARDS) > 0) {
+            gameOver();
         }
+    }
 
+    /**
+     * 單一目標：比對 typedInput 與最前面的單字（不分大小寫）。
+     * 只檢查上次之後新打的字，不再每步 toLowerCase + startsWith 整個字串。
+     */
+    private void matchHeadWord(int first) {
+        long seq = obstacles.seq(first);
+        if (seq != matchedSeq) {
+            // 目標換了，從頭比對
+            matchedSeq = seq;
+            matchedLen = 0;
+        }
+        String target = obstacles.word(first);
+        int typedLen = typedInput.length();
+
+        while (matchedLen < typedLen) {
+            char typed = typedInput.charAt(matchedLen);
+            if (matchedLen >= target.length() || typed != Character.toLowerCase(target.charAt(matchedLen))) {
+                // 打錯，清空重打 + 啟動錯誤特效
+                typedInput.setLength(0);
+                matchedLen = 0;
+                lastWrongInputAt = clock.millis();
+                return;
+            }
+            matchedLen++;
+        }
 
-        if (!typed.isEmpty() && typed.equals(target) && !first.isCleared()) {
+        if (matchedLen > 0 && matchedLen == target.length() && !obstacles.isCleared(first)) {
             // 單字輸入完成，標記為已清除
-            first.markCleared();
+            markCleared(first);
             typedInput.setLength(0);
+            matchedLen = 0;
 
             // ✅ 啟動「打勾」特效
-            lastCorrectInputAt = System.currentTimeMillis();
-        }
-
-
-        // 當障礙物到達玩家 X 範圍附近時處理
-        if (first.getX() < player.getX() + player.getWidth()) {
-            if (first.isCleared()) {
-                // 已經打對單字：自動跳躍並清除障礙物
-                performAvoidAction(first.getType());
-                obstacles.remove(0);
-            } else {
-                // 沒打對：檢查是否撞到
-                Rectangle pRect = player.getBounds();
-                Rectangle oRect = first.getBounds();
-                if (pRect.intersects(oRect)) {
-                    gameOver();
-                }
-            }
+            lastCorrectInputAt = clock.millis();
         }
     }
 
@@ -230,17 +379,28 @@ public class GameEngine {
         if (!gameOver) {
             gameOver = true;
             running = false;
-            endedAt = System.currentTimeMillis();
 
             // 儲存分數並撈取排行榜
             long score = getElapsedMillis() / 1000;
-            ScoreEntry entry = new ScoreEntry(playerName, score);
+            ScoreEntry entry = new ScoreEntry(playerName, score, clock.millis(),
+                    wordsCleared, getWpm(), getAccuracy(), speed);
             
-            // 存入 DB
+            // 存入 DB（AsyncLeaderboard 只會排進佇列，不阻塞遊戲執行緒）
             leaderboard.saveScore(entry);
+            if (recorder != null) {
+                recorder.finish(getTick(), score);
+            }
             
-            // 讀取前 5 名
-            topScores = leaderboard.getTopScores(5);
+            // 讀取前 5 名：完成後才填入；若期間已重新開始則丟棄結果
+            CompletableFuture<List<ScoreEntry>> request = leaderboard.getTopScoresAsync(5);
+            pendingTopScores = request;
+            request.whenComplete((list, err) -> {
+                if (err != null) {
+                    System.err.println("⚠️ Failed to load leaderboard: " + err.getMessage());
+                } else if (pendingTopScores == request) {
+                    topScores = list;
+                }
+            });
         }
     }
 
@@ -258,8 +418,14 @@ public class GameEngine {
         return player;
     }
 
-    public java.util.List<Obstacle> getObstacles() {
-        return Collections.unmodifiableList(obstacles);
+    /** 以索引走訪障礙物（0 = 最前面），不建立 list 與 iterator。 */
+    public int getObstacleCount() {
+        return obstacles.size();
+    }
+
+    /** 回傳共用的 flyweight，只在下一次呼叫前有效。 */
+    public Obstacle getObstacle(int index) {
+        return obstacles.view(index);
     }
 
     public boolean isRunning() {
@@ -274,19 +440,64 @@ public class GameEngine {
         return typedInput.toString();
     }
 
+    public int getTypedLength() {
+        return typedInput.length();
+    }
+
+    /** 把目前輸入複製到 dst（不建立 String，繪製用），回傳複製的字數。 */
+    public int copyTypedInput(char[] dst) {
+        int n = Math.min(typedInput.length(), dst.length);
+        typedInput.getChars(0, n, dst, 0);
+        return n;
+    }
+
+    /** 本場遊戲已經執行過幾個模擬步（重播以此對齊按鍵）。 */
+    public long getTick() {
+        return elapsedNanos / GameConfig.SIM_STEP_NANOS;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public long getDictionaryFingerprint() {
+        return wordGenerator.dictionaryFingerprint();
+    }
+
+    /** 之後每場遊戲的按鍵都交給 recorder 記錄；null 代表不記錄。 */
+    public void setReplayRecorder(ReplayRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /** 本場打完的單字數。 */
+    public int getWordsCleared() {
+        return wordsCleared;
+    }
+
+    /** 每分鐘字數：打完的單字字數 / 5，以模擬時間計算。 */
+    public double getWpm() {
+        double minutes = elapsedNanos / 60e9;
+        return minutes > 0 ? clearedChars / 5.0 / minutes : 0.0;
+    }
+
+    /** 正確率：打完的單字用到的字母 / 按下的字母鍵（打錯重打、多按的都算浪費）。 */
+    public double getAccuracy() {
+        return letterKeys == 0 ? 0.0 : Math.min(1.0, (double) clearedChars / letterKeys);
+    }
+
+    /** 以模擬時間計算的存活時間，EDT 卡頓時不會與障礙物速度脫節。 */
     public long getElapsedMillis() {
-        long end = gameOver && endedAt > 0 ? endedAt : System.currentTimeMillis();
-        return (startTime == 0L) ? 0L : end - startTime;
+        return elapsedNanos / 1_000_000L;
     }
 
     public boolean isWrongEffectActive() {
     if (lastWrongInputAt < 0) return false;
-    return System.currentTimeMillis() - lastWrongInputAt < WRONG_EFFECT_MS;
+    return clock.millis() - lastWrongInputAt < WRONG_EFFECT_MS;
     }
 
     public boolean isCorrectEffectActive() {
     if (lastCorrectInputAt < 0) return false;
-    return System.currentTimeMillis() - lastCorrectInputAt < CORRECT_EFFECT_MS;
+    return clock.millis() - lastCorrectInputAt < CORRECT_EFFECT_MS;
     }
 
     // Panel 畫圖用
@@ -294,11 +505,34 @@ public class GameEngine {
         return background;
     }
 
-    /** 目前畫面中第一個障礙物的單字（UI 顯示用）。 */
+    /** 目前的目標是否已經打完、等著被跳過（多目標模式下目標一定是還沒打完的）。 */
+    public boolean isCurrentWordCleared() {
+        if (multiTarget) {
+            return false;
+        }
+        return !obstacles.isEmpty() && obstacles.isCleared(obstacles.slot(0));
+    }
+
+    /**
+     * 目前的目標單字（UI 顯示用）：單一目標模式為最前面的障礙物；
+     * 多目標模式為符合目前輸入、最靠近玩家且還沒打完的障礙物。
+     */
     public String getCurrentWord() {
+        if (multiTarget) {
+            return matcher.lockedWord();
+        }
         if (obstacles.isEmpty()) {
             return null;
         }
-        return obstacles.get(0).getWord();
+        return obstacles.word(obstacles.slot(0));
+    }
+
+    public boolean isMultiTarget() {
+        return multiTarget;
+    }
+
+    /** 切換比對模式，下一場遊戲 (startGame) 起生效。 */
+    public void setMultiTarget(boolean multiTarget) {
+        this.multiTargetSetting = multiTarget;
     }
 }
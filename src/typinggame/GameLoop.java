@@ -0,0 +1,185 @@
+package typinggame;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fixed-timestep game loop running on its own thread.
+ *
+ * 模擬固定以 {@link GameConfig#SIM_STEP_NANOS} 前進，與繪製頻率脫鉤：
+ * 1. 落後時一次補算多步，並略過繪製以追上進度。
+ * 2. 繪製時傳入插值係數 alpha (0~1)，讓畫面在兩個模擬狀態之間平滑移動。
+ * 3. 以 {@link GameConfig#TARGET_FPS} 控制繪製節奏 (60/120/144 Hz)。
+ * 4. 播放重播時，每個模擬步之前先讓 input（例如 {@link ReplayPlayer}）送出該步的按鍵，
+ *    timeScale 可加速 / 減速模擬時間。
+ * 5. 鍵盤輸入經由 {@link InputQueue} 交給這個執行緒：等待下一幀時一有按鍵就被 {@link #wake()} 喚醒，
+ *    立刻送進引擎並畫出回饋，不必等到下一個模擬步或下一幀。
+ */
+public class GameLoop implements Runnable {
+
+    /** 每次需要繪製時被呼叫，alpha 為目前狀態與下一狀態之間的插值係數。 */
+    public interface Renderer {
+        void render(double alpha);
+    }
+
+    private static final long SPIN_THRESHOLD_NANOS = 1_000_000L; // 最後 1ms 改用自旋等待
+
+    private final GameEngine engine;
+    private final Renderer renderer;
+    private final FrameProfiler profiler = FrameProfiler.shared();
+    private final long frameNanos;
+
+    private volatile BotTypist input;        // null = 只有鍵盤輸入
+    private volatile InputQueue keys;        // 鍵盤輸入，null = 不經過佇列
+    private volatile double timeScale = 1.0;
+
+    private volatile boolean running;
+    private volatile Thread thread;
+
+    private long skippedFrames;
+
+    public GameLoop(GameEngine engine, Renderer renderer) {
+        this(engine, renderer, GameConfig.TARGET_FPS);
+    }
+
+    public GameLoop(GameEngine engine, Renderer renderer, int targetFps) {
+        this.engine = engine;
+        this.renderer = renderer;
+        this.frameNanos = 1_000_000_000L / Math.max(1, targetFps);
+    }
+
+    /** 每個模擬步之前呼叫 input.tick(engine)（在持有 engine 鎖的情況下）。 */
+    public void setInput(BotTypist input) {
+        this.input = input;
+    }
+
+    /** 由這個執行緒處理的鍵盤輸入佇列。 */
+    public void setInputQueue(InputQueue keys) {
+        this.keys = keys;
+    }
+
+    /** 有新的按鍵：讓正在等待下一幀的迴圈立刻處理（任何執行緒都可呼叫）。 */
+    public void wake() {
+        Thread t = thread;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+
+    /** 模擬時間相對於真實時間的倍率（2 = 兩倍速）。 */
+    public void setTimeScale(double timeScale) {
+        if (!(timeScale > 0)) {
+            throw new IllegalArgumentException("timeScale must be positive: " + timeScale);
+        }
+        this.timeScale = timeScale;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this, "game-loop");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        running = false;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            thread = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        final long step = GameConfig.SIM_STEP_NANOS;
+        final long maxCatchUp = step * GameConfig.MAX_CATCH_UP_STEPS;
+
+        long previous = System.nanoTime();
+        long nextFrameAt = previous + frameNanos;
+        long accumulator = 0;
+        int consecutiveSkips = 0;
+
+        while (running) {
+            long now = System.nanoTime();
+            double scale = timeScale;
+            accumulator += (long) ((now - previous) * scale);
+            previous = now;
+
+            // 長時間卡住時不要一口氣補算太多步 (避免死亡螺旋)；加速播放時上限跟著放大
+            long maxAccumulated = (long) (maxCatchUp * Math.max(1.0, scale));
+            if (accumulator > maxAccumulated) {
+                accumulator = maxAccumulated;
+            }
+
+            int typed = 0;
+            synchronized (engine) {
+                InputQueue queue = keys;
+                if (queue != null) {
+                    typed = queue.drainTo(engine);
+                }
+                BotTypist typist = input;
+                while (accumulator >= step) {
+                    if (typist != null) {
+                        typist.tick(engine);
+                    }
+                    long updateStart = profiler.start();
+                    engine.update();
+                    profiler.end(FrameProfiler.Phase.UPDATE, updateStart);
+                    accumulator -= step;
+                }
+            }
+
+            profiler.roll();
+
+            if (typed > 0 && System.nanoTime() < nextFrameAt) {
+                // 被按鍵喚醒：立刻畫出回饋，原本的繪製節奏不變
+                renderer.render((double) accumulator / step);
+                waitUntil(nextFrameAt);
+                continue;
+            }
+
+            // 已經落後超過一幀：略過這次繪製，直接進入下一輪補算
+            long lateBy = System.nanoTime() - nextFrameAt;
+            if (lateBy > frameNanos && consecutiveSkips < GameConfig.MAX_FRAME_SKIP) {
+                consecutiveSkips++;
+                skippedFrames++;
+                nextFrameAt += frameNanos;
+                continue;
+            }
+            consecutiveSkips = 0;
+
+            renderer.render((double) accumulator / step);
+
+            nextFrameAt += frameNanos;
+            if (System.nanoTime() - nextFrameAt > frameNanos) {
+                // 落後太多就重新對齊，不追趕已錯過的幀
+                nextFrameAt = System.nanoTime() + frameNanos;
+            }
+            waitUntil(nextFrameAt);
+        }
+    }
+
+    /** 等到 deadline，或有新的按鍵進來為止。 */
+    private void waitUntil(long deadline) {
+        long remaining;
+        InputQueue queue = keys;
+        while (running && (queue == null || queue.isEmpty()) && (remaining = deadline - System.nanoTime()) > 0) {
+            if (remaining > SPIN_THRESHOLD_NANOS) {
+                LockSupport.parkNanos(remaining - SPIN_THRESHOLD_NANOS);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /** 因落後而略過的繪製次數（除錯用）。 */
+    public long getSkippedFrames() {
+        return skippedFrames;
+    }
+}
@@ -1,230 +1,279 @@
 package typinggame;
 
 import java.awt.*;
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 import javax.swing.*;
 
 /**
- * Swing panel that wires input, timer, and rendering to the game engine.
+ * Swing panel that wires input, game loop, and rendering to the game engine.
  * * 更新：
  * 1. 在 paintComponent 中加入了背景繪製邏輯。
  * 2. 保留了所有的 UI 顯示（分數、單字條、Game Over 畫面）。
+ * 3. 改由獨立的 {@link GameLoop} 執行緒推進模擬，EDT 只負責繪製與輸入。
+ *    存取 engine 時一律 synchronized(engine)，與 GameLoop 互斥。
+ * 4. 實際的繪製移到 {@link GameRenderer}。預設由 paintComponent 繪製；
+ *    以 -Dtypinggame.render=active 啟動時改放一個 {@link GameCanvas}，由 GameLoop 執行緒直接繪製。
+ * 5. -Dtypinggame.replayDir 時每場遊戲存成重播檔；-Dtypinggame.replay 指定重播檔時改為播放，
+ *    不接受打字，也不寫入排行榜。
+ * 6. F3 切換 {@link FrameProfiler} 的各階段耗時疊加資訊。
  */
-public class GamePanel extends JPanel implements ActionListener, KeyListener {
+public class GamePanel extends JPanel implements KeyListener {
     private final GameEngine engine;
-    private final Timer timer;
+    private final GameRenderer renderer;
+    private final GameCanvas canvas; // 只有 active 模式才有
+    private final GameLoop loop;
+    private volatile double renderAlpha = 1.0; // GameLoop 傳來的插值係數
+    private final Replay replay;               // 播放模式才有
+    private final ReplayPlayer replayInput;
+    private final FrameProfiler profiler = FrameProfiler.shared();
+    private final InputQueue keys = new InputQueue();
 
     public GamePanel(String playerName) {
-        LeaderboardStorage storage;
-
-        try {
-            // ===  MongoDB ===
-            // 嘗試連接到本機 MongoDB，資料庫名 TypingGameDB，集合名 scores
-            storage = new MongoLeaderboard("mongodb://localhost:27017", "TypingGameDB", "scores");
-            System.out.println("✅ Connected to MongoDB!");
-        } catch (Exception e) {
-            // 如果連線失敗 (例如沒開資料庫)，自動降級回記憶體版，避免遊戲崩潰
-            System.err.println("⚠️ MongoDB connection failed: " + e.getMessage());
-            System.err.println("➡️ Falling back to Memory Leaderboard.");
-            storage = new MemoryLeaderboard();
+        LeaderboardStorage storage = openStorage();
+
+        // 前 N 名查詢走快取；所有排行榜 I/O 改到背景執行緒，關閉程式時把還沒寫完的分數送完
+        // ProfilingLeaderboard 放在最底層，量到的是真正的資料庫延遲
+        AsyncLeaderboard asyncStorage = new AsyncLeaderboard(new CachingLeaderboard(new ProfilingLeaderboard(storage)));
+        Runtime.getRuntime().addShutdownHook(new Thread(asyncStorage::close, "leaderboard-shutdown"));
+        storage = asyncStorage;
+
+        this.replay = loadReplay(GameConfig.REPLAY_FILE);
+        if (replay != null) {
+            // 播放別人的紀錄：只讀排行榜，不把重播的分數再存一次
+            storage = new ReadOnlyLeaderboard(storage);
+            this.replayInput = new ReplayPlayer(replay);
+        } else {
+            this.replayInput = null;
         }
 
         this.engine = new GameEngine(playerName, storage);
-        this.timer = new Timer(GameConfig.TIMER_DELAY_MS, this);
+        this.renderer = new GameRenderer(engine);
+        if (replay == null && GameConfig.REPLAY_DIR != null) {
+            engine.setReplayRecorder(ReplayRecorder.toDirectory(Paths.get(GameConfig.REPLAY_DIR), ForkJoinPool.commonPool()));
+        }
+
+        if (GameConfig.ACTIVE_RENDERING) {
+            // 主動繪製：GameLoop 執行緒直接畫到 Canvas，不經過 repaint()
+            this.canvas = new GameCanvas(renderer);
+            this.loop = new GameLoop(engine, canvas::render);
+            setLayout(new BorderLayout());
+            add(canvas, BorderLayout.CENTER);
+            canvas.addKeyListener(this);
+        } else {
+            this.canvas = null;
+            this.loop = new GameLoop(engine, alpha -> {
+                renderAlpha = alpha;
+                repaint();
+            });
+        }
 
-        setPreferredSize(new Dimension(GameConfig.WIDTH, GameConfig.HEIGHT));
+        loop.setInputQueue(keys);
+        renderer.setInputQueue(keys);
+        if (replayInput != null) {
+            loop.setInput(replayInput);
+            loop.setTimeScale(GameConfig.REPLAY_SPEED);
+        }
+
+        setPreferredSize(renderer.getScaledSize());
         setBackground(Color.WHITE); // 預設背景色（當圖片載入失敗或未設定時顯示）
         setFocusable(true);
         addKeyListener(this);
     }
 
+    /**
+     * 依 -Dtypinggame.leaderboard 選擇排行榜：預設先試 MongoDB，連不上時依序降級為本機檔案、記憶體版，
+     * 避免遊戲崩潰；離線機台設成 file 可以省掉等待資料庫逾時。
+     */
+    private static LeaderboardStorage openStorage() {
+        if ("mongo".equals(GameConfig.LEADERBOARD_STORE)) {
+            try {
+                // ===  MongoDB ===
+                // 嘗試連接到 MongoDB (預設本機，可用 -Dtypinggame.mongoUri 指定)，資料庫名 TypingGameDB，集合名 scores
+                // 資料庫沒開時會在 MONGO_SERVER_SELECTION_TIMEOUT_MS 內失敗
+                LeaderboardStorage mongo = new MongoLeaderboard(GameConfig.MONGO_URI, "TypingGameDB", "scores");
+                System.out.println("✅ Connected to MongoDB!");
+                return mongo;
+            } catch (Exception e) {
+                System.err.println("⚠️ MongoDB connection failed: " + e.getMessage());
+                System.err.println("➡️ Falling back to File Leaderboard.");
+            }
+        }
+        if (!"memory".equals(GameConfig.LEADERBOARD_STORE)) {
+            try {
+                return new FileLeaderboard(Paths.get(GameConfig.LEADERBOARD_DIR));
+            } catch (IOException | RuntimeException e) {
+                System.err.println("⚠️ File leaderboard unavailable: " + e.getMessage());
+                System.err.println("➡️ Falling back to Memory Leaderboard.");
+            }
+        }
+        return new MemoryLeaderboard();
+    }
+
+    private static Replay loadReplay(String file) {
+        if (file == null) {
+            return null;
+        }
+        try {
+            Replay loaded = Replay.load(Paths.get(file));
+            System.out.println("▶️ Playing " + loaded);
+            return loaded;
+        } catch (IOException e) {
+            System.err.println("⚠️ Failed to load replay " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
     public void startGame() {
-        engine.startGame();
-        requestFocusInWindow();
-        timer.start();
+        synchronized (engine) {
+            restart();
+        }
+        if (canvas != null) {
+            canvas.requestFocusInWindow();
+        } else {
+            requestFocusInWindow();
+        }
+        loop.start();
+    }
+
+    /** 呼叫端需持有 engine 鎖。 */
+    private void restart() {
+        if (replayInput != null) {
+            replayInput.rewind();
+            ReplayPlayer.start(engine, replay);
+        } else {
+            engine.startGame();
+        }
     }
 
     @Override
-    public void actionPerformed(ActionEvent e) {
-        engine.update();
-        repaint();
+    public void removeNotify() {
+        loop.stop();
+        super.removeNotify();
     }
 
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
-
-        // --- 1. 繪製捲動背景 ---
-        // (注意：這需要你的 GameEngine 有 getBackground() 方法)
-        // 如果你還沒實作背景，這段程式碼會被跳過，不會報錯（前提是 getBackground 回傳 null）
-        if (engine.getBackground() != null) {
-            engine.getBackground().draw(g);
+        if (canvas != null) {
+            return; // active 模式由 GameCanvas 負責
         }
+        renderer.render((Graphics2D) g, renderAlpha);
+        // 讓畫面立即送出，避免部分平台緩衝導致節奏不穩
+        Toolkit.getDefaultToolkit().sync();
+        renderer.presented();
+    }
 
-        // --- 2. 繪製地面線 ---
-        // (即使有背景圖，保留這條線通常有助於視覺定位，若背景圖已有地面可註解掉)
-        g.setColor(Color.LIGHT_GRAY);
-        g.drawLine(0, GameConfig.GROUND_Y, GameConfig.WIDTH, GameConfig.GROUND_Y);
+    // --- KeyListener ---
 
-        // --- 3. 繪製遊戲物件 (玩家與障礙物) ---
-        engine.getPlayer().draw(g);
-        for (Obstacle obs : engine.getObstacles()) {
-            obs.draw(g);
+    @Override
+    public void keyTyped(KeyEvent e) {
+        if (replayInput != null) {
+            return;
         }
-
-        // --- 4. 繪製 UI (目標單字) ---
-        drawCurrentWordBar(g);
-
-        // --- 5. 繪製 UI (一般資訊) ---
-        drawHUD(g);
-
-        // --- 6. 繪製 Game Over 遮罩 ---
-        if (engine.isGameOver()) {
-            // 傳入經過時間來顯示最終分數
-            drawGameOverOverlay(g, engine.getElapsedMillis());
+        // 不在 EDT 上等 engine 鎖：放進佇列並喚醒 GameLoop，由模擬執行緒立刻處理。
+        // 時間戳往前推到系統產生事件的時間 (getWhen 只有毫秒精度)，把 EDT 排隊的時間也算進去
+        long now = System.nanoTime();
+        long queuedMillis = System.currentTimeMillis() - e.getWhen();
+        if (queuedMillis < 0 || queuedMillis > 1000) {
+            queuedMillis = 0; // 事件時間不可信（時鐘被調整等），只用收到的時間
+        }
+        if (keys.offer(e.getKeyChar(), now - queuedMillis * 1_000_000L)) {
+            loop.wake();
         }
     }
 
-    /** 繪製抬頭顯示器 (HUD): 輸入文字、提示、分數 */
-    private void drawHUD(Graphics g) {
-        g.setColor(Color.BLACK);
-        g.setFont(new Font("SansSerif", Font.PLAIN, 16));
-        
-        // 左下角：顯示目前輸入
-        g.drawString("Typed: " + engine.getTypedInput(), 10, GameConfig.HEIGHT - 10);
-
-        // 左上角：操作提示
-        g.drawString("Type the word to auto-jump", 10, 20);
+    @Override
+    public void keyPressed(KeyEvent e) {
+        if (e.getKeyCode() == KeyEvent.VK_F3) {
+            profiler.toggleOverlay();
+            return;
+        }
+        // Game Over 時，按 SPACE 重新開始
+        synchronized (engine) {
+            if (engine.isGameOver() && e.getKeyCode() == KeyEvent.VK_SPACE) {
+                restart();
+            }
+        }
+    }
 
-        // 右上角：分數（存活秒數）
-        long elapsed = engine.getElapsedMillis();
-        g.drawString("Score: " + elapsed / 1000, GameConfig.WIDTH - 120, 20);
+    @Override
+    public void keyReleased(KeyEvent e) {
+        // not used
     }
 
-    /** 繪製目前障礙物上方的單字與輸入狀態 */
-    private void drawCurrentWordBar(Graphics g) {
-        String currentWord = engine.getCurrentWord();
-        String typed = engine.getTypedInput();
+    /** 播放重播時使用：照常讀取排行榜，但不寫入。 */
+    private static final class ReadOnlyLeaderboard implements LeaderboardStorage {
+        private final LeaderboardStorage delegate;
 
-        if (currentWord == null) {
-            return;
+        ReadOnlyLeaderboard(LeaderboardStorage delegate) {
+            this.delegate = delegate;
         }
 
-        Graphics2D g2 = (Graphics2D) g;
-        g2.setFont(new Font("SansSerif", Font.PLAIN, 18));
-        FontMetrics fm = g2.getFontMetrics();
-
-        boolean wrongEffect = engine.isWrongEffectActive();
-        boolean correctEffect = engine.isCorrectEffectActive() && !wrongEffect;
-
-        int baseX = 10;
-        int baseY = 50;
+        @Override
+        public void saveScore(ScoreEntry entry) {
+            // 重播的分數已經在排行榜上（或本來就不該上榜）
+        }
 
-        // 錯誤時左右抖動特效
-        if (wrongEffect) {
-            int shake = (int) (Math.sin(System.currentTimeMillis() / 30.0) * 4);
-            baseX += shake;
+        @Override
+        public List<ScoreEntry> getTopScores(int limit) {
+            return delegate.getTopScores(limit);
         }
 
-        int x = baseX;
-        int y = baseY;
+        @Override
+        public CompletableFuture<List<ScoreEntry>> getTopScoresAsync(int limit) {
+            return delegate.getTopScoresAsync(limit);
+        }
 
-        for (int i = 0; i < currentWord.length(); i++) {
-            char c = currentWord.charAt(i);
+        @Override
+        public ScorePage getScores(TimeWindow window, int limit, String cursor) {
+            return delegate.getScores(window, limit, cursor);
+        }
 
-            if (wrongEffect) {
-                g2.setColor(new Color(220, 40, 40)); // 錯誤：整串變紅
-            } else {
-                if (i < typed.length()) {
-                    char typedChar = typed.charAt(i);
-                    if (Character.toLowerCase(typedChar) == Character.toLowerCase(c)) {
-                        g2.setColor(new Color(0, 150, 0)); // 正確：綠色
-                    } else {
-                        g2.setColor(new Color(180, 0, 0)); // 打錯字元（理論上會瞬間被清空）
-                    }
-                } else {
-                    g2.setColor(Color.DARK_GRAY); // 尚未輸入：灰色
-                }
-            }
+        @Override
+        public ScoreEntry getPersonalBest(String playerName, TimeWindow window) {
+            return delegate.getPersonalBest(playerName, window);
+        }
 
-            String s = String.valueOf(c);
-            g2.drawString(s, x, y);
-            x += fm.charWidth(c) + 2;
+        @Override
+        public ScorePage getPlayerHistory(String playerName, int limit, String cursor) {
+            return delegate.getPlayerHistory(playerName, limit, cursor);
         }
 
-        // 打對剛結束時的綠色勾勾特效
-        if (correctEffect) {
-            g2.setColor(new Color(0, 180, 0));
-            g2.setFont(new Font("SansSerif", Font.BOLD, 22));
-            g2.drawString("✔", x + 8, y);
+        @Override
+        public void forEachScore(Consumer<? super ScoreEntry> action) {
+            delegate.forEachScore(action);
         }
-    }
 
-    /** 繪製遊戲結束畫面 */
-   private void drawGameOverOverlay(Graphics g, long elapsedMillis) {
-        Graphics2D g2 = (Graphics2D) g.create();
-
-        // 半透明背景
-        g2.setColor(new Color(0, 0, 0, 200)); // 顏色改深一點比較好看清楚字
-        g2.fillRect(0, 0, getWidth(), getHeight());
-
-        g2.setColor(Color.WHITE);
-        g2.setFont(new Font("SansSerif", Font.BOLD, 32));
-        
-        String msg = "Game Over";
-        int centerX = getWidth() / 2;
-        int centerY = getHeight() / 2 - 80; // 往上提一點
-        int msgWidth = g2.getFontMetrics().stringWidth(msg);
-        g2.drawString(msg, centerX - msgWidth / 2, centerY);
-
-        // === 顯示排行榜 ===
-        g2.setFont(new Font("Monospaced", Font.PLAIN, 18));
-        g2.setColor(Color.YELLOW);
-        g2.drawString("--- Leaderboard ---", centerX - 100, centerY + 30);
-        
-        g2.setColor(Color.WHITE);
-        java.util.List<ScoreEntry> scores = engine.getTopScores();
-        int yOffset = centerY + 60;
-        
-        if (scores != null) {
-            for (int i = 0; i < scores.size(); i++) {
-                ScoreEntry s = scores.get(i);
-                String line = String.format("%d. %-10s  %d s", i + 1, s.getPlayerName(), s.getScore());
-                g2.drawString(line, centerX - 120, yOffset);
-                yOffset += 25;
-            }
+        @Override
+        public long countScoresAbove(long score, TimeWindow window) {
+            return delegate.countScoresAbove(score, window);
         }
-        // 重新開始提示
-        g2.setColor(Color.LIGHT_GRAY);
-        String hint = "Press SPACE to restart";
-        g2.drawString(hint, centerX - g2.getFontMetrics().stringWidth(hint) / 2, yOffset + 30);
 
-        g2.dispose();
-    }
-    // --- KeyListener ---
+        @Override
+        public long countScores(TimeWindow window) {
+            return delegate.countScores(window);
+        }
 
-    @Override
-    public void keyTyped(KeyEvent e) {
-        // 遊戲進行中：接受文字輸入
-        if (engine.isRunning()) {
-            char ch = e.getKeyChar();
-            engine.handleTypedChar(ch);
+        @Override
+        public long getRank(long score, TimeWindow window) {
+            return delegate.getRank(score, window);
         }
-    }
 
-    @Override
-    public void keyPressed(KeyEvent e) {
-        // Game Over 時，按 SPACE 重新開始
-        if (engine.isGameOver() && e.getKeyCode() == KeyEvent.VK_SPACE) {
-            engine.startGame();
+        @Override
+        public long getPlayerRank(String playerName, TimeWindow window) {
+            return delegate.getPlayerRank(playerName, window);
         }
-    }
 
-    @Override
-    public void keyReleased(KeyEvent e) {
-        // not used
+        @Override
+        public double getPercentile(long score, TimeWindow window) {
+            return delegate.getPercentile(score, window);
+        }
     }
 }
\ No newline at end of file
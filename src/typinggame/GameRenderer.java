@@ -0,0 +1,316 @@
+package typinggame;
+
+import java.awt.*;
+
+/**
+ * Draws one frame of the game; shared by the Swing ({@link GamePanel}) and
+ * active-rendering ({@link GameCanvas}) paths.
+ *
+ * 一律以邏輯座標 (GameConfig.WIDTH x HEIGHT) 繪製，放大倍率由 {@link GameConfig#RENDER_SCALE} 決定，
+ * 在這裡統一套用，所以遊戲邏輯與各物件的 draw 都不需要知道實際視窗大小。
+ * 遊戲進行中的繪製不建立任何物件：字型、顏色、字寬都預先算好，
+ * HUD 文字寫進重複使用的 char 陣列再以 drawChars 繪出。
+ *
+ * 同一時間只會有一個執行緒呼叫 render（EDT 或 GameLoop 執行緒，視繪製模式而定）。
+ * 每一幀與各區段的耗時記錄到 {@link FrameProfiler}，按 F3 時在右上角顯示。
+ * 設定了 {@link InputQueue} 時，畫面送出後 ({@link #presented()}) 記錄這一幀新顯示的每個按鍵的延遲。
+ */
+public class GameRenderer {
+    // --- 預先建立的字型與顏色（每幀共用） ---
+    private static final Font HUD_FONT = new Font("SansSerif", Font.PLAIN, 16);
+    private static final Font WORD_BAR_FONT = new Font("SansSerif", Font.PLAIN, 18);
+    private static final int WORD_BAR_TRACKING = 2; // 單字列字元間距
+    private static final Font CHECK_FONT = new Font("SansSerif", Font.BOLD, 22);
+    private static final Font TITLE_FONT = new Font("SansSerif", Font.BOLD, 32);
+    private static final Font BOARD_FONT = new Font("Monospaced", Font.PLAIN, 18);
+
+    private static final Color CHECK_COLOR = new Color(0, 180, 0);
+    private static final Color OVERLAY_COLOR = new Color(0, 0, 0, 200);
+    private static final Font PROFILER_FONT = new Font("Monospaced", Font.PLAIN, 11);
+    private static final Color PROFILER_BACKGROUND = new Color(0, 0, 0, 210);
+    private static final Color PROFILER_TEXT = new Color(180, 255, 180);
+
+    private static final String TYPED_LABEL = "Typed: ";
+    private static final String HINT_TEXT = "Type the word to auto-jump";
+    private static final String SCORE_LABEL = "Score: ";
+    private static final String CHECK_MARK = "✔";
+
+    private final GameEngine engine;
+    private final double scale;
+
+    // --- 繪製用的暫存區（只在繪製執行緒上使用） ---
+    private final char[] typedBuf = new char[64];
+    private final char[] scoreBuf = new char[20];
+    private int typedLabelWidth = -1;
+    private int scoreLabelWidth;
+    private final AllocationProbe allocations = new AllocationProbe("render");
+    private final FrameProfiler profiler = FrameProfiler.shared();
+    private long lastRenderStart;
+    private int profilerLineHeight = -1;
+    private InputQueue keys;
+    private long renderedKeys;                    // 已經畫進某一幀的按鍵數
+    private final long[] pendingKeyStamps = new long[64]; // 畫好、還沒送出畫面的按鍵時間戳
+    private int pendingKeys;
+
+    public GameRenderer(GameEngine engine) {
+        this(engine, GameConfig.RENDER_SCALE);
+    }
+
+    public GameRenderer(GameEngine engine, double scale) {
+        this.engine = engine;
+        this.scale = scale;
+    }
+
+    /** 量測按鍵到畫面的延遲（在 engine 鎖外、開始繪製前設定）。 */
+    public void setInputQueue(InputQueue keys) {
+        this.keys = keys;
+    }
+
+    /** 實際輸出大小（已套用放大倍率）。 */
+    public Dimension getScaledSize() {
+        return new Dimension((int) Math.round(GameConfig.WIDTH * scale), (int) Math.round(GameConfig.HEIGHT * scale));
+    }
+
+    /** 繪製一幀；會自行鎖住 engine，呼叫端不必再同步。 */
+    public void render(Graphics2D g, double alpha) {
+        long renderStart = profiler.start();
+        if (lastRenderStart != 0) {
+            profiler.record(FrameProfiler.Phase.FRAME, renderStart - lastRenderStart);
+        }
+        lastRenderStart = renderStart;
+        long allocStart = allocations.begin();
+        boolean scaled = scale != 1.0;
+        if (scaled) {
+            // 像素風格的圖片放大時不要模糊
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+            g.scale(scale, scale);
+        }
+        synchronized (engine) {
+            renderScene(g, alpha);
+            if (keys != null) {
+                // 在鎖內處理過的按鍵，這一幀一定看得到
+                pendingKeys += keys.copyProcessed(renderedKeys, pendingKeyStamps, pendingKeys);
+                renderedKeys = keys.processedCount();
+            }
+        }
+        profiler.end(FrameProfiler.Phase.RENDER, renderStart);
+        if (profiler.isOverlayVisible()) {
+            drawProfilerOverlay(g);
+        }
+        if (scaled) {
+            g.scale(1.0 / scale, 1.0 / scale);
+        }
+        allocations.end(allocStart);
+    }
+
+    /** 畫面已經送出（show / sync 之後）：記錄這一幀包含的按鍵到畫面的延遲。 */
+    public void presented() {
+        if (pendingKeys == 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        for (int i = 0; i < pendingKeys; i++) {
+            profiler.record(FrameProfiler.Phase.KEY_TO_SCREEN, now - pendingKeyStamps[i]);
+        }
+        pendingKeys = 0;
+    }
+
+    private void renderScene(Graphics g, double alpha) {
+        long t = profiler.start();
+
+        // --- 1. 繪製捲動背景 ---
+        // (注意：這需要你的 GameEngine 有 getBackground() 方法)
+        // 如果你還沒實作背景，這段程式碼會被跳過，不會報錯（前提是 getBackground 回傳 null）
+        if (engine.getBackground() != null) {
+            engine.getBackground().draw(g, alpha);
+        }
+
+        // --- 2. 繪製地面線 ---
+        // (即使有背景圖，保留這條線通常有助於視覺定位，若背景圖已有地面可註解掉)
+        g.setColor(Color.LIGHT_GRAY);
+        g.drawLine(0, GameConfig.GROUND_Y, GameConfig.WIDTH, GameConfig.GROUND_Y);
+        t = lap(FrameProfiler.Phase.BACKGROUND, t);
+
+        // --- 3. 繪製遊戲物件 (玩家與障礙物) ---
+        engine.getPlayer().draw(g, alpha);
+        for (int i = 0, n = engine.getObstacleCount(); i < n; i++) {
+            engine.getObstacle(i).draw(g, alpha);
+        }
+        t = lap(FrameProfiler.Phase.SPRITES, t);
+
+        // --- 4. 繪製 UI (目標單字) ---
+        drawCurrentWordBar(g);
+        t = lap(FrameProfiler.Phase.WORD_BAR, t);
+
+        // --- 5. 繪製 UI (一般資訊) ---
+        drawHUD(g);
+        t = lap(FrameProfiler.Phase.HUD, t);
+
+        // --- 6. 繪製 Game Over 遮罩 ---
+        if (engine.isGameOver()) {
+            // 傳入經過時間來顯示最終分數
+            drawGameOverOverlay(g, engine.getElapsedMillis());
+            lap(FrameProfiler.Phase.GAME_OVER, t);
+        }
+    }
+
+    /** 記錄上一段的耗時，回傳下一段的起點（每段只多一次 nanoTime）。 */
+    private long lap(FrameProfiler.Phase phase, long start) {
+        long now = profiler.start();
+        profiler.record(phase, now - start);
+        return now;
+    }
+
+    /** 右上角的各階段耗時表（內容每個統計區間才更新一次，這裡只貼字串）。 */
+    private void drawProfilerOverlay(Graphics g) {
+        String[] lines = profiler.getOverlayLines();
+        g.setFont(PROFILER_FONT);
+        if (profilerLineHeight < 0) {
+            profilerLineHeight = g.getFontMetrics().getHeight();
+        }
+        int width = g.getFontMetrics().stringWidth(lines[0]) + 12;
+        int x = GameConfig.WIDTH - width - 6;
+        int y = 28;
+        g.setColor(PROFILER_BACKGROUND);
+        g.fillRect(x, y, width, lines.length * profilerLineHeight + 8);
+        g.setColor(PROFILER_TEXT);
+        int baseline = y + profilerLineHeight;
+        for (String line : lines) {
+            g.drawString(line, x + 6, baseline);
+            baseline += profilerLineHeight;
+        }
+    }
+
+    /** 繪製抬頭顯示器 (HUD): 輸入文字、提示、分數 */
+    private void drawHUD(Graphics g) {
+        g.setColor(Color.BLACK);
+        g.setFont(HUD_FONT);
+        if (typedLabelWidth < 0) {
+            FontMetrics fm = g.getFontMetrics();
+            typedLabelWidth = fm.stringWidth(TYPED_LABEL);
+            scoreLabelWidth = fm.stringWidth(SCORE_LABEL);
+        }
+
+        // 左下角：顯示目前輸入
+        int y = GameConfig.HEIGHT - 10;
+        g.drawString(TYPED_LABEL, 10, y);
+        int typedLen = engine.copyTypedInput(typedBuf);
+        g.drawChars(typedBuf, 0, typedLen, 10 + typedLabelWidth, y);
+
+        // 左上角：操作提示
+        g.drawString(HINT_TEXT, 10, 20);
+
+        // 右上角：分數（存活秒數）
+        long elapsed = engine.getElapsedMillis();
+        int scoreX = GameConfig.WIDTH - 120;
+        g.drawString(SCORE_LABEL, scoreX, 20);
+        int from = formatLong(elapsed / 1000, scoreBuf);
+        g.drawChars(scoreBuf, from, scoreBuf.length - from, scoreX + scoreLabelWidth, 20);
+    }
+
+    /** 把非負整數寫到 buf 尾端，回傳起始位置（取代字串串接）。 */
+    private static int formatLong(long value, char[] buf) {
+        int pos = buf.length;
+        do {
+            buf[--pos] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0 && pos > 0);
+        return pos;
+    }
+
+    /** 繪製目前障礙物上方的單字與輸入狀態 */
+    private void drawCurrentWordBar(Graphics g) {
+        String currentWord = engine.getCurrentWord();
+
+        if (currentWord == null) {
+            return;
+        }
+
+        // 打錯會立刻清空輸入，所以已輸入的部分一定是單字的正確前綴
+        int typedLen = Math.min(engine.getTypedLength(), currentWord.length());
+
+        boolean wrongEffect = engine.isWrongEffectActive();
+        boolean correctEffect = engine.isCorrectEffectActive() && !wrongEffect;
+
+        int baseX = 10;
+        int baseY = 50;
+
+        // 錯誤時左右抖動特效
+        if (wrongEffect) {
+            int shake = (int) (Math.sin(System.currentTimeMillis() / 30.0) * 4);
+            baseX += shake;
+        }
+
+        TextSpriteCache sprites = TextSpriteCache.shared();
+        TextSpriteCache.Sprite untyped;
+        if (wrongEffect) {
+            // 錯誤：整串變紅
+            untyped = sprites.get(currentWord, WORD_BAR_FONT, TextSpriteCache.State.WRONG, WORD_BAR_TRACKING);
+            untyped.draw(g, baseX, baseY);
+        } else {
+            // 已輸入（綠色）+ 尚未輸入（灰色）：兩張圖片各畫一段
+            untyped = sprites.get(currentWord, WORD_BAR_FONT, TextSpriteCache.State.UNTYPED, WORD_BAR_TRACKING);
+            if (typedLen > 0) {
+                TextSpriteCache.Sprite typed =
+                        sprites.get(currentWord, WORD_BAR_FONT, TextSpriteCache.State.CORRECT, WORD_BAR_TRACKING);
+                typed.drawRange(g, baseX, baseY, 0, typedLen);
+            }
+            untyped.drawRange(g, baseX, baseY, typedLen, currentWord.length());
+        }
+
+        // 打對剛結束時的綠色勾勾特效
+        if (correctEffect) {
+            g.setColor(CHECK_COLOR);
+            g.setFont(CHECK_FONT);
+            g.drawString(CHECK_MARK, baseX + untyped.getWidth() + WORD_BAR_TRACKING + 8, baseY);
+        }
+    }
+
+    /** 繪製遊戲結束畫面 */
+   private void drawGameOverOverlay(Graphics g, long elapsedMillis) {
+        Graphics2D g2 = (Graphics2D) g.create();
+        int width = GameConfig.WIDTH;
+        int height = GameConfig.HEIGHT;
+
+        // 半透明背景
+        g2.setColor(OVERLAY_COLOR); // 顏色改深一點比較好看清楚字
+        g2.fillRect(0, 0, width, height);
+
+        g2.setColor(Color.WHITE);
+        g2.setFont(TITLE_FONT);
+
+        String msg = "Game Over";
+        int centerX = width / 2;
+        int centerY = height / 2 - 80; // 往上提一點
+        int msgWidth = g2.getFontMetrics().stringWidth(msg);
+        g2.drawString(msg, centerX - msgWidth / 2, centerY);
+
+        // === 顯示排行榜 ===
+        g2.setFont(BOARD_FONT);
+        g2.setColor(Color.YELLOW);
+        g2.drawString("--- Leaderboard ---", centerX - 100, centerY + 30);
+
+        g2.setColor(Color.WHITE);
+        java.util.List<ScoreEntry> scores = engine.getTopScores();
+        int yOffset = centerY + 60;
+
+        if (scores != null) {
+            for (int i = 0; i < scores.size(); i++) {
+                ScoreEntry s = scores.get(i);
+                String line = String.format("%d. %-10s  %d s", i + 1, s.getPlayerName(), s.getScore());
+                g2.drawString(line, centerX - 120, yOffset);
+                yOffset += 25;
+            }
+        } else {
+            // 背景查詢尚未完成
+            g2.drawString("Loading...", centerX - 120, yOffset);
+            yOffset += 25;
+        }
+        // 重新開始提示
+        g2.setColor(Color.LIGHT_GRAY);
+        String hint = "Press SPACE to restart";
+        g2.drawString(hint, centerX - g2.getFontMetrics().stringWidth(hint) / 2, yOffset + 30);
+
+        g2.dispose();
+    }
+}
@@ -0,0 +1,160 @@
+package typinggame;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs many complete games without a window, driven by a {@link BotTypist}.
+ *
+ * 每個執行緒重複使用同一個 {@link GameEngine} 與 {@link ManualClock}，
+ * 時鐘跟著模擬步數前進，不需要真的等待，可用來離線調整 {@link GameConfig} 的難度曲線。
+ *
+ * 用法：java typinggame.HeadlessSimulation [games] [threads] [charsPerSecond] [errorRate]
+ * 加上 -Dtypinggame.replayDir=dir 時，每場結束的遊戲都會存成重播檔 ({@link Replay})。
+ */
+public class HeadlessSimulation {
+
+    /** 單場遊戲最多模擬幾步，避免完美 bot 永遠不結束（預設 = 模擬 30 分鐘）。 */
+    public static final long DEFAULT_MAX_TICKS = 30L * 60 * GameConfig.SIM_HZ;
+
+    /** 模擬結果：每場的分數 (秒) 與沒有在上限內結束的場數。 */
+    public static final class Result {
+        private final long[] scores;
+        private final int timedOut;
+        private final long wallNanos;
+
+        Result(long[] scores, int timedOut, long wallNanos) {
+            this.scores = scores;
+            this.timedOut = timedOut;
+            this.wallNanos = wallNanos;
+            Arrays.sort(this.scores);
+        }
+
+        public int getGames() { return scores.length; }
+        public int getTimedOut() { return timedOut; }
+        public long getWallNanos() { return wallNanos; }
+
+        public double getMeanScore() {
+            return scores.length == 0 ? 0 : Arrays.stream(scores).average().orElse(0);
+        }
+
+        /** p 介於 0~100。 */
+        public long getPercentile(double p) {
+            if (scores.length == 0) {
+                return 0;
+            }
+            int idx = (int) Math.ceil(p / 100.0 * scores.length) - 1;
+            return scores[Math.max(0, Math.min(scores.length - 1, idx))];
+        }
+
+        public double getGamesPerSecond() {
+            return wallNanos == 0 ? 0 : scores.length * 1e9 / wallNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("games=%d timedOut=%d mean=%.1fs p50=%ds p90=%ds max=%ds (%.0f games/s)",
+                    getGames(), timedOut, getMeanScore(), getPercentile(50), getPercentile(90),
+                    getPercentile(100), getGamesPerSecond());
+        }
+    }
+
+    private HeadlessSimulation() {
+        // static helpers only
+    }
+
+    public static Result run(int games, int threads, BotTypist.Factory bots) throws Exception {
+        return run(games, threads, bots, DEFAULT_MAX_TICKS);
+    }
+
+    /**
+     * 以 threads 個執行緒平均分攤 games 場遊戲。
+     */
+    public static Result run(int games, int threads, BotTypist.Factory bots, long maxTicks) throws Exception {
+        int workers = Math.max(1, Math.min(threads, games));
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        long started = System.nanoTime();
+        try {
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int w = 0; w < workers; w++) {
+                int share = games / workers + (w < games % workers ? 1 : 0);
+                long seed = w;
+                futures.add(pool.submit(() -> runWorker(share, bots.create(seed), maxTicks)));
+            }
+
+            long[] scores = new long[games];
+            int filled = 0;
+            int timedOut = 0;
+            for (Future<long[]> f : futures) {
+                long[] part = f.get();
+                // 最後一格記錄該 worker 的逾時場數
+                int n = part.length - 1;
+                System.arraycopy(part, 0, scores, filled, n);
+                filled += n;
+                timedOut += (int) part[n];
+            }
+            return new Result(scores, timedOut, System.nanoTime() - started);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static long[] runWorker(int games, BotTypist bot, long maxTicks) {
+        ManualClock clock = new ManualClock(System.currentTimeMillis());
+        GameEngine engine = new GameEngine("bot", new DiscardingLeaderboard(), clock);
+        if (GameConfig.REPLAY_DIR != null) {
+            // 錄下 bot 的每一場，之後可用 ReplayPlayer 對引擎修改做回歸測試
+            engine.setReplayRecorder(ReplayRecorder.toDirectory(Paths.get(GameConfig.REPLAY_DIR), Runnable::run));
+        }
+
+        long[] out = new long[games + 1];
+        int timedOut = 0;
+        for (int g = 0; g < games; g++) {
+            engine.startGame();
+            long ticks = 0;
+            while (engine.isRunning() && ticks < maxTicks) {
+                bot.tick(engine);
+                engine.update();
+                clock.advanceNanos(GameConfig.SIM_STEP_NANOS);
+                ticks++;
+            }
+            if (engine.isRunning()) {
+                timedOut++;
+            }
+            out[g] = engine.getElapsedMillis() / 1000;
+        }
+        out[games] = timedOut;
+        return out;
+    }
+
+    /** 模擬時不需要排行榜，丟掉分數以免記憶體隨場數成長（{@link ReplayPlayer} 也使用）。 */
+    static final class DiscardingLeaderboard implements LeaderboardStorage {
+        @Override
+        public void saveScore(ScoreEntry entry) {
+            // discard
+        }
+
+        @Override
+        public List<ScoreEntry> getTopScores(int limit) {
+            return Collections.emptyList();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        double cps = args.length > 2 ? Double.parseDouble(args[2]) : 5.0;
+        double errorRate = args.length > 3 ? Double.parseDouble(args[3]) : 0.05;
+
+        Result result = run(games, threads, BotTypist.probabilistic(cps, errorRate));
+        System.out.println(result);
+    }
+}
@@ -0,0 +1,103 @@
+package typinggame;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single-producer / single-consumer queue of typed characters, each stamped with
+ * the {@link System#nanoTime()} at which the key event happened.
+ *
+ * EDT 只負責 {@link #offer}（不必等 GameLoop 釋放 engine 鎖），GameLoop 執行緒在每一輪開頭
+ * 以 {@link #drainTo(GameEngine)} 把按鍵送進引擎，並在 {@link GameLoop} 等待下一幀時被喚醒，
+ * 按鍵不用等到下一個模擬步才被處理。
+ *
+ * 另外記下「已送進引擎」的按鍵時間戳 (processed log)：繪製時在 engine 鎖內以 {@link #copyProcessed}
+ * 取出這一幀新看得到的按鍵，畫面送出後就能算出每個按鍵到畫面回饋的延遲。
+ * processed log 的寫入與讀取都必須持有 engine 鎖。
+ */
+public final class InputQueue {
+
+    private final int mask;
+    private final char[] chars;
+    private final long[] stamps;
+    // head = 下一個要讀的位置（只有消費者寫），tail = 下一個要寫的位置（只有生產者寫）
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private long dropped; // 只有生產者寫
+
+    // --- 已處理的按鍵（engine 鎖保護） ---
+    private final long[] processedStamps;
+    private long processedCount;
+
+    public InputQueue() {
+        this(256);
+    }
+
+    public InputQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mask = size - 1;
+        chars = new char[size];
+        stamps = new long[size];
+        processedStamps = new long[size];
+    }
+
+    /** 生產者（EDT）：放入一個按鍵；佇列滿時丟掉並回傳 false。 */
+    public boolean offer(char ch, long stampNanos) {
+        long t = tail.get();
+        if (t - head.get() > mask) {
+            dropped++;
+            return false;
+        }
+        int i = (int) t & mask;
+        chars[i] = ch;
+        stamps[i] = stampNanos;
+        tail.lazySet(t + 1); // release：先寫好內容再公開
+        return true;
+    }
+
+    public boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+
+    /**
+     * 消費者（GameLoop，持有 engine 鎖）：依序送進 engine.handleTypedChar，
+     * 記錄每個按鍵等待的時間 ({@link FrameProfiler.Phase#INPUT})，回傳處理了幾個。
+     */
+    public int drainTo(GameEngine engine) {
+        FrameProfiler profiler = FrameProfiler.shared();
+        long h = head.get();
+        long t = tail.get();
+        for (long s = h; s < t; s++) {
+            int i = (int) s & mask;
+            engine.handleTypedChar(chars[i]);
+            long stamp = stamps[i];
+            profiler.end(FrameProfiler.Phase.INPUT, stamp);
+            processedStamps[(int) processedCount & mask] = stamp;
+            processedCount++;
+        }
+        head.lazySet(t);
+        return (int) (t - h);
+    }
+
+    /** 目前為止送進引擎的按鍵數（需持有 engine 鎖）。 */
+    public long processedCount() {
+        return processedCount;
+    }
+
+    /**
+     * 把第 from 個（含）之後處理過的按鍵時間戳複製到 dst[offset..]，回傳複製了幾個（需持有 engine 鎖）。
+     * 太舊、已被覆蓋或放不下的部分直接略過。
+     */
+    public int copyProcessed(long from, long[] dst, int offset) {
+        long start = Math.max(from, processedCount - processedStamps.length);
+        int n = (int) Math.max(0, Math.min(processedCount - start, dst.length - offset));
+        for (int k = 0; k < n; k++) {
+            dst[offset + k] = processedStamps[(int) (start + k) & mask];
+        }
+        return n;
+    }
+
+    /** 因佇列滿而丟掉的按鍵數（只供除錯，非精確同步）。 */
+    public long getDropped() {
+        return dropped;
+    }
+}
@@ -1,8 +1,91 @@
 package typinggame;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public interface LeaderboardStorage {
     void saveScore(ScoreEntry entry);
     List<ScoreEntry> getTopScores(int limit);
-}
\ No newline at end of file
+
+    /** 批次寫入；預設逐筆呼叫 saveScore，支援批次的實作（例如 MongoDB insertMany）可覆寫。 */
+    default void saveScores(List<ScoreEntry> entries) {
+        for (ScoreEntry e : entries) {
+            saveScore(e);
+        }
+    }
+
+    /** 非同步查詢前幾名；預設直接同步查詢後包成已完成的 future。 */
+    default CompletableFuture<List<ScoreEntry>> getTopScoresAsync(int limit) {
+        try {
+            return CompletableFuture.completedFuture(getTopScores(limit));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // 進階查詢（排行榜網頁等用途）：不支援的實作丟出 UnsupportedOperationException
+    // ------------------------------------------------------------------
+
+    /**
+     * 依名次分頁（分數高到低，同分先到者優先）。cursor 為 null 時從第一名開始，
+     * 之後傳入上一頁的 {@link ScorePage#getNextCursor()}。
+     */
+    default ScorePage getScores(TimeWindow window, int limit, String cursor) {
+        throw unsupported("getScores");
+    }
+
+    /** 玩家在這個區間的最佳紀錄；沒有紀錄時回傳 null。 */
+    default ScoreEntry getPersonalBest(String playerName, TimeWindow window) {
+        throw unsupported("getPersonalBest");
+    }
+
+    /** 玩家的紀錄，由新到舊分頁；cursor 用法同 {@link #getScores}。 */
+    default ScorePage getPlayerHistory(String playerName, int limit, String cursor) {
+        throw unsupported("getPlayerHistory");
+    }
+
+    /**
+     * 依儲存順序逐筆交給 action（匯出用）。實作以串流方式讀取，記憶體用量與總筆數無關；
+     * 走訪期間新寫入的紀錄不一定會出現。
+     */
+    default void forEachScore(Consumer<? super ScoreEntry> action) {
+        throw unsupported("forEachScore");
+    }
+
+    /** 區間內分數嚴格大於 score 的筆數；其餘的名次與百分等級查詢都由它推得。 */
+    default long countScoresAbove(long score, TimeWindow window) {
+        throw unsupported("countScoresAbove");
+    }
+
+    /** 區間內的總筆數。 */
+    default long countScores(TimeWindow window) {
+        return countScoresAbove(Long.MIN_VALUE, window);
+    }
+
+    /** 這個分數在區間內排第幾名（1 起算，同分並列）。 */
+    default long getRank(long score, TimeWindow window) {
+        return countScoresAbove(score, window) + 1;
+    }
+
+    /** 玩家最佳紀錄在區間內的名次；區間內沒有紀錄時回傳 0。 */
+    default long getPlayerRank(String playerName, TimeWindow window) {
+        ScoreEntry best = getPersonalBest(playerName, window);
+        return best == null ? 0 : getRank(best.getScore(), window);
+    }
+
+    /** 百分等級：區間內分數低於 score 的比例 (0~100)；區間內沒有任何紀錄時為 100。 */
+    default double getPercentile(long score, TimeWindow window) {
+        long total = countScores(window);
+        if (total == 0) {
+            return 100.0;
+        }
+        long atOrAbove = score == Long.MIN_VALUE ? total : countScoresAbove(score - 1, window);
+        return 100.0 * (total - atOrAbove) / total;
+    }
+
+    private UnsupportedOperationException unsupported(String method) {
+        return new UnsupportedOperationException(getClass().getSimpleName() + " does not support " + method);
+    }
+}
@@ -0,0 +1,709 @@
+package typinggame;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Bulk export / import of a whole leaderboard as a stream of scores.
+ *
+ * 匯出時以 {@link LeaderboardStorage#forEachScore} 逐筆讀出（MongoDB 以游標分批取回），
+ * 邊讀邊寫成 NDJSON（每行一筆 JSON）或二進位格式；匯入時邊讀邊累積成每批
+ * {@link GameConfig#IMPORT_BATCH_SIZE} 筆交給 {@link LeaderboardStorage#saveScores}
+ * （MongoDB 為 unordered insertMany，檔案排行榜為一次 fsync 的 group commit）。
+ * 任何時候記憶體中最多只有一批紀錄，與排行榜總筆數無關；二進位格式另外記住出現過的玩家名字。
+ *
+ * 二進位格式 (.tgs，big-endian)：int "TGSX", int 版本，之後每筆一個 tag：
+ *   1 = 新玩家：writeUTF 名字，依出現順序取得 id 0, 1, 2...
+ *   2 = 一筆紀錄：{@link ScoreEntry#BYTES} bytes（{@link ScoreEntry#writeTo}）
+ *   0 = 結尾：long 筆數，int 之前所有 bytes 的 CRC32
+ * 沒有結尾或 CRC 不符時匯入失敗（已寫入的批次不會復原）。
+ *
+ * 用法：
+ *   java typinggame.LeaderboardTool export &lt;storage&gt; &lt;file|-&gt; [--format ndjson|binary]
+ *   java typinggame.LeaderboardTool import &lt;file|-&gt; &lt;storage&gt; [--format ndjson|binary] [--batch N]
+ *   java typinggame.LeaderboardTool copy &lt;storage&gt; &lt;storage&gt; [--batch N]
+ * storage 為 mongo[:uri]（TypingGameDB.scores）或 file[:dir]；檔名結尾 .gz 時以 gzip 壓縮，
+ * 未指定 --format 時 .tgs 為二進位，其餘為 NDJSON。進度與結果印在 stderr（資料可以寫到 stdout）。
+ */
+public final class LeaderboardTool {
+
+    /** 匯出檔的格式。 */
+    public enum Format {
+        NDJSON, BINARY;
+
+        /** 依副檔名判斷（忽略 .gz）：.tgs 為二進位，其餘為 NDJSON。 */
+        static Format forFile(String name) {
+            String base = name.endsWith(".gz") ? name.substring(0, name.length() - 3) : name;
+            return base.endsWith(BINARY_EXTENSION) ? BINARY : NDJSON;
+        }
+    }
+
+    public static final String BINARY_EXTENSION = ".tgs";
+
+    private static final int MAGIC = 0x54475358; // "TGSX"
+    private static final int VERSION = 1;
+    private static final int TAG_END = 0;
+    private static final int TAG_NAME = 1;
+    private static final int TAG_ENTRY = 2;
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final long PROGRESS_EVERY = 100_000;
+
+    private LeaderboardTool() {
+    }
+
+    // ------------------------------------------------------------------ API
+
+    /** 把 from 的所有紀錄寫到 out（不關閉 out），回傳筆數。 */
+    public static long export(LeaderboardStorage from, OutputStream out, Format format) throws IOException {
+        return export(from, out, format, null);
+    }
+
+    /** 從 in 讀出所有紀錄，每 batchSize 筆寫入 to 一次，回傳筆數。 */
+    public static long importScores(InputStream in, Format format, LeaderboardStorage to, int batchSize)
+            throws IOException {
+        return importScores(in, format, to, batchSize, null);
+    }
+
+    /** 不經過檔案，直接從 from 串流到 to。 */
+    public static long copy(LeaderboardStorage from, LeaderboardStorage to, int batchSize) {
+        return copy(from, to, batchSize, null);
+    }
+
+    private static long export(LeaderboardStorage from, OutputStream out, Format format, Progress progress)
+            throws IOException {
+        ScoreWriter writer = format == Format.BINARY ? new BinaryWriter(out) : new NdjsonWriter(out);
+        try {
+            from.forEachScore(entry -> {
+                try {
+                    writer.write(entry);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (progress != null) {
+                    progress.tick();
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.finish();
+        return writer.count();
+    }
+
+    private static long importScores(InputStream in, Format format, LeaderboardStorage to, int batchSize,
+                                     Progress progress) throws IOException {
+        ScoreReader reader = format == Format.BINARY ? new BinaryReader(in) : new NdjsonReader(in);
+        BatchSink sink = new BatchSink(to, batchSize, progress);
+        ScoreEntry entry;
+        while ((entry = reader.next()) != null) {
+            sink.accept(entry);
+        }
+        sink.flush();
+        return sink.count;
+    }
+
+    private static long copy(LeaderboardStorage from, LeaderboardStorage to, int batchSize, Progress progress) {
+        BatchSink sink = new BatchSink(to, batchSize, progress);
+        from.forEachScore(sink);
+        sink.flush();
+        return sink.count;
+    }
+
+    /** 累積到一批才寫入；記憶體中只有這一批。 */
+    private static final class BatchSink implements Consumer<ScoreEntry> {
+        private final LeaderboardStorage to;
+        private final int batchSize;
+        private final Progress progress;
+        private final List<ScoreEntry> batch;
+        long count;
+
+        BatchSink(LeaderboardStorage to, int batchSize, Progress progress) {
+            if (batchSize <= 0) {
+                throw new IllegalArgumentException("batch size must be positive: " + batchSize);
+            }
+            this.to = to;
+            this.batchSize = batchSize;
+            this.progress = progress;
+            this.batch = new ArrayList<>(batchSize);
+        }
+
+        @Override
+        public void accept(ScoreEntry entry) {
+            batch.add(entry);
+            if (batch.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            // saveScores 可能保留傳入的 List（例如非同步寫入），每批交出去的都是新的 List
+            to.saveScores(new ArrayList<>(batch));
+            count += batch.size();
+            if (progress != null) {
+                progress.add(batch.size());
+            }
+            batch.clear();
+        }
+    }
+
+    /** 每 {@link #PROGRESS_EVERY} 筆在 stderr 印一行進度。 */
+    private static final class Progress {
+        private final String verb;
+        private final long started = System.nanoTime();
+        private long count;
+
+        Progress(String verb) {
+            this.verb = verb;
+        }
+
+        void tick() {
+            add(1);
+        }
+
+        void add(long n) {
+            long before = count;
+            count += n;
+            if (count / PROGRESS_EVERY != before / PROGRESS_EVERY) {
+                System.err.printf(Locale.ROOT, "  %,d scores %s (%,.0f/s)%n", count, verb, rate());
+            }
+        }
+
+        double seconds() {
+            return (System.nanoTime() - started) / 1e9;
+        }
+
+        double rate() {
+            return count / Math.max(seconds(), 1e-9);
+        }
+    }
+
+    // ------------------------------------------------------------------ 格式
+
+    private interface ScoreWriter {
+        void write(ScoreEntry entry) throws IOException;
+
+        /** 寫入結尾並 flush（不關閉底層串流）。 */
+        void finish() throws IOException;
+
+        long count();
+    }
+
+    private interface ScoreReader {
+        /** 下一筆；讀完時回傳 null。 */
+        ScoreEntry next() throws IOException;
+    }
+
+    /** 包一層不會關閉底層串流的 OutputStream，讓 writer 可以放心 flush 而不關掉 stdout。 */
+    private static OutputStream unclosable(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+    }
+
+    /** 每行一個 JSON 物件：name, score, epochMillis, words, wpm, accuracy, maxSpeed。 */
+    private static final class NdjsonWriter implements ScoreWriter {
+        private final Writer out;
+        private final StringBuilder line = new StringBuilder(160);
+        private long count;
+
+        NdjsonWriter(OutputStream out) {
+            this.out = new OutputStreamWriter(new BufferedOutputStream(unclosable(out), BUFFER_BYTES),
+                    StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void write(ScoreEntry e) throws IOException {
+            line.setLength(0);
+            line.append("{\"name\":");
+            appendString(line, e.getPlayerName());
+            line.append(",\"score\":").append(e.getScore())
+                    .append(",\"epochMillis\":").append(e.getEpochMillis())
+                    .append(",\"words\":").append(e.getWordsCleared())
+                    .append(",\"wpm\":").append(e.getWpm())
+                    .append(",\"accuracy\":").append(e.getAccuracy())
+                    // 以 float 印出：存的就是 float，印成 double 會多出一串無意義的位數
+                    .append(",\"maxSpeed\":").append(finite((float) e.getMaxSpeed()))
+                    .append("}\n");
+            out.append(line);
+            count++;
+        }
+
+        private static float finite(float value) {
+            return Float.isFinite(value) ? value : 0f; // JSON 沒有 NaN / Infinity
+        }
+
+        private static void appendString(StringBuilder sb, String s) {
+            sb.append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                switch (c) {
+                    case '"': sb.append("\\\""); break;
+                    case '\\': sb.append("\\\\"); break;
+                    case '\n': sb.append("\\n"); break;
+                    case '\r': sb.append("\\r"); break;
+                    case '\t': sb.append("\\t"); break;
+                    default:
+                        if (c < 0x20) {
+                            sb.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                        } else {
+                            sb.append(c);
+                        }
+                }
+            }
+            sb.append('"');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public long count() {
+            return count;
+        }
+    }
+
+    /**
+     * 只解析匯出時寫出的那種扁平物件（值為字串或數字）；不認得的欄位略過，缺少的跑分統計為 0。
+     * 錯誤訊息帶行號。
+     */
+    private static final class NdjsonReader implements ScoreReader {
+        private final BufferedReader in;
+        private String line;
+        private int pos;
+        private long lineNumber;
+
+        NdjsonReader(InputStream in) {
+            this.in = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_BYTES);
+        }
+
+        @Override
+        public ScoreEntry next() throws IOException {
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                pos = 0;
+                skipSpaces();
+                if (pos < line.length()) {
+                    try {
+                        return parseEntry();
+                    } catch (NumberFormatException e) {
+                        throw error("bad number (" + e.getMessage() + ")");
+                    }
+                }
+            }
+            return null;
+        }
+
+        private ScoreEntry parseEntry() throws IOException {
+            String name = null;
+            Long score = null;
+            long millis = 0;
+            int words = 0;
+            double wpm = 0;
+            double accuracy = 0;
+            double maxSpeed = 0;
+
+            expect('{');
+            skipSpaces();
+            if (peek() == '}') {
+                pos++;
+            } else {
+                while (true) {
+                    String key = parseString();
+                    skipSpaces();
+                    expect(':');
+                    skipSpaces();
+                    switch (key) {
+                        case "name": name = parseString(); break;
+                        case "score": score = Long.parseLong(parseNumber()); break;
+                        case "epochMillis": millis = Long.parseLong(parseNumber()); break;
+                        case "words": words = Integer.parseInt(parseNumber()); break;
+                        case "wpm": wpm = Double.parseDouble(parseNumber()); break;
+                        case "accuracy": accuracy = Double.parseDouble(parseNumber()); break;
+                        case "maxSpeed": maxSpeed = Double.parseDouble(parseNumber()); break;
+                        default:
+                            if (peek() == '"') {
+                                parseString();
+                            } else {
+                                parseNumber();
+                            }
+                    }
+                    skipSpaces();
+                    char c = peek();
+                    pos++;
+                    if (c == '}') {
+                        break;
+                    }
+                    if (c != ',') {
+                        throw error("expected ',' or '}'");
+                    }
+                    skipSpaces();
+                }
+            }
+            skipSpaces();
+            if (pos < line.length()) {
+                throw error("unexpected text after object");
+            }
+            if (name == null || score == null) {
+                throw error("missing \"name\" or \"score\"");
+            }
+            return new ScoreEntry(name, score, millis, words, wpm, accuracy, maxSpeed);
+        }
+
+        private String parseString() throws IOException {
+            expect('"');
+            StringBuilder sb = null;
+            int start = pos;
+            while (pos < line.length()) {
+                char c = line.charAt(pos++);
+                if (c == '"') {
+                    return sb == null ? line.substring(start, pos - 1) : sb.toString();
+                }
+                if (c != '\\') {
+                    if (sb != null) {
+                        sb.append(c);
+                    }
+                    continue;
+                }
+                // 第一次遇到跳脫字元才開始複製
+                if (sb == null) {
+                    sb = new StringBuilder(line.substring(start, pos - 1));
+                }
+                char esc = pos < line.length() ? line.charAt(pos++) : 0;
+                switch (esc) {
+                    case '"': case '\\': case '/': sb.append(esc); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'u':
+                        if (pos + 4 > line.length()) {
+                            throw error("bad \\u escape");
+                        }
+                        try {
+                            sb.append((char) Integer.parseInt(line.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("bad \\u escape");
+                        }
+                        pos += 4;
+                        break;
+                    default:
+                        throw error("bad escape");
+                }
+            }
+            throw error("unterminated string");
+        }
+
+        private String parseNumber() throws IOException {
+            int start = pos;
+            while (pos < line.length() && "+-.0123456789eE".indexOf(line.charAt(pos)) >= 0) {
+                pos++;
+            }
+            if (start == pos) {
+                throw error("expected a string or number");
+            }
+            return line.substring(start, pos);
+        }
+
+        private void skipSpaces() {
+            while (pos < line.length() && Character.isWhitespace(line.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private char peek() throws IOException {
+            if (pos >= line.length()) {
+                throw error("unexpected end of line");
+            }
+            return line.charAt(pos);
+        }
+
+        private void expect(char c) throws IOException {
+            if (peek() != c) {
+                throw error("expected '" + c + "'");
+            }
+            pos++;
+        }
+
+        private IOException error(String message) {
+            return new IOException("Bad NDJSON at line " + lineNumber + ", column " + (pos + 1) + ": " + message);
+        }
+    }
+
+    private static final class BinaryWriter implements ScoreWriter {
+        private final CRC32 crc = new CRC32();
+        private final DataOutputStream out;
+        private final PlayerDictionary players = new PlayerDictionary(); // 這個檔案自己的 id
+        private final ByteBuffer record = ByteBuffer.allocate(1 + ScoreEntry.BYTES);
+        private int knownPlayers;
+        private long count;
+
+        BinaryWriter(OutputStream out) throws IOException {
+            // DataOutputStream 不緩衝，CRC 看到的就是已經寫出的每個 byte
+            this.out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(unclosable(out), BUFFER_BYTES), crc));
+            this.out.writeInt(MAGIC);
+            this.out.writeInt(VERSION);
+        }
+
+        @Override
+        public void write(ScoreEntry e) throws IOException {
+            int id = players.idOf(e.getPlayerName());
+            if (id == knownPlayers) {
+                out.writeByte(TAG_NAME);
+                out.writeUTF(e.getPlayerName());
+                knownPlayers++;
+            }
+            record.clear();
+            record.put((byte) TAG_ENTRY);
+            e.writeTo(record, players);
+            out.write(record.array(), 0, record.position());
+            count++;
+        }
+
+        @Override
+        public void finish() throws IOException {
+            out.writeByte(TAG_END);
+            out.writeLong(count);
+            out.writeInt((int) crc.getValue());
+            out.flush();
+        }
+
+        @Override
+        public long count() {
+            return count;
+        }
+    }
+
+    private static final class BinaryReader implements ScoreReader {
+        private final CRC32 crc = new CRC32();
+        private final DataInputStream in;
+        private final PlayerDictionary players = new PlayerDictionary();
+        private final ByteBuffer record = ByteBuffer.allocate(ScoreEntry.BYTES);
+        private int knownPlayers;
+        private long count;
+        private boolean ended;
+
+        BinaryReader(InputStream in) throws IOException {
+            // 緩衝在 CRC 之下：CRC 只算真正讀走的 bytes，不含預讀的部分
+            this.in = new DataInputStream(new CheckedInputStream(new BufferedInputStream(in, BUFFER_BYTES), crc));
+            try {
+                if (this.in.readInt() != MAGIC) {
+                    throw new IOException("Not a leaderboard export (bad magic)");
+                }
+                int version = this.in.readInt();
+                if (version != VERSION) {
+                    throw new IOException("Unsupported leaderboard export version " + version);
+                }
+            } catch (EOFException e) {
+                throw new IOException("Not a leaderboard export (file too short)", e);
+            }
+        }
+
+        @Override
+        public ScoreEntry next() throws IOException {
+            if (ended) {
+                return null;
+            }
+            try {
+                while (true) {
+                    int tag = in.read();
+                    switch (tag) {
+                        case TAG_NAME:
+                            if (players.idOf(in.readUTF()) != knownPlayers++) {
+                                throw new IOException("Corrupt leaderboard export: duplicate player name");
+                            }
+                            break;
+                        case TAG_ENTRY:
+                            in.readFully(record.array());
+                            record.clear();
+                            count++;
+                            try {
+                                return ScoreEntry.readFrom(record, players);
+                            } catch (IllegalArgumentException e) {
+                                throw new IOException("Corrupt leaderboard export at score " + count + ": "
+                                        + e.getMessage(), e);
+                            }
+                        case TAG_END:
+                            long expectedCount = in.readLong();
+                            int actual = (int) crc.getValue();
+                            int expected = in.readInt();
+                            if (expected != actual) {
+                                throw new IOException("Corrupt leaderboard export: checksum mismatch");
+                            }
+                            if (expectedCount != count) {
+                                throw new IOException("Corrupt leaderboard export: expected " + expectedCount
+                                        + " scores, read " + count);
+                            }
+                            ended = true;
+                            return null;
+                        case -1:
+                            throw new EOFException();
+                        default:
+                            throw new IOException("Corrupt leaderboard export: bad tag " + tag + " after score "
+                                    + count);
+                    }
+                }
+            } catch (EOFException e) {
+                throw new IOException("Leaderboard export is truncated after " + count + " scores", e);
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------ 命令列
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage:",
+            "  java typinggame.LeaderboardTool export <storage> <file|-> [--format ndjson|binary]",
+            "  java typinggame.LeaderboardTool import <file|-> <storage> [--format ndjson|binary] [--batch N]",
+            "  java typinggame.LeaderboardTool copy <storage> <storage> [--batch N]",
+            "storage: mongo[:uri] | file[:dir]   (.gz files are gzip-compressed; *.tgs defaults to binary)");
+
+    /** mongo[:uri]、file[:dir] 或 memory；省略的部分與遊戲本身的設定相同。 */
+    static LeaderboardStorage openStorage(String spec) throws IOException {
+        int colon = spec.indexOf(':');
+        String kind = colon < 0 ? spec : spec.substring(0, colon);
+        String arg = colon < 0 ? null : spec.substring(colon + 1);
+        switch (kind) {
+            case "mongo":
+                return new MongoLeaderboard(arg != null ? arg : GameConfig.MONGO_URI, "TypingGameDB", "scores");
+            case "file":
+                return new FileLeaderboard(Paths.get(arg != null ? arg : GameConfig.LEADERBOARD_DIR));
+            case "memory":
+                return new MemoryLeaderboard();
+            default:
+                throw new IllegalArgumentException("Unknown storage '" + spec
+                        + "' (expected mongo[:uri], file[:dir] or memory)");
+        }
+    }
+
+    private static InputStream openInput(String file) throws IOException {
+        InputStream in = "-".equals(file) ? System.in : Files.newInputStream(Paths.get(file));
+        return file.endsWith(".gz") ? new GZIPInputStream(in, BUFFER_BYTES) : in;
+    }
+
+    private static OutputStream openOutput(String file) throws IOException {
+        OutputStream out = "-".equals(file) ? System.out : Files.newOutputStream(Paths.get(file));
+        return file.endsWith(".gz") ? new GZIPOutputStream(out, BUFFER_BYTES) : out;
+    }
+
+    private static void closeQuietly(Object resource) {
+        if (resource instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) resource).close();
+            } catch (Exception e) {
+                System.err.println("⚠️ Error closing " + resource.getClass().getSimpleName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+
+        List<String> positional = new ArrayList<>();
+        Format format = null;
+        int batch = GameConfig.IMPORT_BATCH_SIZE;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if ("--format".equals(args[i]) && i + 1 < args.length) {
+                    format = Format.valueOf(args[++i].toUpperCase(Locale.ROOT));
+                } else if ("--batch".equals(args[i]) && i + 1 < args.length) {
+                    batch = Integer.parseInt(args[++i]);
+                } else {
+                    positional.add(args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            positional.clear();
+        }
+        String command = positional.isEmpty() ? "" : positional.get(0);
+        if (positional.size() != 3 || batch <= 0
+                || !("export".equals(command) || "import".equals(command) || "copy".equals(command))) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        LeaderboardStorage storage = null;
+        LeaderboardStorage target = null;
+        int status = 0;
+        try {
+            long count;
+            Progress progress;
+            switch (command) {
+                case "export": {
+                    String file = positional.get(2);
+                    storage = openStorage(positional.get(1));
+                    progress = new Progress("exported");
+                    try (OutputStream out = openOutput(file)) {
+                        count = export(storage, out, format != null ? format : Format.forFile(file), progress);
+                    }
+                    break;
+                }
+                case "import": {
+                    String file = positional.get(1);
+                    storage = openStorage(positional.get(2));
+                    progress = new Progress("imported");
+                    try (InputStream in = openInput(file)) {
+                        count = importScores(in, format != null ? format : Format.forFile(file), storage, batch,
+                                progress);
+                    }
+                    break;
+                }
+                default: {
+                    storage = openStorage(positional.get(1));
+                    target = openStorage(positional.get(2));
+                    progress = new Progress("copied");
+                    count = copy(storage, target, batch, progress);
+                }
+            }
+            System.err.printf(Locale.ROOT, "✅ %,d scores %s in %.1fs (%,.0f/s)%n", count, progress.verb,
+                    progress.seconds(), count / Math.max(progress.seconds(), 1e-9));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("❌ " + command + " failed: " + e.getMessage());
+            status = 1;
+        } finally {
+            // 檔案排行榜關閉時要等背景合併做完
+            closeQuietly(target);
+            closeQuietly(storage);
+        }
+        System.exit(status);
+    }
+}
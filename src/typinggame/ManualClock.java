@@ -0,0 +1,30 @@
+package typinggame;
+
+/**
+ * Clock that only moves when told to; used by headless simulations.
+ * 內部以 nanos 累加，避免 16.67ms 的模擬步長被截斷後累積誤差。
+ */
+public class ManualClock implements GameClock {
+    private long nanos;
+
+    public ManualClock() {
+        this(0L);
+    }
+
+    public ManualClock(long startMillis) {
+        this.nanos = startMillis * 1_000_000L;
+    }
+
+    @Override
+    public long millis() {
+        return nanos / 1_000_000L;
+    }
+
+    public void advanceNanos(long delta) {
+        nanos += delta;
+    }
+
+    public void advanceMillis(long delta) {
+        nanos += delta * 1_000_000L;
+    }
+}
@@ -1,21 +1,377 @@
 package typinggame;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.function.Consumer;
 
+/**
+ * In-memory leaderboard.
+ *
+ * 只保留前 capacity 名 (min-heap，插入 O(log K))，記憶體不會隨場數無限成長；
+ * 另以 Fenwick tree 記錄「每個分數出現幾次」，不論保留多少筆都能 O(log S) 查名次。
+ * keepHistory = true 時額外保留每一筆紀錄（依時間順序）。
+ *
+ * 進階查詢：全部 (ALL_TIME) 與本週每一天各有一份同樣結構的 {@link Board}，
+ * 每日 / 每週排行直接合併對應幾天的 Board（最多 7 份），不用掃描所有紀錄；
+ * 上週以前的每日 Board 在寫入時丟掉。每位玩家另記最佳紀錄（全部與本週每天）與最近 capacity 筆紀錄。
+ * 每個 Board 只保留前 capacity 名，所以分頁最多翻到第 capacity 名；名次與百分等級則涵蓋所有紀錄。
+ */
 public class MemoryLeaderboard implements LeaderboardStorage {
-    private final List<ScoreEntry> scores = new ArrayList<>();
 
+    /** heap 節點：seq 讓同分時先達成的人排前面（與舊版穩定排序一致）。 */
+    private static final class Ranked {
+        final ScoreEntry entry;
+        final long seq;
+
+        Ranked(ScoreEntry entry, long seq) {
+            this.entry = entry;
+            this.seq = seq;
+        }
+    }
+
+    // 名次由高到低：分數高者優先，同分先到者優先
+    private static final Comparator<Ranked> BEST_FIRST = Comparator
+            .comparingLong((Ranked r) -> -r.entry.getScore())
+            .thenComparingLong(r -> r.seq);
+
+    /** 一個時間範圍（全部或某一天）的前 capacity 名與分數分布。 */
+    private final class Board {
+        final PriorityQueue<Ranked> top = new PriorityQueue<>(capacity + 1, BEST_FIRST.reversed()); // 頂端是最後一名
+        final ScoreCounts counts = new ScoreCounts();
+        Ranked[] sorted;                     // 排好序的快照，top 變動時作廢
+
+        void add(Ranked r) {
+            counts.add(r.entry.getScore());
+            if (top.size() < capacity) {
+                top.add(r);
+                sorted = null;
+            } else if (BEST_FIRST.compare(r, top.peek()) < 0) {
+                top.poll();
+                top.add(r);
+                sorted = null;
+            }
+        }
+
+        Ranked[] sorted() {
+            if (sorted == null) {
+                sorted = top.toArray(new Ranked[0]);
+                Arrays.sort(sorted, BEST_FIRST);
+            }
+            return sorted;
+        }
+    }
+
+    /** 一位玩家的最佳紀錄與最近的紀錄。 */
+    private static final class Player {
+        final String name; // 這位玩家所有保留的紀錄共用這個 String
+        Ranked best;
+        final TreeMap<Long, Ranked> bestByDay = new TreeMap<>(); // 本週每天的最佳
+        final ArrayDeque<Ranked> recent = new ArrayDeque<>();    // 由舊到新，最多 capacity 筆
+
+        Player(String name) {
+            this.name = name;
+        }
+    }
+
+    private final int capacity;
+    private final GameClock clock;
+    private final Board allTime;
+    private final TreeMap<Long, Board> days = new TreeMap<>();  // epoch day → 當天的 Board（只留本週）
+    private final Map<String, Player> players = new HashMap<>();
+    private final List<ScoreEntry> history;      // keepHistory 時才有
+    private long seq;
+
+    public MemoryLeaderboard() {
+        this(GameConfig.LEADERBOARD_CAPACITY);
+    }
+
+    public MemoryLeaderboard(int capacity) {
+        this(capacity, false);
+    }
+
+    public MemoryLeaderboard(int capacity, boolean keepHistory) {
+        this(capacity, keepHistory, GameClock.SYSTEM);
+    }
+
+    /** clock 決定「今天」與「本週」是哪幾天。 */
+    public MemoryLeaderboard(int capacity, boolean keepHistory, GameClock clock) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.clock = clock;
+        this.allTime = new Board();
+        this.history = keepHistory ? new ArrayList<>() : null;
+    }
+
+    @Override
+    public synchronized void saveScore(ScoreEntry entry) {
+        Player p = players.computeIfAbsent(entry.getPlayerName(), Player::new);
+        entry = entry.withPlayerName(p.name);
+        if (history != null) {
+            history.add(entry);
+        }
+        Ranked r = new Ranked(entry, seq++);
+        allTime.add(r);
+
+        long now = clock.millis();
+        long weekStart = TimeWindow.WEEKLY.firstDay(now);
+        long day = TimeWindow.epochDay(entry.getEpochMillis());
+        while (!days.isEmpty() && days.firstKey() < weekStart) {
+            days.pollFirstEntry(); // 上週以前
+        }
+        if (day >= weekStart) {
+            days.computeIfAbsent(day, d -> new Board()).add(r);
+        }
+
+        if (p.best == null || BEST_FIRST.compare(r, p.best) < 0) {
+            p.best = r;
+        }
+        while (!p.bestByDay.isEmpty() && p.bestByDay.firstKey() < weekStart) {
+            p.bestByDay.pollFirstEntry();
+        }
+        if (day >= weekStart) {
+            Ranked dayBest = p.bestByDay.get(day);
+            if (dayBest == null || BEST_FIRST.compare(r, dayBest) < 0) {
+                p.bestByDay.put(day, r);
+            }
+        }
+        p.recent.addLast(r);
+        if (p.recent.size() > capacity) {
+            p.recent.removeFirst();
+        }
+    }
+
+    /** 一次放入大量分數，效能量測預先填資料用。 */
+    void preload(Collection<ScoreEntry> entries) {
+        for (ScoreEntry e : entries) {
+            saveScore(e);
+        }
+    }
+
+    @Override
+    public synchronized List<ScoreEntry> getTopScores(int limit) {
+        Ranked[] sorted = allTime.sorted();
+        int actualLimit = Math.min(limit, sorted.length);
+        List<ScoreEntry> list = new ArrayList<>(actualLimit);
+        for (int i = 0; i < actualLimit; i++) {
+            list.add(sorted[i].entry);
+        }
+        return list;
+    }
+
+    /** 這個分數目前排第幾名（1 起算，同分並列），涵蓋所有曾經存入的紀錄。 */
+    public synchronized long getRank(long score) {
+        return allTime.counts.countAbove(score) + 1;
+    }
+
+    /** 曾經存入的總筆數（包含已不在前 capacity 名內的）。 */
+    public synchronized long size() {
+        return allTime.counts.total();
+    }
+
+    /** 依存入順序的完整紀錄；未開啟 keepHistory 時為空。 */
+    public synchronized List<ScoreEntry> getHistory() {
+        return history == null ? Collections.emptyList() : new ArrayList<>(history);
+    }
+
+    /** keepHistory 時依存入順序走訪每一筆；否則只有保留下來的前 capacity 名（依名次）。 */
+    @Override
+    public synchronized void forEachScore(Consumer<? super ScoreEntry> action) {
+        if (history != null) {
+            history.forEach(action);
+        } else {
+            for (Ranked r : allTime.sorted()) {
+                action.accept(r.entry);
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------ 進階查詢
+
+    /** 各 Board 已排序，從游標之後開始做 k-way merge（k 最多 7）。游標是 (分數, seq)。 */
+    @Override
+    public synchronized ScorePage getScores(TimeWindow window, int limit, String cursor) {
+        List<Board> boards = boards(window);
+        Ranked[][] lists = new Ranked[boards.size()][];
+        int[] pos = new int[boards.size()];
+        for (int b = 0; b < lists.length; b++) {
+            lists[b] = boards.get(b).sorted();
+            if (cursor != null) {
+                pos[b] = after(lists[b], ScorePage.cursorValue(cursor), ScorePage.cursorLongKey(cursor));
+            }
+        }
+
+        List<ScoreEntry> page = new ArrayList<>(Math.max(0, Math.min(limit, capacity)));
+        Ranked last = null;
+        while (page.size() < limit) {
+            int pick = -1;
+            for (int b = 0; b < lists.length; b++) {
+                if (pos[b] < lists[b].length
+                        && (pick < 0 || BEST_FIRST.compare(lists[b][pos[b]], lists[pick][pos[pick]]) < 0)) {
+                    pick = b;
+                }
+            }
+            if (pick < 0) {
+                return new ScorePage(page, null);
+            }
+            last = lists[pick][pos[pick]++];
+            page.add(last.entry);
+        }
+        boolean more = false;
+        for (int b = 0; b < lists.length; b++) {
+            more |= pos[b] < lists[b].length;
+        }
+        return new ScorePage(page, more && last != null ? ScorePage.cursor(last.entry.getScore(), last.seq) : null);
+    }
+
+    @Override
+    public synchronized ScoreEntry getPersonalBest(String playerName, TimeWindow window) {
+        Player p = players.get(playerName);
+        if (p == null) {
+            return null;
+        }
+        if (window == TimeWindow.ALL_TIME) {
+            return p.best.entry;
+        }
+        long now = clock.millis();
+        Ranked best = null;
+        for (Ranked r : p.bestByDay.subMap(window.firstDay(now), true, TimeWindow.epochDay(now), true).values()) {
+            if (best == null || BEST_FIRST.compare(r, best) < 0) {
+                best = r;
+            }
+        }
+        return best == null ? null : best.entry;
+    }
+
+    /** 每位玩家只保留最近 capacity 筆；游標是 (日期, seq)。limit <= 0 時與其他分頁查詢一樣回傳沒有游標的空頁。 */
     @Override
-    public void saveScore(ScoreEntry entry) {
-        scores.add(entry);
-        Collections.sort(scores);
+    public synchronized ScorePage getPlayerHistory(String playerName, int limit, String cursor) {
+        Player p = players.get(playerName);
+        if (p == null || limit <= 0) {
+            return ScorePage.empty();
+        }
+        long before = cursor == null ? Long.MAX_VALUE : ScorePage.cursorLongKey(cursor);
+        List<ScoreEntry> page = new ArrayList<>();
+        Iterator<Ranked> it = p.recent.descendingIterator();
+        Ranked last = null;
+        while (it.hasNext()) {
+            Ranked r = it.next();
+            if (r.seq >= before) {
+                continue;
+            }
+            if (page.size() == limit) {
+                return new ScorePage(page, ScorePage.cursor(last.entry.getEpochMillis(), last.seq));
+            }
+            page.add(r.entry);
+            last = r;
+        }
+        return new ScorePage(page, null);
     }
 
     @Override
-    public List<ScoreEntry> getTopScores(int limit) {
-        int actualLimit = Math.min(limit, scores.size());
-        return new ArrayList<>(scores.subList(0, actualLimit));
+    public synchronized long countScoresAbove(long score, TimeWindow window) {
+        long n = 0;
+        for (Board b : boards(window)) {
+            n += b.counts.countAbove(score);
+        }
+        return n;
+    }
+
+    /** 查詢區間對應的 Board：全部，或本週 / 今天的每日 Board。 */
+    private List<Board> boards(TimeWindow window) {
+        if (window == TimeWindow.ALL_TIME) {
+            return Collections.singletonList(allTime);
+        }
+        long now = clock.millis();
+        return new ArrayList<>(days.subMap(window.firstDay(now), true, TimeWindow.epochDay(now), true).values());
+    }
+
+    /** 排序好的陣列中，第一個排在 (score, seq) 之後的位置。 */
+    private static int after(Ranked[] sorted, long score, long seq) {
+        int lo = 0;
+        int hi = sorted.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            long s = sorted[mid].entry.getScore();
+            if (s > score || (s == score && sorted[mid].seq <= seq)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * 分數 → 次數的 Fenwick tree (binary indexed tree)，陣列依最高分自動加倍。
+     * 分數是存活秒數，範圍遠小於筆數，所以用分數當索引比存每一筆省很多。
+     * 超過 MAX_TRACKED 的分數併入最後一格（約 194 天，實務上不會發生）。
+     */
+    private static final class ScoreCounts {
+        private static final int MAX_TRACKED = 1 << 24;
+
+        private long[] tree = new long[(1 << 10) + 1]; // 1-based，大小 n = 2 的次方
+        private long total;
+
+        void add(long score) {
+            int idx = bucket(score);
+            while (idx > size()) {
+                grow();
+            }
+            for (int i = idx; i <= size(); i += i & -i) {
+                tree[i]++;
+            }
+            total++;
+        }
+
+        /** 分數嚴格大於 score 的筆數。 */
+        long countAbove(long score) {
+            if (score < 0) {
+                return total; // 分數不會是負的
+            }
+            int idx = bucket(score);
+            if (idx > size()) {
+                return 0;
+            }
+            long sum = 0;
+            for (int i = idx; i > 0; i -= i & -i) {
+                sum += tree[i];
+            }
+            return total - sum;
+        }
+
+        long total() {
+            return total;
+        }
+
+        private int size() {
+            return tree.length - 1;
+        }
+
+        private static int bucket(long score) {
+            return (int) Math.max(1, Math.min(score + 1, MAX_TRACKED));
+        }
+
+        /**
+         * 容量加倍：舊節點涵蓋的區間不變；新節點中只有 2n 涵蓋 (0, 2n]，
+         * 其值就是目前總筆數，其餘新節點都只涵蓋空的區間。
+         */
+        private void grow() {
+            int n = size();
+            long[] bigger = Arrays.copyOf(tree, 2 * n + 1);
+            bigger[2 * n] = total;
+            tree = bigger;
+        }
     }
-}
\ No newline at end of file
+}
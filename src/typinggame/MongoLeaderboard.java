@@ -1,44 +1,427 @@
 package typinggame;
 
+import com.mongodb.ConnectionString;
+import com.mongodb.ExplainVerbosity;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoException;
 import com.mongodb.client.*;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
 import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
 
-public class MongoLeaderboard implements LeaderboardStorage {
+/**
+ * MongoDB-backed leaderboard.
+ *
+ * 啟動時建立索引，讓查詢走索引而不是全表掃描 + 記憶體排序：
+ *   score_id          {score: -1, _id: 1}                    全部排行、名次 / 百分等級計數
+ *   name_score_id     {name: 1, score: -1, _id: 1}           個人最佳
+ *   name_day_score_id {name: 1, day: 1, score: -1, _id: 1}   每日 / 每週的個人最佳（只讀區間內的紀錄）
+ *   name_date         {name: 1, date: -1, _id: -1}           個人紀錄（由新到舊）
+ *   day_score_id      {day: 1, score: -1, _id: 1}            每日 / 每週排行（day 為 UTC 的 yyyy-MM-dd，
+ *                                                            一週是 7 個 day 值，由伺服器合併排序）
+ * 索引最後都帶 _id，同分時的次序固定，分頁游標 (score, _id) 可以直接對應到索引位置；
+ * 名次與百分等級用 countDocuments（伺服器端的 $match + $group 聚合），在索引上只數 key 不讀文件。
+ * 查詢只取出需要的欄位 (projection)。
+ *
+ * 連線：同一個連線字串在整個 process 中共用一個 {@link MongoClient}（引用計數），
+ * 重新開始遊戲或建立新的 GamePanel 都不會重新建立連線池；最後一個使用者 close() 時才關閉。
+ * 建構時會先 ping 一次，資料庫沒開時在 {@link GameConfig#MONGO_SERVER_SELECTION_TIMEOUT_MS}
+ * 內就丟出例外，讓呼叫端快速改用記憶體排行榜。
+ */
+public class MongoLeaderboard implements LeaderboardStorage, AutoCloseable {
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE.withZone(ZoneOffset.UTC);
+
+    // 排行榜只需要這幾個欄位
+    private static final String[] ENTRY_FIELDS = {"name", "score", "date", "words", "wpm", "accuracy", "maxSpeed"};
+    private static final Bson SCORE_PROJECTION = Projections.fields(
+            Projections.include(ENTRY_FIELDS), Projections.excludeId());
+    private static final InsertManyOptions UNORDERED = new InsertManyOptions().ordered(false);
+    private static final Bson PAGE_PROJECTION = Projections.include(ENTRY_FIELDS); // 含 _id，給游標用
+    private static final Bson TOP_SORT = Sorts.orderBy(Sorts.descending("score"), Sorts.ascending("_id"));
+    private static final Bson HISTORY_SORT = Sorts.orderBy(Sorts.descending("date"), Sorts.descending("_id"));
+
+    // 連線字串 → 共用的 client
+    private static final Map<String, SharedClient> CLIENTS = new HashMap<>();
+
+    private static final class SharedClient {
+        final MongoClient client;
+        int refs;
+
+        SharedClient(MongoClient client) {
+            this.client = client;
+        }
+    }
+
+    private final String clientKey;
+    private final MongoDatabase db;
     private final MongoCollection<Document> collection;
+    private final GameClock clock = GameClock.SYSTEM; // 決定「今天」與「本週」
+    private boolean closed;
 
-    // 建構子：建立連線
+    // 建構子：建立連線（連線池與逾時使用 GameConfig 的設定）
     public MongoLeaderboard(String connectionString, String dbName, String colName) {
-        // 連接本地 MongoDB (預設 port 27017)
-        MongoClient client = MongoClients.create(connectionString);
-        MongoDatabase db = client.getDatabase(dbName);
-        this.collection = db.getCollection(colName);
+        this(defaultSettings(connectionString), connectionString, dbName, colName);
+    }
+
+    /**
+     * 使用自訂的 client 設定。clientKey 用來辨識可共用的 client，
+     * 同一個 key 只會用第一次建立時的設定。
+     */
+    public MongoLeaderboard(MongoClientSettings settings, String clientKey, String dbName, String colName) {
+        this.clientKey = clientKey;
+        MongoClient client = acquire(clientKey, settings);
+        try {
+            this.db = client.getDatabase(dbName);
+            this.collection = db.getCollection(colName);
+            // 先確認資料庫真的連得上，不要等到第一次存分數才卡住
+            ping();
+            ensureIndexes();
+        } catch (RuntimeException e) {
+            release(clientKey);
+            throw e;
+        }
+    }
+
+    /** 預設設定：連線字串中的參數優先，其餘套用 GameConfig 的連線池與逾時。 */
+    public static MongoClientSettings defaultSettings(String connectionString) {
+        ConnectionString cs = new ConnectionString(connectionString);
+        MongoClientSettings.Builder builder = MongoClientSettings.builder()
+                .applyToConnectionPoolSettings(b -> b
+                        .maxSize(GameConfig.MONGO_MAX_POOL_SIZE)
+                        .minSize(GameConfig.MONGO_MIN_POOL_SIZE)
+                        .maxWaitTime(GameConfig.MONGO_POOL_WAIT_MS, TimeUnit.MILLISECONDS))
+                .applyToSocketSettings(b -> b
+                        .connectTimeout((int) GameConfig.MONGO_CONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                        .readTimeout((int) GameConfig.MONGO_SOCKET_TIMEOUT_MS, TimeUnit.MILLISECONDS))
+                .applyToClusterSettings(b -> b
+                        .serverSelectionTimeout(GameConfig.MONGO_SERVER_SELECTION_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        // applyConnectionString 放最後，讓 URI 中明確指定的參數 (例如 maxPoolSize) 覆蓋預設值
+        return builder.applyConnectionString(cs).build();
+    }
+
+    private static synchronized MongoClient acquire(String key, MongoClientSettings settings) {
+        SharedClient shared = CLIENTS.get(key);
+        if (shared == null) {
+            shared = new SharedClient(MongoClients.create(settings));
+            CLIENTS.put(key, shared);
+        }
+        shared.refs++;
+        return shared.client;
+    }
+
+    private static synchronized void release(String key) {
+        SharedClient shared = CLIENTS.get(key);
+        if (shared != null && --shared.refs == 0) {
+            CLIENTS.remove(key);
+            shared.client.close();
+        }
+    }
+
+    /** 健康檢查：資料庫不可用時在 server selection timeout 內丟出例外。 */
+    public void ping() {
+        db.runCommand(new Document("ping", 1));
+    }
+
+    /** 不丟例外的健康檢查。 */
+    public boolean isHealthy() {
+        try {
+            ping();
+            return true;
+        } catch (MongoException e) {
+            return false;
+        }
+    }
+
+    /** 釋放共用 client 的引用；最後一個引用釋放時關閉連線池。重複呼叫無副作用。 */
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            release(clientKey);
+        }
+    }
+
+    /** 建立排行榜需要的索引；已存在時 MongoDB 不會重建。失敗只印警告，不影響遊戲。 */
+    private void ensureIndexes() {
+        try {
+            collection.createIndexes(Arrays.asList(
+                    new IndexModel(Indexes.compoundIndex(Indexes.descending("score"), Indexes.ascending("_id")),
+                            new IndexOptions().name("score_id")),
+                    new IndexModel(Indexes.compoundIndex(Indexes.ascending("name"), Indexes.descending("score"),
+                            Indexes.ascending("_id")), new IndexOptions().name("name_score_id")),
+                    new IndexModel(Indexes.compoundIndex(Indexes.ascending("name"), Indexes.descending("date"),
+                            Indexes.descending("_id")), new IndexOptions().name("name_date")),
+                    new IndexModel(Indexes.compoundIndex(Indexes.ascending("day"), Indexes.descending("score"),
+                            Indexes.ascending("_id")), new IndexOptions().name("day_score_id")),
+                    new IndexModel(Indexes.compoundIndex(Indexes.ascending("name"), Indexes.ascending("day"),
+                            Indexes.descending("score"), Indexes.ascending("_id")),
+                            new IndexOptions().name("name_day_score_id"))));
+        } catch (MongoException e) {
+            System.err.println("⚠️ Could not create leaderboard indexes: " + e.getMessage());
+        }
     }
 
     @Override
     public void saveScore(ScoreEntry entry) {
-        Document doc = new Document("name", entry.getPlayerName())
+        collection.insertOne(toDocument(entry));
+    }
+
+    @Override
+    public void saveScores(List<ScoreEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        List<Document> docs = new ArrayList<>(entries.size());
+        for (ScoreEntry entry : entries) {
+            docs.add(toDocument(entry));
+        }
+        // 一次網路往返寫入整批；unordered：伺服器不必逐筆依序套用，某筆失敗也不會讓後面的整批放棄
+        collection.insertMany(docs, UNORDERED);
+    }
+
+    private static Document toDocument(ScoreEntry entry) {
+        return new Document("name", entry.getPlayerName())
                 .append("score", entry.getScore())
-                .append("date", entry.getDate());
-        collection.insertOne(doc);
+                .append("date", entry.getDate())
+                .append("day", DAY_FORMAT.format(Instant.ofEpochMilli(entry.getEpochMillis())))
+                .append("words", entry.getWordsCleared())
+                .append("wpm", entry.getWpm())
+                .append("accuracy", entry.getAccuracy())
+                .append("maxSpeed", entry.getMaxSpeed());
     }
 
     @Override
     public List<ScoreEntry> getTopScores(int limit) {
         List<ScoreEntry> list = new ArrayList<>();
-        // 依照分數(score) 降序(-1) 排列
-        FindIterable<Document> docs = collection.find()
-                .sort(new Document("score", -1))
-                .limit(limit);
+        // 依照分數(score) 降序(-1) 排列，走 score_id 索引
+        FindIterable<Document> docs = topScoresQuery(limit);
 
         for (Document d : docs) {
-            String name = d.getString("name");
-            // 處理數字型別轉換 (MongoDB 預設可能是 Integer 或 Long)
-            Number num = (Number) d.get("score");
-            long score = (num != null) ? num.longValue() : 0;
-            list.add(new ScoreEntry(name, score));
+            list.add(fromDocument(d));
         }
         return list;
     }
-}
\ No newline at end of file
+
+    /** 依自然順序走訪整個 collection；游標每次向伺服器取 {@link GameConfig#EXPORT_BATCH_SIZE} 筆。 */
+    @Override
+    public void forEachScore(Consumer<? super ScoreEntry> action) {
+        try (MongoCursor<Document> cursor = collection.find()
+                .projection(SCORE_PROJECTION)
+                .batchSize(GameConfig.EXPORT_BATCH_SIZE)
+                .iterator()) {
+            while (cursor.hasNext()) {
+                action.accept(fromDocument(cursor.next()));
+            }
+        }
+    }
+
+    private FindIterable<Document> topScoresQuery(int limit) {
+        return collection.find()
+                .projection(SCORE_PROJECTION)
+                .sort(TOP_SORT)
+                .limit(limit);
+    }
+
+    // ------------------------------------------------------------------ 進階查詢
+
+    /**
+     * 游標 (score, _id)：條件寫成 score <= 上一筆分數，再排除同分中 _id 不大於上一筆的，
+     * 讓伺服器只用一段連續的索引範圍，而不是 $or 的兩段。多取一筆判斷是否還有下一頁。
+     */
+    @Override
+    public ScorePage getScores(TimeWindow window, int limit, String cursor) {
+        List<Bson> filters = new ArrayList<>();
+        Bson windowFilter = windowFilter(window);
+        if (windowFilter != null) {
+            filters.add(windowFilter);
+        }
+        if (cursor != null) {
+            long score = ScorePage.cursorValue(cursor);
+            ObjectId id = cursorId(cursor);
+            filters.add(Filters.lte("score", score));
+            filters.add(Filters.nor(Filters.and(Filters.eq("score", score), Filters.lte("_id", id))));
+        }
+        FindIterable<Document> docs = collection.find(and(filters))
+                .projection(PAGE_PROJECTION)
+                .sort(TOP_SORT)
+                .limit(limit + 1);
+        return toPage(docs, limit, MongoLeaderboard::scoreOf);
+    }
+
+    @Override
+    public ScoreEntry getPersonalBest(String playerName, TimeWindow window) {
+        Bson filter = Filters.eq("name", playerName);
+        Bson windowFilter = windowFilter(window);
+        if (windowFilter != null) {
+            filter = Filters.and(filter, windowFilter);
+        }
+        // 全部：name_score_id 的第一筆；每日 / 每週：name_day_score_id 上 (name, day) 的幾段各自依分數排好，
+        // 伺服器合併排序後取第一筆，不會讀到區間外的舊紀錄
+        Document d = collection.find(filter).projection(SCORE_PROJECTION).sort(TOP_SORT).first();
+        return d == null ? null : fromDocument(d);
+    }
+
+    /** 游標 (date, _id)，做法同 {@link #getScores}，走 name_date 索引。 */
+    @Override
+    public ScorePage getPlayerHistory(String playerName, int limit, String cursor) {
+        List<Bson> filters = new ArrayList<>();
+        filters.add(Filters.eq("name", playerName));
+        if (cursor != null) {
+            Date date = new Date(ScorePage.cursorValue(cursor));
+            ObjectId id = cursorId(cursor);
+            filters.add(Filters.lte("date", date));
+            filters.add(Filters.nor(Filters.and(Filters.eq("date", date), Filters.gte("_id", id))));
+        }
+        FindIterable<Document> docs = collection.find(and(filters))
+                .projection(PAGE_PROJECTION)
+                .sort(HISTORY_SORT)
+                .limit(limit + 1);
+        return toPage(docs, limit, d -> {
+            Date date = d.getDate("date");
+            return date != null ? date.getTime() : 0L;
+        });
+    }
+
+    @Override
+    public long countScoresAbove(long score, TimeWindow window) {
+        if (score == Long.MIN_VALUE) {
+            return countScores(window);
+        }
+        Bson filter = Filters.gt("score", score);
+        Bson windowFilter = windowFilter(window);
+        return collection.countDocuments(windowFilter == null ? filter : Filters.and(windowFilter, filter));
+    }
+
+    /** 全部的總筆數直接讀 collection 的中繼資料（不需掃描；異常關機後可能短暫不準）。 */
+    @Override
+    public long countScores(TimeWindow window) {
+        Bson windowFilter = windowFilter(window);
+        return windowFilter == null ? collection.estimatedDocumentCount() : collection.countDocuments(windowFilter);
+    }
+
+    /** DAILY：day = 今天；WEEKLY：day 為本週一到今天其中之一；ALL_TIME 不加條件。 */
+    private Bson windowFilter(TimeWindow window) {
+        if (window == TimeWindow.ALL_TIME) {
+            return null;
+        }
+        long now = clock.millis();
+        long today = TimeWindow.epochDay(now);
+        List<String> days = new ArrayList<>();
+        for (long d = window.firstDay(now); d <= today; d++) {
+            days.add(LocalDate.ofEpochDay(d).toString());
+        }
+        return days.size() == 1 ? Filters.eq("day", days.get(0)) : Filters.in("day", days);
+    }
+
+    private static Bson and(List<Bson> filters) {
+        if (filters.isEmpty()) {
+            return new Document();
+        }
+        return filters.size() == 1 ? filters.get(0) : Filters.and(filters);
+    }
+
+    private static ObjectId cursorId(String cursor) {
+        String key = ScorePage.cursorKey(cursor);
+        if (!ObjectId.isValid(key)) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        return new ObjectId(key);
+    }
+
+    private static long scoreOf(Document d) {
+        return number(d, "score").longValue();
+    }
+
+    /** 取 limit + 1 筆的結果轉成一頁；有第 limit + 1 筆時以第 limit 筆的 (sortValue, _id) 作為游標。 */
+    private static ScorePage toPage(FindIterable<Document> docs, int limit, ToLongFunction<Document> sortValue) {
+        List<ScoreEntry> page = new ArrayList<>();
+        Document last = null;
+        for (Document d : docs) {
+            if (page.size() == limit) {
+                return new ScorePage(page, last == null ? null
+                        : ScorePage.cursor(sortValue.applyAsLong(last), last.getObjectId("_id").toHexString()));
+            }
+            page.add(fromDocument(d));
+            last = d;
+        }
+        return new ScorePage(page, null);
+    }
+
+    static ScoreEntry fromDocument(Document d) {
+        String name = d.getString("name");
+        // 處理數字型別轉換 (MongoDB 預設可能是 Integer 或 Long)
+        long score = number(d, "score").longValue();
+        Date date = d.getDate("date");
+        // 舊文件沒有跑分統計，視為 0
+        return new ScoreEntry(name, score, date != null ? date.getTime() : 0L,
+                number(d, "words").intValue(), number(d, "wpm").doubleValue(),
+                number(d, "accuracy").doubleValue(), number(d, "maxSpeed").doubleValue());
+    }
+
+    private static Number number(Document d, String field) {
+        Number num = (Number) d.get(field);
+        return num != null ? num : 0;
+    }
+
+    /**
+     * 對前 N 名查詢執行 explain，回傳摘要：
+     * plan（各階段由外而內，例如 "LIMIT <- PROJECTION_SIMPLE <- FETCH <- IXSCAN"）、
+     * keysExamined、docsExamined、nReturned、executionTimeMillis。
+     * docsExamined 遠大於 nReturned 或出現 COLLSCAN/SORT 代表索引沒被用上。
+     */
+    public Document explainTopScores(int limit) {
+        Document raw = topScoresQuery(limit).explain(ExplainVerbosity.EXECUTION_STATS);
+        Document summary = new Document();
+
+        Document planner = raw.get("queryPlanner", Document.class);
+        Document winning = planner != null ? planner.get("winningPlan", Document.class) : null;
+        if (winning != null && winning.containsKey("queryPlan")) {
+            winning = winning.get("queryPlan", Document.class); // SBE 引擎多包了一層
+        }
+        summary.append("plan", describePlan(winning));
+
+        Document stats = raw.get("executionStats", Document.class);
+        if (stats != null) {
+            summary.append("keysExamined", stats.get("totalKeysExamined"))
+                    .append("docsExamined", stats.get("totalDocsExamined"))
+                    .append("nReturned", stats.get("nReturned"))
+                    .append("executionTimeMillis", stats.get("executionTimeMillis"));
+        }
+        return summary;
+    }
+
+    private static String describePlan(Document stage) {
+        StringBuilder sb = new StringBuilder();
+        while (stage != null) {
+            if (sb.length() > 0) {
+                sb.append(" <- ");
+            }
+            sb.append(stage.getString("stage"));
+            if (stage.containsKey("indexName")) {
+                sb.append('(').append(stage.getString("indexName")).append(')');
+            }
+            stage = stage.get("inputStage", Document.class);
+        }
+        return sb.length() == 0 ? "unknown" : sb.toString();
+    }
+}
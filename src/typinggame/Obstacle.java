@@ -1,98 +1,66 @@
 package typinggame;
 
 import java.awt.*;
-import java.awt.image.BufferedImage;
-import java.io.IOException;
-import javax.imageio.ImageIO;
 
+/**
+ * Flyweight view of one obstacle in an {@link ObstacleStore}.
+ *
+ * 障礙物的資料都存在 ObstacleStore 的陣列裡，這個物件只記住目前指向哪個 slot。
+ * {@link GameEngine#getObstacle(int)} 每次都回傳同一個 view，只能在下一次呼叫前使用，不要保存。
+ */
 public class Obstacle {
 
     public enum Type { JUMP }
 
-    // === 重點修改：座標改為 double ===
-    private double x;
-    private double y;
-    
-    private int width;
-    private int height;
+    private static final Font WORD_FONT = new Font(Font.DIALOG, Font.PLAIN, 14);
 
-    private final String word;
-    private final Type type;
-    private boolean clearedByTyping;
+    private final ObstacleStore store;
+    private int slot;
 
-    private static BufferedImage cactusImg;
-    private static BufferedImage scaledImg;
-    private static final double CACTUS_SCALE = 0.3;
-
-    public Obstacle(double startX, int startY, int width, int height, String word, Type type) {
-        this.x = startX;
-        this.y = startY; // 這裡暫存，loadImage 會修正
-        this.width = width;
-        this.height = height;
-        this.word = word;
-        this.type = type;
-        this.clearedByTyping = false;
-
-        loadImageAndAlignToGround();
+    Obstacle(ObstacleStore store) {
+        this.store = store;
     }
 
-    private void loadImageAndAlignToGround() {
-        if (cactusImg == null) {
-            try {
-                cactusImg = ImageIO.read(getClass().getResource("/typinggame/assets/cactus.png"));
-            } catch (IOException | IllegalArgumentException e) {
-                System.err.println("Error loading cactus image.");
-                cactusImg = new BufferedImage(40, 80, BufferedImage.TYPE_INT_ARGB);
-            }
-            int newW = (int) (cactusImg.getWidth() * CACTUS_SCALE);
-            int newH = (int) (cactusImg.getHeight() * CACTUS_SCALE);
-
-            scaledImg = new BufferedImage(newW, newH, BufferedImage.TYPE_INT_ARGB);
-            Graphics2D g2 = scaledImg.createGraphics();
-            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
-            g2.drawImage(cactusImg, 0, 0, newW, newH, null);
-            g2.dispose();
-        }
-
-        this.width = scaledImg.getWidth();
-        this.height = scaledImg.getHeight();
-        
-        // 修正 Y 座標對齊地面
-        this.y = GameConfig.GROUND_Y - this.height;
+    Obstacle moveTo(int slot) {
+        this.slot = slot;
+        return this;
     }
 
-    // === 重點修改：接收 double 並進行高精度計算 ===
-    public void moveLeft(double dx) {
-        x -= dx; // 不再轉型成 int，保留小數點精度
+    public void draw(Graphics g) {
+        draw(g, 1.0);
     }
 
-    public void draw(Graphics g) {
+    /** alpha 為插值係數：0 = 上一步位置，1 = 目前位置。 */
+    public void draw(Graphics g, double alpha) {
+        double x = store.x(slot);
+        double prevX = store.prevX(slot);
+        int y = (int) store.y(slot);
+        int drawX = (int) (prevX + (x - prevX) * alpha);
         // 繪製時才轉成 int
-        g.drawImage(scaledImg, (int)x, (int)y, null);
-
-        g.setColor(Color.BLACK);
-        Font original = g.getFont();
-        g.setFont(original.deriveFont(Font.PLAIN, 14f));
+        store.sprite(slot).draw(g, drawX, y);
 
-        int textWidth = g.getFontMetrics().stringWidth(word);
-        int textX = (int)x + (width - textWidth) / 2;
-        int textY = (int)y - 5;
-        g.drawString(word, textX, textY);
-
-        g.setFont(original);
+        // 單字直接貼上快取的圖片，不再每幀排版文字（單字不會變，取一次就好）
+        TextSpriteCache.Sprite label = store.label(slot);
+        if (label == null) {
+            label = TextSpriteCache.shared().get(store.word(slot), WORD_FONT, TextSpriteCache.State.UNTYPED);
+            store.setLabel(slot, label);
+        }
+        int textX = drawX + (store.width(slot) - label.getWidth()) / 2;
+        int textY = y - 5;
+        label.draw(g, textX, textY);
     }
 
-    public void markCleared() { clearedByTyping = true; }
-    public boolean isCleared() { return clearedByTyping; }
+    public void markCleared() { store.markCleared(slot); }
+    public boolean isCleared() { return store.isCleared(slot); }
 
-    public double getX() { return x; } // 回傳 double
-    public double getY() { return y; }
-    public int getWidth() { return width; }
-    public int getHeight() { return height; }
-    public String getWord() { return word; }
-    public Type getType() { return type; }
+    public double getX() { return store.x(slot); } // 回傳 double
+    public double getY() { return store.y(slot); }
+    public int getWidth() { return store.width(slot); }
+    public int getHeight() { return store.height(slot); }
+    public String getWord() { return store.word(slot); }
+    public Type getType() { return store.type(slot); }
 
     public Rectangle getBounds() {
-        return new Rectangle((int)x, (int)y, width, height);
+        return new Rectangle((int) getX(), (int) getY(), getWidth(), getHeight());
     }
-}
\ No newline at end of file
+}
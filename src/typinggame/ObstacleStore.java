@@ -0,0 +1,302 @@
+package typinggame;
+
+import java.util.Arrays;
+
+/**
+ * Pooled ring buffer of obstacles stored as parallel primitive arrays (structure of arrays).
+ *
+ * 障礙物一律從右邊生成、以相同速度往左移，所以最舊的永遠在最前面：
+ * 離開畫面或被清除的都是隊首，pop 只要把 head 往後移 (O(1))，不必像 ArrayList.remove(0) 搬移整個陣列。
+ * 位置以「世界座標」儲存：障礙物在世界中靜止，每一步只增加捲動量 scroll，
+ * 畫面座標 = 世界座標 - scroll，所以移動全部障礙物也是 O(1)。
+ * 槽位重複使用，容量不足時才加倍（之後不再配置），遊戲進行中新增 / 移除都不會建立物件。
+ *
+ * 位置 (index) 0 = 隊首；slot = 陣列中的實際位置。外部只透過 {@link Obstacle} 這個 flyweight 讀取。
+ * 每個障礙物另有一個遞增的生成序號 (seq)，slot 會因為擴充或壓縮而改變，seq 不會。
+ */
+final class ObstacleStore {
+
+    /** 障礙物被移除（離開畫面或 popHead）前通知；clear() 不會通知。 */
+    interface RemovalListener {
+        void onRemove(int slot);
+    }
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    // --- 每個障礙物的欄位，依 slot 索引 ---
+    private long[] seq;
+    private double[] worldX;
+    private int[] body;      // CollisionWorld 中的 id
+    private double[] y;
+    private int[] width;
+    private int[] height;
+    private boolean[] cleared;
+    private String[] word;
+    private Obstacle.Type[] type;
+    private Sprite[] sprite;
+    private TextSpriteCache.Sprite[] label; // 單字圖片，第一次繪製時才取得
+
+    private int mask;   // capacity - 1（容量一定是 2 的次方）
+    private int head;   // 隊首的 slot
+    private int size;
+
+    private double scroll;      // 目前捲動了多少
+    private double prevScroll;  // 上一個模擬步的捲動量，繪製時插值用
+    private boolean unordered;  // 有障礙物不是依 x 由小到大加入（只有量測 / 測試會發生）
+
+    private long nextSeq;
+    private RemovalListener removalListener;
+
+    private final Obstacle view = new Obstacle(this);
+
+    ObstacleStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    ObstacleStore(int initialCapacity) {
+        allocate(Integer.highestOneBit(Math.max(2, initialCapacity - 1)) << 1);
+    }
+
+    void setRemovalListener(RemovalListener listener) {
+        this.removalListener = listener;
+    }
+
+    private void allocate(int capacity) {
+        seq = new long[capacity];
+        worldX = new double[capacity];
+        body = new int[capacity];
+        y = new double[capacity];
+        width = new int[capacity];
+        height = new int[capacity];
+        cleared = new boolean[capacity];
+        word = new String[capacity];
+        type = new Obstacle.Type[capacity];
+        sprite = new Sprite[capacity];
+        label = new TextSpriteCache.Sprite[capacity];
+        mask = capacity - 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    /** 第 index 個障礙物（0 = 隊首）在陣列中的位置。 */
+    int slot(int index) {
+        return (head + index) & mask;
+    }
+
+    /** 在隊尾加入一個貼齊地面的障礙物（startX 為畫面座標），回傳 slot。 */
+    int add(double startX, String w, Obstacle.Type t, Sprite s) {
+        if (size == capacity()) {
+            grow();
+        }
+        double wx = startX + scroll;
+        if (size > 0 && wx < worldX[slot(size - 1)]) {
+            unordered = true;
+        }
+        int slot = (head + size) & mask;
+        seq[slot] = nextSeq++;
+        worldX[slot] = wx;
+        body[slot] = -1;
+        width[slot] = s.getWidth();
+        height[slot] = s.getHeight();
+        y[slot] = GameConfig.GROUND_Y - s.getHeight();
+        cleared[slot] = false;
+        word[slot] = w;
+        type[slot] = t;
+        sprite[slot] = s;
+        label[slot] = null;
+        size++;
+        return slot;
+    }
+
+    /** 移除隊首。 */
+    void popHead() {
+        if (size == 0) {
+            throw new IllegalStateException("No obstacles");
+        }
+        notifyRemoved(head);
+        release(head);
+        head = (head + 1) & mask;
+        size--;
+    }
+
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            release(slot(i));
+        }
+        head = 0;
+        size = 0;
+        scroll = 0;
+        prevScroll = 0;
+        unordered = false;
+    }
+
+    private void notifyRemoved(int slot) {
+        if (removalListener != null) {
+            removalListener.onRemove(slot);
+        }
+    }
+
+    /** 放掉字串與圖片的引用，slot 本身留著重複使用。 */
+    private void release(int slot) {
+        word[slot] = null;
+        sprite[slot] = null;
+        label[slot] = null;
+    }
+
+    /**
+     * 全部往左移 dx（只改捲動量），並移除完全離開畫面的障礙物。
+     * 正常情況只會從隊首移除；順序被打亂時（例如量測時手動放入的障礙物）才掃描一次、保持順序地壓縮。
+     */
+    void moveLeftAndExpire(double dx) {
+        prevScroll = scroll;
+        scroll += dx;
+        while (size > 0 && isExpired(head)) {
+            popHead();
+        }
+        if (unordered) {
+            compactExpired();
+            if (size == 0) {
+                unordered = false;
+            }
+        }
+    }
+
+    private boolean isExpired(int slot) {
+        return worldX[slot] - scroll + width[slot] < 0;
+    }
+
+    private void compactExpired() {
+        int write = 0;
+        for (int read = 0; read < size; read++) {
+            int from = slot(read);
+            if (isExpired(from)) {
+                notifyRemoved(from);
+                release(from);
+                continue;
+            }
+            if (write != read) {
+                copySlot(from, slot(write));
+                release(from);
+            }
+            write++;
+        }
+        size = write;
+    }
+
+    private void copySlot(int from, int to) {
+        seq[to] = seq[from];
+        worldX[to] = worldX[from];
+        body[to] = body[from];
+        y[to] = y[from];
+        width[to] = width[from];
+        height[to] = height[from];
+        cleared[to] = cleared[from];
+        word[to] = word[from];
+        type[to] = type[from];
+        sprite[to] = sprite[from];
+        label[to] = label[from];
+    }
+
+    /** 容量加倍，同時把資料攤平成從 0 開始。 */
+    private void grow() {
+        int oldCapacity = capacity();
+        int newCapacity = oldCapacity << 1;
+        int firstPart = Math.min(size, oldCapacity - head);
+
+        long[] oldSeq = seq;
+        double[] oldWorldX = worldX, oldY = y;
+        int[] oldBody = body, oldWidth = width, oldHeight = height;
+        boolean[] oldCleared = cleared;
+        String[] oldWord = word;
+        Obstacle.Type[] oldType = type;
+        Sprite[] oldSprite = sprite;
+        TextSpriteCache.Sprite[] oldLabel = label;
+
+        allocate(newCapacity);
+        unwrap(oldSeq, seq, firstPart);
+        unwrap(oldWorldX, worldX, firstPart);
+        unwrap(oldBody, body, firstPart);
+        unwrap(oldY, y, firstPart);
+        unwrap(oldWidth, width, firstPart);
+        unwrap(oldHeight, height, firstPart);
+        unwrap(oldCleared, cleared, firstPart);
+        unwrap(oldWord, word, firstPart);
+        unwrap(oldType, type, firstPart);
+        unwrap(oldSprite, sprite, firstPart);
+        unwrap(oldLabel, label, firstPart);
+        head = 0;
+    }
+
+    /** 把環狀的 [head, head+size) 複製到新陣列的 [0, size)。 */
+    private void unwrap(Object src, Object dst, int firstPart) {
+        System.arraycopy(src, head, dst, 0, firstPart);
+        System.arraycopy(src, 0, dst, firstPart, size - firstPart);
+    }
+
+    // --- flyweight 存取 ---
+
+    /** 讓共用的 view 指向第 index 個障礙物；回傳的物件在下一次呼叫前有效。 */
+    Obstacle view(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return view.moveTo(slot(index));
+    }
+
+    /** seq 所在的位置 (index)；已被移除時回傳 -1。順序與 seq 一致，所以可以二分搜尋。 */
+    int indexOfSeq(long target) {
+        int lo = 0;
+        int hi = size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long s = seq[slot(mid)];
+            if (s < target) {
+                lo = mid + 1;
+            } else if (s > target) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    long seq(int slot) { return seq[slot]; }
+    /** 畫面座標。 */
+    double x(int slot) { return worldX[slot] - scroll; }
+    double prevX(int slot) { return worldX[slot] - prevScroll; }
+    double worldX(int slot) { return worldX[slot]; }
+    /** 畫面座標 + scroll = 世界座標。 */
+    double scroll() { return scroll; }
+    int body(int slot) { return body[slot]; }
+    void setBody(int slot, int id) { body[slot] = id; }
+    double y(int slot) { return y[slot]; }
+    int width(int slot) { return width[slot]; }
+    int height(int slot) { return height[slot]; }
+    boolean isCleared(int slot) { return cleared[slot]; }
+    void markCleared(int slot) { cleared[slot] = true; }
+    String word(int slot) { return word[slot]; }
+    Obstacle.Type type(int slot) { return type[slot]; }
+    Sprite sprite(int slot) { return sprite[slot]; }
+    TextSpriteCache.Sprite label(int slot) { return label[slot]; }
+    void setLabel(int slot, TextSpriteCache.Sprite l) { label[slot] = l; }
+
+    @Override
+    public String toString() {
+        String[] words = new String[size];
+        for (int i = 0; i < size; i++) {
+            words[i] = word[slot(i)];
+        }
+        return "ObstacleStore[size=" + size + " capacity=" + capacity() + " " + Arrays.toString(words) + "]";
+    }
+}
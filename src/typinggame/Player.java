@@ -1,19 +1,17 @@
 package typinggame;
 
 import java.awt.*;
-import java.awt.image.BufferedImage;
-import java.io.IOException;
-import javax.imageio.ImageIO;
 
 public class Player {
 
     private static final double GRAVITY = 0.8;
     private static final double JUMP_VELOCITY = -12.0;
-    private static final double SCALE = 0.35;
 
     // === 重點修改：改用 double 以獲得平滑移動 ===
     private double x;
     private double y;
+    private double prevX; // 上一個模擬步的位置，繪製時插值用
+    private double prevY;
     
     private int width;
     private int height;
@@ -21,12 +19,12 @@ public class Player {
     private boolean onGround;
 
     // 動畫相關
-    private BufferedImage[] frames; 
+    private Sprite[] frames;
     private final int[] animSequence = {0, 1, 0, 2}; // 1->2->1->3 步態
     private int currentSeqIndex = 0;
     private int animTimer = 0;
     private static final int ANIM_SPEED = 8; 
-    private BufferedImage currentImage;
+    private Sprite currentImage;
 
     public Player(int startX, int groundY) {
         loadImages();
@@ -34,44 +32,23 @@ public class Player {
     }
 
     private void loadImages() {
-        frames = new BufferedImage[3];
-        try {
-            // 請確保這些圖片存在，若無則使用 try-catch 中的備案
-            frames[0] = loadAndScale("/typinggame/assets/dino1.png"); // 站立/中
-            frames[1] = loadAndScale("/typinggame/assets/dino2.png"); // 左腳
-            frames[2] = loadAndScale("/typinggame/assets/dino3.png"); // 右腳
-        } catch (Exception e) {
-            System.err.println("Error loading player images. Using fallback.");
-            createFallbackImages();
+        // 圖片由 Assets 統一載入，所有 Player 共用同一份
+        Assets assets = Assets.get();
+        frames = new Sprite[assets.getPlayerFrameCount()];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = assets.getPlayerFrame(i);
         }
         updateCurrentImage();
         this.width = currentImage.getWidth();
         this.height = currentImage.getHeight();
     }
 
-    private BufferedImage loadAndScale(String path) throws IOException {
-        BufferedImage raw = ImageIO.read(getClass().getResource(path));
-        int newW = (int) (raw.getWidth() * SCALE);
-        int newH = (int) (raw.getHeight() * SCALE);
-        BufferedImage scaled = new BufferedImage(newW, newH, BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g2 = scaled.createGraphics();
-        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
-        g2.drawImage(raw, 0, 0, newW, newH, null);
-        g2.dispose();
-        return scaled;
-    }
-    
-    private void createFallbackImages() {
-        BufferedImage box = new BufferedImage(40, 60, BufferedImage.TYPE_INT_ARGB);
-        Graphics g = box.getGraphics();
-        g.setColor(Color.GREEN); g.fillRect(0,0,40,60); g.dispose();
-        frames[0] = frames[1] = frames[2] = box;
-    }
-
     public void reset(int startX, int groundY) {
         this.x = startX;
         // 確保初始位置準確
         this.y = groundY - height;
+        this.prevX = x;
+        this.prevY = y;
         this.yVelocity = 0.0;
         this.onGround = true;
         this.currentSeqIndex = 0;
@@ -80,6 +57,9 @@ public class Player {
     }
 
     public void update() {
+        prevX = x;
+        prevY = y;
+
         // 1. 物理計算 (使用 double 保留精度)
         if (!onGround) {
             yVelocity += GRAVITY;
@@ -122,8 +102,15 @@ public class Player {
     }
 
     public void draw(Graphics g) {
+        draw(g, 1.0);
+    }
+
+    /** alpha 為插值係數：0 = 上一步位置，1 = 目前位置。 */
+    public void draw(Graphics g, double alpha) {
+        double drawX = prevX + (x - prevX) * alpha;
+        double drawY = prevY + (y - prevY) * alpha;
         // === 只有在畫圖的最後一刻才轉成 int ===
-        g.drawImage(currentImage, (int)x, (int)y, null);
+        currentImage.draw(g, (int) drawX, (int) drawY);
     }
 
     // Getters 改回傳 double 或 int 皆可，碰撞偵測通常用 Rectangle (int)
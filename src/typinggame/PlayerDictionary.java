@@ -0,0 +1,60 @@
+package typinggame;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Two-way mapping between player names and small integer ids.
+ *
+ * 同一個名字永遠對應同一個 id 與同一個 String 實例：二進位格式只寫 4 bytes 的 id，字典本身另外存一次，
+ * 用同一個字典讀回的 {@link ScoreEntry} 也共用名字。id 從 0 開始連續分配，只增不減，
+ * 所以字典只跟著有範圍的擁有者（一個檔案、一條連線）存在，不做成整個 process 共用的表。
+ *
+ * 查詢不加鎖（ConcurrentHashMap + volatile 陣列），只有新名字第一次出現時才進入 synchronized。
+ */
+public final class PlayerDictionary {
+
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[16];
+    private int size; // 只在 assign 內修改
+
+    /** 名字對應的 id，第一次出現時分配新的 id。 */
+    public int idOf(String name) {
+        Integer id = ids.get(name);
+        return id != null ? id : assign(name);
+    }
+
+    /** id 對應的名字；不認得的 id 丟出 IllegalArgumentException。 */
+    public String nameOf(int id) {
+        String[] current = names;
+        String name = id >= 0 && id < current.length ? current[id] : null;
+        if (name == null) {
+            throw new IllegalArgumentException("Unknown player id: " + id);
+        }
+        return name;
+    }
+
+    /** 回傳這個名字的共用實例。 */
+    public String intern(String name) {
+        return nameOf(idOf(name));
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private synchronized int assign(String name) {
+        Integer existing = ids.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        String[] current = names;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, size * 2);
+        }
+        current[size] = name;
+        names = current;        // volatile 寫入：先放好名字再公開 id
+        ids.put(name, size);
+        return size++;
+    }
+}
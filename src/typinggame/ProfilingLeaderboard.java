@@ -0,0 +1,164 @@
+package typinggame;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Records the latency of every call to the wrapped storage in {@link FrameProfiler.Phase#STORAGE}.
+ *
+ * 放在最靠近資料庫的一層（{@link AsyncLeaderboard} / {@link CachingLeaderboard} 之下），
+ * 量到的是真正的 I/O 時間，而不是排進佇列或命中快取的時間。
+ */
+public class ProfilingLeaderboard implements LeaderboardStorage, AutoCloseable {
+
+    private final LeaderboardStorage delegate;
+    private final FrameProfiler profiler;
+
+    public ProfilingLeaderboard(LeaderboardStorage delegate) {
+        this(delegate, FrameProfiler.shared());
+    }
+
+    public ProfilingLeaderboard(LeaderboardStorage delegate, FrameProfiler profiler) {
+        this.delegate = delegate;
+        this.profiler = profiler;
+    }
+
+    @Override
+    public void saveScore(ScoreEntry entry) {
+        long start = profiler.start();
+        try {
+            delegate.saveScore(entry);
+        } finally {
+            profiler.end(FrameProfiler.Phase.STORAGE, start);
+        }
+    }
+
+    @Override
+    public void saveScores(List<ScoreEntry> entries) {
+        long start = profiler.start();
+        try {
+            delegate.saveScores(entries);
+        } finally {
+            profiler.end(FrameProfiler.Phase.STORAGE, start);
+        }
+    }
+
+    @Override
+    public List<ScoreEntry> getTopScores(int limit) {
+        long start = profiler.start();
+        try {
+            return delegate.getTopScores(limit);
+        } finally {
+            profiler.end(FrameProfiler.Phase.STORAGE, start);
+        }
+    }
+
+    @Override
+    public CompletableFuture<List<ScoreEntry>> getTopScoresAsync(int limit) {
+        long start = profiler.start();
+        return delegate.getTopScoresAsync(limit)
+                .whenComplete((list, err) -> profiler.end(FrameProfiler.Phase.STORAGE, start));
+    }
+
+    @Override
+    public ScorePage getScores(TimeWindow window, int limit, String cursor) {
+        long start = profiler.start();
+        try {
+            return delegate.getScores(window, limit, cursor);
+        } finally {
+            profiler.end(FrameProfiler.Phase.STORAGE, start);
+        }
+    }
+
+    @Override
+    public ScoreEntry getPersonalBest(String playerName, TimeWindow window) {
+        long start = profiler.start();
+        try {
+            return delegate.getPersonalBest(playerName, window);
+        } finally {
+            profiler.end(FrameProfiler.Phase.STORAGE, start);
+        }
+    }
+
+    @Override
+    public ScorePage getPlayerHistory(String playerName, int limit, String cursor) {
+        long start = profiler.start();
+        try {
+            return delegate.getPlayerHistory(playerName, limit, cursor);
+        } finally {
+            profiler.end(FrameProfiler.Phase.STORAGE, start);
+        }
+    }
+
+    @Override
+    public void forEachScore(Consumer<? super ScoreEntry> action) {
+        long start = profiler.start();
+        try {
+            delegate.forEachScore(action);
+        } finally {
+            profiler.end(FrameProfiler.Phase.STORAGE, start);
+        }
+    }
+
+    @Override
+    public long countScoresAbove(long score, TimeWindow window) {
+        long start = profiler.start();
+        try {
+            return delegate.countScoresAbove(score, window);
+        } finally {
+            profiler.end(FrameProfiler.Phase.STORAGE, start);
+        }
+    }
+
+    @Override
+    public long countScores(TimeWindow window) {
+        long start = profiler.start();
+        try {
+            return delegate.countScores(window);
+        } finally {
+            profiler.end(FrameProfiler.Phase.STORAGE, start);
+        }
+    }
+
+    @Override
+    public long getRank(long score, TimeWindow window) {
+        long start = profiler.start();
+        try {
+            return delegate.getRank(score, window);
+        } finally {
+            profiler.end(FrameProfiler.Phase.STORAGE, start);
+        }
+    }
+
+    @Override
+    public long getPlayerRank(String playerName, TimeWindow window) {
+        long start = profiler.start();
+        try {
+            return delegate.getPlayerRank(playerName, window);
+        } finally {
+            profiler.end(FrameProfiler.Phase.STORAGE, start);
+        }
+    }
+
+    @Override
+    public double getPercentile(long score, TimeWindow window) {
+        long start = profiler.start();
+        try {
+            return delegate.getPercentile(score, window);
+        } finally {
+            profiler.end(FrameProfiler.Phase.STORAGE, start);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (delegate instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) delegate).close();
+            } catch (Exception e) {
+                System.err.println("⚠️ Error closing leaderboard: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,447 @@
+package typinggame;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Client side of the {@link RaceServer} protocol, plus a loopback load test driven by {@link BotTypist}s.
+ *
+ * 用戶端在本機跑同一個 seed 的 {@link GameEngine} 來即時顯示（預測），把每個按鍵連同當時的步數送出，
+ * 每 {@link GameConfig#RACE_SYNC_TICKS} 步送一次 SYNC；伺服器回覆權威的步數與分數 (STATE)，
+ * 比賽中另外送前幾名 (STANDINGS)，結束時送出排行榜紀錄 (RESULT)。一個 RaceClient 只給一個執行緒使用。
+ *
+ * 壓力測試：java typinggame.RaceClient [--host h] [--port N] [--bots N] [--race id] [--cps 5] [--error 0.05]
+ *          [--fast] [--loopback]
+ * 每個 bot 一條連線（Java 21 以上為虛擬執行緒），本機預測的分數必須與伺服器算出的完全相同；
+ * --loopback 在同一個 process 內啟動伺服器，--fast 不等真實時間（伺服器也要以 --fast 啟動）。
+ */
+public final class RaceClient implements AutoCloseable {
+
+    /** 比賽中某位玩家的狀態（伺服器送來的名次，或伺服器自己排序用的快照）。 */
+    public static final class Standing {
+        private final String playerName;
+        private final long tick;
+        private final long score;
+        private final boolean finished;
+
+        public Standing(String playerName, long tick, long score, boolean finished) {
+            this.playerName = playerName;
+            this.tick = tick;
+            this.score = score;
+            this.finished = finished;
+        }
+
+        public String getPlayerName() { return playerName; }
+        public long getTick() { return tick; }
+        public long getScore() { return score; }
+        public boolean isFinished() { return finished; }
+
+        @Override
+        public String toString() {
+            return playerName + " " + score + "s" + (finished ? " (finished)" : "");
+        }
+    }
+
+    private static final int PENDING_SYNCS = 64;
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final PlayerDictionary names = new PlayerDictionary(); // 伺服器在這條連線上送過的名字
+    private int knownNames;
+    private final ByteBuffer record = ByteBuffer.allocate(ScoreEntry.BYTES);
+
+    private final long seed;
+    private final boolean multiTarget;
+    private final long dictionaryFingerprint;
+
+    private long serverTick;
+    private long serverScore;
+    private int serverWords;
+    private List<Standing> standings = Collections.emptyList();
+    private ScoreEntry result;
+
+    // 約略量測 SYNC → STATE 的往返時間（伺服器對每個 SYNC 依序回覆一個 STATE；閒置時多送的 STATE 會讓配對錯開）
+    private LatencyHistogram roundTrips;
+    private final long[] syncSentAt = new long[PENDING_SYNCS];
+    private int syncHead;
+    private int syncTail;
+
+    private RaceClient(Socket socket) throws IOException {
+        this.socket = socket;
+        socket.setTcpNoDelay(true);
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), RaceProtocol.BUFFER_BYTES));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), RaceProtocol.BUFFER_BYTES));
+        int type = in.read();
+        if (type == RaceProtocol.ERROR) {
+            throw new IOException("Server refused: " + in.readUTF());
+        }
+        if (type != RaceProtocol.WELCOME) {
+            throw new ProtocolException("expected WELCOME, got " + type);
+        }
+        this.seed = in.readLong();
+        this.multiTarget = in.readBoolean();
+        this.dictionaryFingerprint = in.readLong();
+    }
+
+    /** 連線並加入比賽（raceId 為空字串時單人遊戲）；伺服器拒絕時丟出 IOException。 */
+    public static RaceClient connect(String host, int port, String playerName, String raceId) throws IOException {
+        Socket socket = new Socket(host, port);
+        try {
+            DataOutputStream hello = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 256));
+            hello.writeByte(RaceProtocol.HELLO);
+            hello.writeInt(RaceProtocol.MAGIC);
+            hello.writeShort(RaceProtocol.VERSION);
+            hello.writeUTF(playerName);
+            hello.writeUTF(raceId);
+            hello.flush();
+            return new RaceClient(socket);
+        } catch (IOException | RuntimeException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    public long getSeed() { return seed; }
+    public boolean isMultiTarget() { return multiTarget; }
+    public long getDictionaryFingerprint() { return dictionaryFingerprint; }
+
+    /** 伺服器最近一次回報的步數、分數與打完的單字數。 */
+    public long getServerTick() { return serverTick; }
+    public long getServerScore() { return serverScore; }
+    public int getServerWords() { return serverWords; }
+
+    /** 最近一次收到的比賽名次（單人遊戲時為空）。 */
+    public List<Standing> getStandings() { return standings; }
+
+    /** 伺服器送來的最終紀錄；尚未結束時為 null。 */
+    public ScoreEntry getResult() { return result; }
+
+    /** 本機引擎用跟伺服器一樣的設定開始這一場。 */
+    public void start(GameEngine engine) {
+        if (dictionaryFingerprint != engine.getDictionaryFingerprint()) {
+            System.err.println("⚠️ Server uses a different dictionary; local prediction will drift.");
+        }
+        engine.setMultiTarget(multiTarget);
+        engine.startGame(seed);
+    }
+
+    void setRoundTripHistogram(LatencyHistogram histogram) {
+        this.roundTrips = histogram;
+    }
+
+    // ------------------------------------------------------------------ 送出
+
+    /** 在第 tick 步（engine.update() 之前）按下 ch；送出前先放在緩衝區，下一次 {@link #sync} 一起送。 */
+    public void key(long tick, char ch) throws IOException {
+        out.writeByte(RaceProtocol.KEY);
+        out.writeInt((int) tick);
+        out.writeChar(ch);
+    }
+
+    /** 回報已經模擬到第 tick 步並送出緩衝區。 */
+    public void sync(long tick) throws IOException {
+        out.writeByte(RaceProtocol.SYNC);
+        out.writeInt((int) tick);
+        out.flush();
+        if (syncTail - syncHead < PENDING_SYNCS) {
+            syncSentAt[syncTail++ % PENDING_SYNCS] = System.nanoTime();
+        }
+    }
+
+    /** 處理已經收到的 frame，不等待；回傳是否已收到最終紀錄。 */
+    public boolean poll() throws IOException {
+        while (result == null && in.available() > 0) {
+            readFrame(in.read());
+        }
+        return result != null;
+    }
+
+    /**
+     * 處理收到的 frame，最多等到 deadlineNanos ({@link System#nanoTime()})；回傳是否已收到最終紀錄。
+     * 用來取代兩步之間的 sleep，回應一到就處理。
+     */
+    public boolean pollUntil(long deadlineNanos) throws IOException {
+        while (result == null) {
+            long remainingMillis = (deadlineNanos - System.nanoTime()) / 1_000_000;
+            if (remainingMillis <= 0) {
+                return poll();
+            }
+            int type;
+            // 只有 frame 的第一個 byte 等待逾時，內容照常讀完，不會讀到一半被打斷
+            socket.setSoTimeout((int) remainingMillis);
+            try {
+                type = in.read();
+            } catch (SocketTimeoutException e) {
+                return false;
+            } finally {
+                socket.setSoTimeout(0);
+            }
+            readFrame(type);
+        }
+        return true;
+    }
+
+    /** 等到伺服器送出最終紀錄（本機遊戲結束後呼叫）。 */
+    public ScoreEntry awaitResult() throws IOException {
+        while (result == null) {
+            readFrame(in.read());
+        }
+        return result;
+    }
+
+    private void readFrame(int type) throws IOException {
+        switch (type) {
+            case RaceProtocol.NAME:
+                if (names.idOf(in.readUTF()) != knownNames++) {
+                    throw new ProtocolException("duplicate NAME frame");
+                }
+                break;
+            case RaceProtocol.STATE:
+                serverTick = in.readInt();
+                serverScore = in.readLong();
+                serverWords = in.readInt();
+                if (syncHead < syncTail) {
+                    long sent = syncSentAt[syncHead++ % PENDING_SYNCS];
+                    if (roundTrips != null) {
+                        roundTrips.record(System.nanoTime() - sent);
+                    }
+                }
+                break;
+            case RaceProtocol.STANDINGS:
+                int n = in.readShort();
+                List<Standing> list = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    String name = nameOf(in.readInt());
+                    list.add(new Standing(name, in.readInt(), in.readLong(), in.readBoolean()));
+                }
+                standings = Collections.unmodifiableList(list);
+                break;
+            case RaceProtocol.RESULT:
+                in.readFully(record.array());
+                record.clear();
+                try {
+                    result = ScoreEntry.readFrom(record, names);
+                } catch (IllegalArgumentException e) {
+                    throw new ProtocolException(e.getMessage());
+                }
+                break;
+            case RaceProtocol.ERROR:
+                throw new IOException("Server ended the session: " + in.readUTF());
+            case -1:
+                throw new EOFException("Server closed the connection");
+            default:
+                throw new ProtocolException("unexpected frame " + type);
+        }
+    }
+
+    private String nameOf(int id) throws ProtocolException {
+        try {
+            return names.nameOf(id);
+        } catch (IllegalArgumentException e) {
+            throw new ProtocolException(e.getMessage());
+        }
+    }
+
+    /** 通知伺服器離開（遊戲尚未結束時不計分）並關閉連線。 */
+    @Override
+    public void close() {
+        try {
+            if (result == null) {
+                out.writeByte(RaceProtocol.LEAVE);
+                out.flush();
+            }
+        } catch (IOException e) {
+            // 已經斷線
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            System.err.println("⚠️ Error closing race connection: " + e.getMessage());
+        }
+    }
+
+    // ------------------------------------------------------------------ bot 壓力測試
+
+    /** 一個 bot 跑完一場的結果。 */
+    static final class BotResult {
+        final long localScore;
+        final long serverScore;
+        final int standingsSeen;
+
+        BotResult(long localScore, long serverScore, int standingsSeen) {
+            this.localScore = localScore;
+            this.serverScore = serverScore;
+            this.standingsSeen = standingsSeen;
+        }
+
+        boolean matches() {
+            return localScore == serverScore;
+        }
+    }
+
+    /**
+     * 以 bot 打完一場：本機引擎的按鍵原封不動送給伺服器，回傳本機與伺服器各自算出的分數。
+     * realTime 時依真實時間前進，否則全速（伺服器需為 fast 模式）。
+     */
+    static BotResult playBot(String host, int port, String name, String raceId, BotTypist bot, boolean realTime,
+                             LatencyHistogram roundTrips) throws IOException {
+        try (RaceClient client = connect(host, port, name, raceId)) {
+            client.setRoundTripHistogram(roundTrips);
+            ManualClock clock = new ManualClock(System.currentTimeMillis());
+            StringBuilder typed = new StringBuilder();
+            // 攔下 bot 打的每個字，同一步的按鍵在這一步結束後送出
+            GameEngine engine = new GameEngine(name, new HeadlessSimulation.DiscardingLeaderboard(), clock) {
+                @Override
+                public void handleTypedChar(char ch) {
+                    typed.append(ch);
+                    super.handleTypedChar(ch);
+                }
+            };
+            client.start(engine);
+            long started = System.nanoTime();
+            int standingsSeen = 0;
+            List<Standing> lastStandings = client.getStandings();
+            while (engine.isRunning() && engine.getTick() < HeadlessSimulation.DEFAULT_MAX_TICKS) {
+                long tick = engine.getTick();
+                bot.tick(engine);
+                for (int i = 0; i < typed.length(); i++) {
+                    client.key(tick, typed.charAt(i));
+                }
+                typed.setLength(0);
+                engine.update();
+                clock.advanceNanos(GameConfig.SIM_STEP_NANOS);
+
+                if (engine.getTick() % GameConfig.RACE_SYNC_TICKS == 0) {
+                    client.sync(engine.getTick());
+                    if (realTime) {
+                        // 等到下一步該開始的時間，期間收到的回應立刻處理
+                        client.pollUntil(started + engine.getTick() * GameConfig.SIM_STEP_NANOS);
+                    } else {
+                        client.poll();
+                    }
+                    if (client.getStandings() != lastStandings) {
+                        lastStandings = client.getStandings();
+                        standingsSeen++;
+                    }
+                }
+            }
+            client.sync(engine.getTick());
+            ScoreEntry server = client.awaitResult();
+            return new BotResult(engine.getElapsedMillis() / 1000, server.getScore(), standingsSeen);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+
+        String host = "127.0.0.1";
+        int port = GameConfig.RACE_PORT;
+        int bots = 100;
+        String raceId = "";
+        double cps = 5.0;
+        double errorRate = 0.05;
+        boolean realTime = true;
+        boolean loopback = false;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            boolean hasValue = i + 1 < args.length;
+            if ("--host".equals(arg) && hasValue) {
+                host = args[++i];
+            } else if ("--port".equals(arg) && hasValue) {
+                port = Integer.parseInt(args[++i]);
+            } else if ("--bots".equals(arg) && hasValue) {
+                bots = Integer.parseInt(args[++i]);
+            } else if ("--race".equals(arg) && hasValue) {
+                raceId = args[++i];
+            } else if ("--cps".equals(arg) && hasValue) {
+                cps = Double.parseDouble(args[++i]);
+            } else if ("--error".equals(arg) && hasValue) {
+                errorRate = Double.parseDouble(args[++i]);
+            } else if ("--fast".equals(arg)) {
+                realTime = false;
+            } else if ("--loopback".equals(arg)) {
+                loopback = true;
+            } else {
+                System.err.println("Usage: java typinggame.RaceClient [--host h] [--port N] [--bots N] [--race id] "
+                        + "[--cps 5] [--error 0.05] [--fast] [--loopback]");
+                System.exit(2);
+            }
+        }
+
+        RaceServer server = loopback
+                ? new RaceServer(new HeadlessSimulation.DiscardingLeaderboard(), "127.0.0.1", 0, realTime)
+                : null;
+        String targetHost = loopback ? "127.0.0.1" : host;
+        int targetPort = loopback ? server.getPort() : port;
+
+        BotTypist.Factory factory = BotTypist.probabilistic(cps, errorRate);
+        LatencyHistogram roundTrips = new LatencyHistogram();
+        ExecutorService pool = RaceServer.newThreadPerTaskExecutor("race-bot");
+        long started = System.nanoTime();
+        List<Future<BotResult>> futures = new ArrayList<>(bots);
+        for (int i = 0; i < bots; i++) {
+            String name = "bot-" + i;
+            BotTypist bot = factory.create(i);
+            String race = raceId;
+            boolean paced = realTime;
+            futures.add(pool.submit(() -> playBot(targetHost, targetPort, name, race, bot, paced, roundTrips)));
+        }
+
+        int finished = 0;
+        int mismatched = 0;
+        int errors = 0;
+        long totalScore = 0;
+        long standingsSeen = 0;
+        String firstError = null;
+        for (Future<BotResult> f : futures) {
+            try {
+                BotResult r = f.get();
+                finished++;
+                totalScore += r.serverScore;
+                standingsSeen += r.standingsSeen;
+                if (!r.matches()) {
+                    mismatched++;
+                }
+            } catch (ExecutionException e) {
+                errors++;
+                if (firstError == null) {
+                    firstError = String.valueOf(e.getCause());
+                }
+            }
+        }
+        pool.shutdown();
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        System.out.printf(Locale.ROOT, "bots=%d finished=%d mismatched=%d errors=%d mean=%.1fs standings=%d "
+                        + "rtt p50=%s p99=%s max=%s wall=%.1fs%s%n",
+                bots, finished, mismatched, errors, finished == 0 ? 0.0 : (double) totalScore / finished,
+                standingsSeen, FrameProfiler.formatNanos(roundTrips.percentile(50)),
+                FrameProfiler.formatNanos(roundTrips.percentile(99)), FrameProfiler.formatNanos(roundTrips.max()),
+                seconds, RaceServer.virtualThreadsAvailable() ? " (virtual threads)" : " (platform threads)");
+        if (firstError != null) {
+            System.out.println("first error: " + firstError);
+        }
+        if (server != null) {
+            System.out.printf("server: games=%d keys=%d rejected=%d late=%d%n", server.getGamesFinished(),
+                    server.getKeysAccepted(), server.getKeysRejected(), server.getLateKeys());
+            server.close();
+        }
+        System.exit(mismatched == 0 && errors == 0 ? 0 : 1);
+    }
+}
@@ -0,0 +1,46 @@
+package typinggame;
+
+/**
+ * Wire format shared by {@link RaceServer} and {@link RaceClient}.
+ *
+ * 每個 frame 是一個 byte 的種類加上固定格式的內容（DataOutputStream，big-endian），沒有長度欄位：
+ * 兩端都只送下面這幾種 frame，讀錯種類就直接斷線。tick 是「模擬步數」，一步 = {@link GameConfig#SIM_STEP_NANOS}。
+ *
+ * 用戶端 → 伺服器：
+ *   HELLO    int magic, short version, UTF 名字, UTF 比賽代號（空字串 = 單人）
+ *   KEY      int tick, char 按鍵 —— 在 tick 這一步 engine.update() 之前按下
+ *   SYNC     int tick —— 用戶端已經模擬到 tick（tick 之前的按鍵都已送出）
+ *   LEAVE    （無內容）
+ * 伺服器 → 用戶端：
+ *   WELCOME  long seed, boolean 多目標模式, long 字典指紋
+ *   NAME     UTF 名字 —— 依出現順序取得這條連線上的 id 0, 1, 2...（同 {@link PlayerDictionary}）
+ *   STATE    int tick, long 分數 (秒), int 打完的單字數 —— 伺服器上的權威狀態，回應每個 SYNC
+ *   STANDINGS short n，n × (int 名字 id, int tick, long 分數, boolean 已結束)
+ *   RESULT   {@link ScoreEntry#BYTES} bytes（{@link ScoreEntry#writeTo}，名字為這條連線的 id），之後伺服器關閉連線
+ *   ERROR    UTF 原因，之後伺服器關閉連線
+ */
+final class RaceProtocol {
+
+    static final int MAGIC = 0x54475243; // "TGRC"（與重播檔的 "TGRP" 區分）
+    static final int VERSION = 1;
+
+    // 用戶端 → 伺服器
+    static final int HELLO = 1;
+    static final int KEY = 2;
+    static final int SYNC = 3;
+    static final int LEAVE = 4;
+
+    // 伺服器 → 用戶端
+    static final int WELCOME = 1;
+    static final int NAME = 2;
+    static final int STATE = 3;
+    static final int STANDINGS = 4;
+    static final int RESULT = 5;
+    static final int ERROR = 6;
+
+    /** frame 很小且一次寫完，socket 緩衝不需要預設的 8KB；上千條連線時省下不少記憶體。 */
+    static final int BUFFER_BYTES = 1024;
+
+    private RaceProtocol() {
+    }
+}
@@ -0,0 +1,610 @@
+package typinggame;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.ProtocolException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hosts many independent {@link GameEngine} sessions over TCP, one thread per connection.
+ *
+ * 每條連線在伺服器上有自己的 engine（單人，或同一個比賽代號的玩家共用 seed，打同一串單字），
+ * 用戶端只送「第幾步按了什麼鍵」與「模擬到第幾步」({@link RaceProtocol})，分數完全由伺服器模擬得出：
+ * 按鍵只接受英文字母與 Backspace、每步有數量上限、步數不能倒退；用戶端不能跑得比真實時間快
+ * （超前時伺服器等待），也不能靠不回報來拖延（落後太多時伺服器自行推進，障礙物照樣撞上來）。
+ * 結束時分數存進排行榜，設定 replayDir 時同時存下伺服器實際採用的輸入，可用 {@link ReplayPlayer} 稽核。
+ *
+ * Java 21 以上每條連線一條虛擬執行緒（以 reflection 取得，維持 Java 11 可編譯），阻塞在 socket 上幾乎不佔資源；
+ * 更舊的 JVM 改用小堆疊的平台執行緒。一個 session 約數 KB，單機可同時容納上千場。
+ *
+ * 用法：java typinggame.RaceServer [--port N] [--bind addr] [--storage mongo[:uri]|file[:dir]|memory] [--fast]
+ * --fast 不以真實時間限制用戶端（壓力測試用，見 {@link RaceClient}）。
+ */
+public final class RaceServer implements AutoCloseable {
+
+    private static final long PLATFORM_STACK_BYTES = 256 * 1024;
+    private static final int ACCEPT_BACKLOG = 1024;
+    private static final int HELLO_TIMEOUT_MS = 10 * GameConfig.RACE_IDLE_MS;
+
+    /** 名次：分數高者優先，同分時還在進行的排前面。 */
+    private static final Comparator<RaceClient.Standing> STANDING_ORDER = Comparator
+            .comparingLong((RaceClient.Standing s) -> -s.getScore())
+            .thenComparing(RaceClient.Standing::isFinished);
+
+    private final LeaderboardStorage leaderboard;
+    private final boolean realTime;
+    private final long maxTicks;
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor;
+    private final Thread acceptor;
+    private final ConcurrentHashMap<String, Race> races = new ConcurrentHashMap<>();
+    private final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger sessionCount = new AtomicInteger();
+    private final LongAdder gamesFinished = new LongAdder();
+    private final LongAdder keysAccepted = new LongAdder();
+    private final LongAdder keysRejected = new LongAdder();
+    private final LongAdder lateKeys = new LongAdder();
+    private volatile boolean closed;
+
+    /**
+     * 開始在 bindAddress:port 接受連線（port 0 = 任意可用的 port，見 {@link #getPort()}）。
+     * realTime = false 時不以真實時間限制用戶端。
+     */
+    public RaceServer(LeaderboardStorage leaderboard, String bindAddress, int port, boolean realTime)
+            throws IOException {
+        this(leaderboard, bindAddress, port, realTime, HeadlessSimulation.DEFAULT_MAX_TICKS);
+    }
+
+    RaceServer(LeaderboardStorage leaderboard, String bindAddress, int port, boolean realTime, long maxTicks)
+            throws IOException {
+        this.leaderboard = leaderboard;
+        this.realTime = realTime;
+        this.maxTicks = maxTicks;
+        this.serverSocket = new ServerSocket(port, ACCEPT_BACKLOG, InetAddress.getByName(bindAddress));
+        this.executor = newThreadPerTaskExecutor("race-session");
+        this.acceptor = new Thread(this::acceptLoop, "race-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getActiveSessions() {
+        return sessionCount.get();
+    }
+
+    public long getGamesFinished() {
+        return gamesFinished.sum();
+    }
+
+    public long getKeysAccepted() {
+        return keysAccepted.sum();
+    }
+
+    /** 不合法（非字母、同一步太多）而被丟掉的按鍵數。 */
+    public long getKeysRejected() {
+        return keysRejected.sum();
+    }
+
+    /** 到達時伺服器已經自行推進過那一步、改在目前這一步套用的按鍵數。 */
+    public long getLateKeys() {
+        return lateKeys.sum();
+    }
+
+    // ------------------------------------------------------------------ 執行緒
+
+    static boolean virtualThreadsAvailable() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /** 每個工作一條新執行緒：Java 21 以上為虛擬執行緒，否則為小堆疊的 daemon 平台執行緒。 */
+    static ExecutorService newThreadPerTaskExecutor(String name) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name + "-", 0L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger next = new AtomicInteger();
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(null, r, name + "-" + next.getAndIncrement(), PLATFORM_STACK_BYTES);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (!closed) {
+                    System.err.println("⚠️ Race server stopped accepting: " + e.getMessage());
+                }
+                return;
+            }
+            Session session = new Session(socket);
+            sessionCount.incrementAndGet();
+            sessions.add(session);
+            try {
+                executor.execute(session);
+            } catch (RejectedExecutionException e) {
+                session.end(); // 正在關閉
+            }
+        }
+    }
+
+    /** 停止接受連線並中斷所有進行中的 session（未結束的遊戲不計分）。 */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            System.err.println("⚠️ Error closing race server: " + e.getMessage());
+        }
+        for (Session s : sessions) {
+            s.closeSocket();
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(GameConfig.ASYNC_FLUSH_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                System.err.println("⚠️ Race sessions did not stop in time.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ------------------------------------------------------------------ 比賽
+
+    /** 同一個比賽代號的玩家：共用 seed，名次每 {@link GameConfig#RACE_STANDINGS_MS} 重新排序一次。 */
+    private static final class Race {
+        final String id;
+        final long seed;
+        final Set<Session> members = ConcurrentHashMap.newKeySet();
+        private RaceClient.Standing[] standings = new RaceClient.Standing[0];
+        private long standingsAt;
+
+        Race(String id, long seed) {
+            this.id = id;
+            this.seed = seed;
+        }
+
+        /** 前 {@link GameConfig#RACE_STANDINGS_SIZE} 名；所有成員共用同一份結果，不會每條連線各排一次。 */
+        synchronized RaceClient.Standing[] standings(long nowMillis) {
+            if (nowMillis - standingsAt >= GameConfig.RACE_STANDINGS_MS) {
+                // 先取快照再排序：成員的狀態隨時在變，直接比較會讓排序的比較結果前後不一致
+                RaceClient.Standing[] all = members.stream().map(Session::standing)
+                        .toArray(RaceClient.Standing[]::new);
+                Arrays.sort(all, STANDING_ORDER);
+                standings = Arrays.copyOf(all, Math.min(all.length, GameConfig.RACE_STANDINGS_SIZE));
+                standingsAt = nowMillis;
+            }
+            return standings;
+        }
+    }
+
+    private Race join(String raceId, Session session) {
+        return races.compute(raceId, (id, existing) -> {
+            Race race = existing != null ? existing : new Race(id, ThreadLocalRandom.current().nextLong());
+            race.members.add(session);
+            return race;
+        });
+    }
+
+    private void leave(Race race, Session session) {
+        races.computeIfPresent(race.id, (id, r) -> {
+            r.members.remove(session);
+            return r.members.isEmpty() ? null : r;
+        });
+    }
+
+    // ------------------------------------------------------------------ 連線
+
+    /** engine 結束時交給它的排行榜：記下這場的紀錄並轉存到伺服器的排行榜。 */
+    private final class ResultCapture implements LeaderboardStorage {
+        ScoreEntry result;
+
+        @Override
+        public void saveScore(ScoreEntry entry) {
+            result = entry;
+            leaderboard.saveScore(entry);
+        }
+
+        @Override
+        public List<ScoreEntry> getTopScores(int limit) {
+            return Collections.emptyList(); // 伺服器上沒有畫面要顯示排行榜
+        }
+    }
+
+    private final class Session implements Runnable {
+        private final Socket socket;
+        private DataInputStream in;
+        private DataOutputStream out;
+        private final PlayerDictionary names = new PlayerDictionary(); // 這條連線上送過的名字
+        private int sentNames;
+        private final ResultCapture capture = new ResultCapture();
+        private final ByteBuffer record = ByteBuffer.allocate(ScoreEntry.BYTES);
+
+        private String name = "";
+        private Race race;
+        private GameEngine engine;
+        private ManualClock clock;
+        private long startNanos;
+        private long lastStandingsAt;
+
+        // 驗證用
+        private int lastClientTick;
+        private long keyTick = -1;
+        private int keysAtTick;
+        private int rejected;
+
+        // 給比賽名次讀取（其他 session 的執行緒）
+        private volatile long publishedTick;
+        private volatile long publishedScore;
+        private volatile boolean finished;
+
+        Session(Socket socket) {
+            this.socket = socket;
+        }
+
+        RaceClient.Standing standing() {
+            return new RaceClient.Standing(name, publishedTick, publishedScore, finished);
+        }
+
+        @Override
+        public void run() {
+            try {
+                socket.setTcpNoDelay(true);
+                in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), RaceProtocol.BUFFER_BYTES));
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(),
+                        RaceProtocol.BUFFER_BYTES));
+                if (sessionCount.get() > GameConfig.RACE_MAX_SESSIONS) {
+                    throw new ProtocolException("server full");
+                }
+                hello();
+                play();
+            } catch (ProtocolException e) {
+                sendError(e.getMessage());
+            } catch (EOFException | SocketException | InterruptedIOException e) {
+                // 用戶端斷線或伺服器關閉：這場不計分
+            } catch (IOException | RuntimeException e) {
+                System.err.println("⚠️ Race session '" + name + "' failed: " + e);
+            } finally {
+                end();
+            }
+        }
+
+        void end() {
+            if (race != null) {
+                leave(race, this);
+                race = null;
+            }
+            closeSocket();
+            if (sessions.remove(this)) {
+                sessionCount.decrementAndGet();
+            }
+        }
+
+        void closeSocket() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // 已經斷線
+            }
+        }
+
+        private void hello() throws IOException {
+            socket.setSoTimeout(HELLO_TIMEOUT_MS);
+            if (in.read() != RaceProtocol.HELLO) {
+                throw new ProtocolException("expected HELLO");
+            }
+            if (in.readInt() != RaceProtocol.MAGIC || in.readShort() != RaceProtocol.VERSION) {
+                throw new ProtocolException("unsupported protocol version");
+            }
+            name = in.readUTF().trim();
+            String raceId = in.readUTF().trim();
+            if (name.isEmpty() || name.length() > GameConfig.RACE_MAX_NAME_LENGTH || !printable(name)) {
+                name = "";
+                throw new ProtocolException("invalid player name");
+            }
+            if (raceId.length() > GameConfig.RACE_MAX_NAME_LENGTH || !printable(raceId)) {
+                throw new ProtocolException("invalid race id");
+            }
+
+            long seed;
+            if (raceId.isEmpty()) {
+                seed = ThreadLocalRandom.current().nextLong();
+            } else {
+                race = join(raceId, this);
+                seed = race.seed;
+            }
+            clock = new ManualClock(System.currentTimeMillis());
+            engine = new GameEngine(name, capture, clock);
+            if (GameConfig.REPLAY_DIR != null) {
+                engine.setReplayRecorder(ReplayRecorder.toDirectory(Paths.get(GameConfig.REPLAY_DIR),
+                        ForkJoinPool.commonPool()));
+            }
+            engine.startGame(seed);
+
+            out.writeByte(RaceProtocol.WELCOME);
+            out.writeLong(seed);
+            out.writeBoolean(engine.isMultiTarget());
+            out.writeLong(engine.getDictionaryFingerprint());
+            out.flush();
+            startNanos = System.nanoTime();
+        }
+
+        private void play() throws IOException {
+            socket.setSoTimeout(realTime ? GameConfig.RACE_IDLE_MS : 0);
+            while (true) {
+                int type;
+                try {
+                    type = in.read();
+                } catch (SocketTimeoutException e) {
+                    // 用戶端沒有回報：時間照樣前進
+                    advanceTo(wallTick() - GameConfig.RACE_MAX_LAG_TICKS);
+                    if (finishIfOver()) {
+                        return;
+                    }
+                    sendState();
+                    out.flush();
+                    continue;
+                }
+                switch (type) {
+                    case RaceProtocol.KEY:
+                        key(in.readInt(), in.readChar());
+                        break;
+                    case RaceProtocol.SYNC:
+                        int tick = in.readInt();
+                        checkTick(tick);
+                        advanceTo(tick);
+                        sendState();
+                        sendStandings(false);
+                        break;
+                    case RaceProtocol.LEAVE:
+                    case -1:
+                        return;
+                    default:
+                        throw new ProtocolException("unexpected frame " + type);
+                }
+                if (finishIfOver()) {
+                    return;
+                }
+                if (in.available() == 0) {
+                    out.flush(); // 一次收到的 frame 都處理完才送出回應
+                }
+            }
+        }
+
+        private void key(int tick, char ch) throws IOException {
+            checkTick(tick);
+            advanceTo(tick);
+            long now = engine.getTick();
+            if (now != keyTick) {
+                keyTick = now;
+                keysAtTick = 0;
+            }
+            boolean valid = ch == '\b' || (ch < 128 && Character.isLetter(ch));
+            if (!valid || ++keysAtTick > GameConfig.RACE_MAX_KEYS_PER_TICK) {
+                keysRejected.increment();
+                if (++rejected > GameConfig.RACE_MAX_REJECTED_KEYS) {
+                    throw new ProtocolException("too many invalid keys");
+                }
+                return;
+            }
+            if (now > tick) {
+                lateKeys.increment();
+            }
+            engine.handleTypedChar(ch);
+            keysAccepted.increment();
+        }
+
+        private void checkTick(int tick) throws ProtocolException {
+            if (tick < lastClientTick) {
+                throw new ProtocolException("tick went backwards: " + tick + " < " + lastClientTick);
+            }
+            lastClientTick = tick;
+        }
+
+        private long wallTick() {
+            return (System.nanoTime() - startNanos) / GameConfig.SIM_STEP_NANOS;
+        }
+
+        /**
+         * 把伺服器上的 engine 推進到 target 步；用戶端超前真實時間太多時先等時間追上。
+         * 即時模式下每個 frame 都至少推進到「真實時間 - {@link GameConfig#RACE_MAX_LAG_TICKS}」，
+         * 用戶端一直送同一步的 SYNC 也拖不住時間；早於這一步的按鍵改在目前這一步套用（late key）。
+         */
+        private void advanceTo(long target) throws IOException {
+            if (realTime) {
+                target = Math.max(target, wallTick() - GameConfig.RACE_MAX_LAG_TICKS);
+            }
+            target = Math.min(target, maxTicks);
+            if (realTime) {
+                long aheadNanos = (target - wallTick() - GameConfig.RACE_MAX_LEAD_TICKS) * GameConfig.SIM_STEP_NANOS;
+                if (aheadNanos > 0) {
+                    try {
+                        Thread.sleep(aheadNanos / 1_000_000, (int) (aheadNanos % 1_000_000));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("race server shutting down");
+                    }
+                }
+            }
+            while (engine.isRunning() && engine.getTick() < target) {
+                engine.update();
+                clock.advanceNanos(GameConfig.SIM_STEP_NANOS);
+            }
+            publishedTick = engine.getTick();
+            publishedScore = engine.getElapsedMillis() / 1000;
+            if (engine.isRunning() && engine.getTick() >= maxTicks) {
+                throw new ProtocolException("game time limit reached");
+            }
+        }
+
+        private boolean finishIfOver() throws IOException {
+            if (!engine.isGameOver()) {
+                return false;
+            }
+            finished = true;
+            gamesFinished.increment();
+            sendState();
+            sendStandings(true);
+            ScoreEntry result = capture.result;
+            nameId(result.getPlayerName());
+            record.clear();
+            result.writeTo(record, names);
+            out.writeByte(RaceProtocol.RESULT);
+            out.write(record.array(), 0, ScoreEntry.BYTES);
+            out.flush();
+            return true;
+        }
+
+        private void sendState() throws IOException {
+            out.writeByte(RaceProtocol.STATE);
+            out.writeInt((int) engine.getTick());
+            out.writeLong(engine.getElapsedMillis() / 1000);
+            out.writeInt(engine.getWordsCleared());
+        }
+
+        private void sendStandings(boolean force) throws IOException {
+            if (race == null) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            if (!force && now - lastStandingsAt < GameConfig.RACE_STANDINGS_MS) {
+                return;
+            }
+            lastStandingsAt = now;
+            RaceClient.Standing[] top = race.standings(now);
+            int[] ids = new int[top.length];
+            for (int i = 0; i < top.length; i++) {
+                ids[i] = nameId(top[i].getPlayerName()); // NAME frame 要在 STANDINGS 之前送出
+            }
+            out.writeByte(RaceProtocol.STANDINGS);
+            out.writeShort(top.length);
+            for (int i = 0; i < top.length; i++) {
+                out.writeInt(ids[i]);
+                out.writeInt((int) top[i].getTick());
+                out.writeLong(top[i].getScore());
+                out.writeBoolean(top[i].isFinished());
+            }
+        }
+
+        /** 名字在這條連線上的 id；第一次出現時先送一個 NAME frame。 */
+        private int nameId(String playerName) throws IOException {
+            int id = names.idOf(playerName);
+            if (id == sentNames) {
+                out.writeByte(RaceProtocol.NAME);
+                out.writeUTF(playerName);
+                sentNames++;
+            }
+            return id;
+        }
+
+        private void sendError(String message) {
+            if (out == null) {
+                return;
+            }
+            try {
+                out.writeByte(RaceProtocol.ERROR);
+                out.writeUTF(message);
+                out.flush();
+            } catch (IOException e) {
+                // 用戶端已經斷線
+            }
+        }
+    }
+
+    private static boolean printable(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (Character.isISOControl(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ------------------------------------------------------------------ 命令列
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+
+        int port = GameConfig.RACE_PORT;
+        String bind = GameConfig.RACE_BIND;
+        String storageSpec = "memory";
+        boolean realTime = true;
+        for (int i = 0; i < args.length; i++) {
+            if ("--port".equals(args[i]) && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else if ("--bind".equals(args[i]) && i + 1 < args.length) {
+                bind = args[++i];
+            } else if ("--storage".equals(args[i]) && i + 1 < args.length) {
+                storageSpec = args[++i];
+            } else if ("--fast".equals(args[i])) {
+                realTime = false;
+            } else {
+                System.err.println("Usage: java typinggame.RaceServer [--port N] [--bind addr] "
+                        + "[--storage mongo[:uri]|file[:dir]|memory] [--fast]");
+                System.exit(2);
+            }
+        }
+
+        // 上千場同時結束時不必逐筆等資料庫
+        AsyncLeaderboard storage = new AsyncLeaderboard(LeaderboardTool.openStorage(storageSpec));
+        RaceServer server = new RaceServer(storage, bind, port, realTime);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            storage.close();
+        }, "race-shutdown"));
+        System.out.println("✅ Race server listening on " + bind + ":" + server.getPort()
+                + (virtualThreadsAvailable() ? " (virtual threads)" : " (platform threads)")
+                + (realTime ? "" : " [fast mode: clients are not held to real time]"));
+
+        while (true) {
+            Thread.sleep(10_000);
+            System.out.printf("sessions=%d games=%d keys=%d rejected=%d late=%d%n", server.getActiveSessions(),
+                    server.getGamesFinished(), server.getKeysAccepted(), server.getKeysRejected(),
+                    server.getLateKeys());
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package typinggame;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * One recorded game: the seed plus every keystroke stamped with the simulation tick it arrived on.
+ *
+ * 遊戲邏輯只依賴 seed（決定抽到哪些單字）與按鍵在第幾個模擬步送進 {@link GameEngine#handleTypedChar}，
+ * 所以只要記下這兩樣，就能用 {@link ReplayPlayer} 重新模擬出完全相同的一場遊戲。
+ *
+ * 檔案格式（big-endian，varint = 7-bit 變長整數）：
+ * <pre>
+ *   int     magic "TGRP"
+ *   byte    版本
+ *   long    seed
+ *   long    開始時間 (epoch millis，只用於分數日期)
+ *   byte    旗標 (bit 0 = 多目標模式)
+ *   varint  模擬步長 (ns)
+ *   long    字典雜湊 ({@link WordIndex#fingerprint()})
+ *   UTF     玩家名稱
+ *   varint  按鍵數 n
+ *   n 組    varint 與上一個按鍵相差的步數, varint 字元
+ *   varint  結束時的步數
+ *   varint  分數 (秒)
+ *   int     以上所有位元組的 CRC32
+ * </pre>
+ * 一般打字每個按鍵只佔 2 bytes，一場 5 分鐘的遊戲大約 2~3 KB。
+ */
+public final class Replay {
+
+    private static final int MAGIC = 0x54475250; // "TGRP"
+    private static final int VERSION = 1;
+    private static final int FLAG_MULTI_TARGET = 1;
+
+    /** 建議的副檔名。 */
+    public static final String EXTENSION = ".tgr";
+
+    private final long seed;
+    private final long startMillis;
+    private final boolean multiTarget;
+    private final long stepNanos;
+    private final long dictionaryFingerprint;
+    private final String playerName;
+    private final long[] ticks;
+    private final char[] chars;
+    private final long finalTick;
+    private final long score;
+
+    Replay(long seed, long startMillis, boolean multiTarget, long stepNanos, long dictionaryFingerprint,
+           String playerName, long[] ticks, char[] chars, long finalTick, long score) {
+        if (ticks.length != chars.length) {
+            throw new IllegalArgumentException("ticks and chars differ in length");
+        }
+        this.seed = seed;
+        this.startMillis = startMillis;
+        this.multiTarget = multiTarget;
+        this.stepNanos = stepNanos;
+        this.dictionaryFingerprint = dictionaryFingerprint;
+        this.playerName = playerName;
+        this.ticks = ticks;
+        this.chars = chars;
+        this.finalTick = finalTick;
+        this.score = score;
+    }
+
+    public long getSeed() { return seed; }
+    public long getStartMillis() { return startMillis; }
+    public boolean isMultiTarget() { return multiTarget; }
+    public long getStepNanos() { return stepNanos; }
+    public long getDictionaryFingerprint() { return dictionaryFingerprint; }
+    public String getPlayerName() { return playerName; }
+    public long getFinalTick() { return finalTick; }
+    public long getScore() { return score; }
+
+    public int getEventCount() {
+        return chars.length;
+    }
+
+    /** 第 i 個按鍵送出時已經執行過幾個模擬步。 */
+    public long tickAt(int i) {
+        return ticks[i];
+    }
+
+    public char charAt(int i) {
+        return chars[i];
+    }
+
+    /** 建議的檔名：玩家名稱（只保留安全字元）+ 開始時間 + seed。 */
+    public String suggestedFileName() {
+        String safe = playerName.replaceAll("[^A-Za-z0-9_-]", "_");
+        return (safe.isEmpty() ? "player" : safe) + "-" + startMillis + "-" + Long.toHexString(seed) + EXTENSION;
+    }
+
+    // ------------------------------------------------------------------ 寫出 / 讀取
+
+    public void save(Path file) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            write(out);
+        }
+    }
+
+    public static Replay load(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return read(in);
+        }
+    }
+
+    /** 寫到 out（不會關閉 out）。 */
+    public void write(OutputStream out) throws IOException {
+        CRC32 crc = new CRC32();
+        DataOutputStream data = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(out), crc));
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeLong(seed);
+        data.writeLong(startMillis);
+        data.writeByte(multiTarget ? FLAG_MULTI_TARGET : 0);
+        writeVarLong(data, stepNanos);
+        data.writeLong(dictionaryFingerprint);
+        data.writeUTF(playerName);
+        writeVarLong(data, chars.length);
+        long previous = 0;
+        for (int i = 0; i < chars.length; i++) {
+            writeVarLong(data, ticks[i] - previous);
+            writeVarLong(data, chars[i]);
+            previous = ticks[i];
+        }
+        writeVarLong(data, finalTick);
+        writeVarLong(data, score);
+        data.flush();
+        // CRC 本身不列入計算
+        DataOutputStream tail = new DataOutputStream(out);
+        tail.writeInt((int) crc.getValue());
+        tail.flush();
+    }
+
+    /** 讀取一筆重播；格式或 CRC 不符時丟出 IOException。 */
+    public static Replay read(InputStream in) throws IOException {
+        CRC32 crc = new CRC32();
+        BufferedInputStream buffered = new BufferedInputStream(in);
+        DataInputStream data = new DataInputStream(new CheckedInputStream(buffered, crc));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a replay file");
+        }
+        int version = data.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported replay version " + version);
+        }
+        long seed = data.readLong();
+        long startMillis = data.readLong();
+        int flags = data.readUnsignedByte();
+        long stepNanos = readVarLong(data);
+        long fingerprint = data.readLong();
+        String playerName = data.readUTF();
+        long count = readVarLong(data);
+        if (count > Integer.MAX_VALUE - 8) {
+            throw new IOException("Corrupt replay: " + count + " events");
+        }
+        // 不要相信檔案裡的數量一次配置：以實際讀到的量逐步擴充
+        long[] ticks = new long[(int) Math.min(count, 4096)];
+        char[] chars = new char[ticks.length];
+        long tick = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == ticks.length) {
+                int cap = (int) Math.min(count, (long) i * 2);
+                ticks = Arrays.copyOf(ticks, cap);
+                chars = Arrays.copyOf(chars, cap);
+            }
+            tick += readVarLong(data);
+            long c = readVarLong(data);
+            if (c > Character.MAX_VALUE) {
+                throw new IOException("Corrupt replay: bad character " + c);
+            }
+            ticks[i] = tick;
+            chars[i] = (char) c;
+        }
+        long finalTick = readVarLong(data);
+        long score = readVarLong(data);
+        int expected = (int) crc.getValue();
+        int stored = new DataInputStream(buffered).readInt();
+        if (stored != expected) {
+            throw new IOException("Replay checksum mismatch");
+        }
+        return new Replay(seed, startMillis, (flags & FLAG_MULTI_TARGET) != 0, stepNanos, fingerprint,
+                playerName, ticks, chars, finalTick, score);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        if (value < 0) {
+            throw new IllegalArgumentException("negative varint: " + value);
+        }
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Truncated replay");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt replay: varint too long");
+    }
+
+    @Override
+    public String toString() {
+        return "Replay[" + playerName + " seed=" + Long.toHexString(seed) + " keys=" + chars.length
+                + " ticks=" + finalTick + " score=" + score + (multiTarget ? " multi" : "") + "]";
+    }
+}
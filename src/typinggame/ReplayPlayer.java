@@ -0,0 +1,203 @@
+package typinggame;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Feeds the keystrokes of a {@link Replay} back into a {@link GameEngine} at the ticks they were recorded on.
+ *
+ * 與 {@link BotTypist} 一樣，每個模擬步在 engine.update() 之前呼叫一次 {@link #tick}，
+ * 所以推進速度完全由呼叫端決定：{@link GameLoop} 依畫面節奏（可加速 / 減速）播放，
+ * {@link #verify(Replay)} 則在無視窗下全速重新模擬並比對分數，用來稽核可疑的排行榜紀錄。
+ *
+ * 用法：java typinggame.ReplayPlayer [--threads N] file-or-dir...
+ * 全部相符時結束碼為 0，有任何一筆不符為 1。
+ */
+public final class ReplayPlayer implements BotTypist {
+
+    /** 一次重新模擬的結果。 */
+    public static final class Result {
+        private final Replay replay;
+        private final long ticks;
+        private final long score;
+        private final boolean finished;
+
+        Result(Replay replay, long ticks, long score, boolean finished) {
+            this.replay = replay;
+            this.ticks = ticks;
+            this.score = score;
+            this.finished = finished;
+        }
+
+        public Replay getReplay() { return replay; }
+        public long getTicks() { return ticks; }
+        public long getScore() { return score; }
+
+        /** 重新模擬的遊戲在同一步結束、得到同樣的分數。 */
+        public boolean matches() {
+            return finished && ticks == replay.getFinalTick() && score == replay.getScore();
+        }
+
+        @Override
+        public String toString() {
+            return (matches() ? "OK       " : "MISMATCH ") + replay
+                    + (matches() ? "" : " -> replayed ticks=" + ticks + " score=" + score
+                    + (finished ? "" : " (still running)"));
+        }
+    }
+
+    private final Replay replay;
+    private int next;
+
+    public ReplayPlayer(Replay replay) {
+        this.replay = replay;
+    }
+
+    /** 把所有記錄在目前步數（含之前）的按鍵送進 engine。 */
+    @Override
+    public void tick(GameEngine engine) {
+        long now = engine.getTick();
+        while (next < replay.getEventCount() && replay.tickAt(next) <= now) {
+            engine.handleTypedChar(replay.charAt(next++));
+        }
+    }
+
+    /** 從頭播放（engine 需另外以 replay 的 seed 重新開始）。 */
+    public void rewind() {
+        next = 0;
+    }
+
+    public boolean isFinished() {
+        return next >= replay.getEventCount();
+    }
+
+    /** 以 replay 的設定開始新的一場。 */
+    public static void start(GameEngine engine, Replay replay) {
+        if (replay.getDictionaryFingerprint() != engine.getDictionaryFingerprint()) {
+            System.err.println("⚠️ Replay was recorded with a different dictionary; results may differ.");
+        }
+        if (replay.getStepNanos() != GameConfig.SIM_STEP_NANOS) {
+            System.err.println("⚠️ Replay was recorded at a different simulation rate; results may differ.");
+        }
+        engine.setMultiTarget(replay.isMultiTarget());
+        engine.startGame(replay.getSeed());
+    }
+
+    /** 在無視窗下全速重新模擬一場。 */
+    public static Result verify(Replay replay) {
+        ManualClock clock = new ManualClock(replay.getStartMillis());
+        GameEngine engine = new GameEngine(replay.getPlayerName(), new HeadlessSimulation.DiscardingLeaderboard(),
+                clock);
+        return verify(replay, engine, clock);
+    }
+
+    /** 重複使用同一個 engine / clock（大量驗證時避免每場重建）。 */
+    static Result verify(Replay replay, GameEngine engine, ManualClock clock) {
+        engine.setPlayerName(replay.getPlayerName());
+        start(engine, replay);
+        ReplayPlayer input = new ReplayPlayer(replay);
+        // 原本的遊戲在 finalTick 結束；多給一步，超過仍在進行就是結果不同
+        long limit = replay.getFinalTick() + 1;
+        while (engine.isRunning() && engine.getTick() < limit) {
+            input.tick(engine);
+            engine.update();
+            clock.advanceNanos(GameConfig.SIM_STEP_NANOS);
+        }
+        return new Result(replay, engine.getTick(), engine.getElapsedMillis() / 1000, engine.isGameOver());
+    }
+
+    /** 依檔名排序列出 paths 中的重播檔（資料夾會遞迴展開）。 */
+    static List<Path> collect(List<Path> paths) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (Path p : paths) {
+            if (Files.isDirectory(p)) {
+                try (Stream<Path> walk = Files.walk(p)) {
+                    files.addAll(walk.filter(f -> f.toString().endsWith(Replay.EXTENSION)).sorted()
+                            .collect(Collectors.toList()));
+                }
+            } else {
+                files.add(p);
+            }
+        }
+        return files;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<Path> paths = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if ("--threads".equals(args[i]) && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else {
+                paths.add(Paths.get(args[i]));
+            }
+        }
+        List<Path> files = collect(paths);
+        if (files.isEmpty()) {
+            System.err.println("Usage: java typinggame.ReplayPlayer [--threads N] file-or-dir...");
+            System.exit(2);
+        }
+
+        // 每個執行緒一個 engine，依序驗證分到的檔案；結果依檔名順序印出
+        Result[] results = new Result[files.size()];
+        String[] errors = new String[files.size()];
+        int workers = Math.max(1, Math.min(threads, files.size()));
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        long started = System.nanoTime();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < workers; w++) {
+                int first = w;
+                int stride = workers;
+                futures.add(pool.submit(() -> {
+                    ManualClock clock = new ManualClock();
+                    GameEngine engine = new GameEngine("replay", new HeadlessSimulation.DiscardingLeaderboard(), clock);
+                    for (int i = first; i < results.length; i += stride) {
+                        try {
+                            results[i] = verify(Replay.load(files.get(i)), engine, clock);
+                        } catch (IOException e) {
+                            errors[i] = e.getMessage();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        int mismatches = 0;
+        long ticks = 0;
+        for (int i = 0; i < results.length; i++) {
+            Result r = results[i];
+            if (r == null) {
+                mismatches++;
+                System.out.println("ERROR    " + files.get(i) + ": " + errors[i]);
+                continue;
+            }
+            ticks += r.getTicks();
+            if (!r.matches()) {
+                mismatches++;
+            }
+            System.out.println(r + "  " + files.get(i).getFileName());
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+        System.out.printf("%d replays, %d mismatched, %.1fs (%.0f replays/s, %.1fx real time)%n",
+                files.size(), mismatches, seconds, files.size() / seconds,
+                ticks * (double) GameConfig.SIM_STEP_NANOS / 1e9 / seconds);
+        System.exit(mismatches == 0 ? 0 : 1);
+    }
+}
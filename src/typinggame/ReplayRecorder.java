@@ -0,0 +1,82 @@
+package typinggame;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Collects the keystrokes of the current game and hands a finished {@link Replay} to a sink at game over.
+ *
+ * 由 {@link GameEngine} 在 startGame / handleTypedChar / gameOver 時呼叫（都在持有 engine 鎖的執行緒上），
+ * 按鍵只寫進兩個基本型別陣列，打字時不建立物件；遊戲結束才組成 Replay 交給 sink。
+ * 沒有結束的遊戲（例如直接關掉視窗）不會產生重播。
+ */
+public final class ReplayRecorder {
+
+    private final Consumer<Replay> sink;
+
+    private boolean recording;
+    private long seed;
+    private long startMillis;
+    private boolean multiTarget;
+    private long dictionaryFingerprint;
+    private String playerName;
+    private long[] ticks = new long[256];
+    private char[] chars = new char[256];
+    private int count;
+
+    public ReplayRecorder(Consumer<Replay> sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * 每場結束後寫成 dir 底下的一個檔案，由 executor 執行寫檔
+     * （遊戲視窗用背景執行緒，不阻塞遊戲迴圈；無視窗模擬直接在目前執行緒寫）。
+     * 資料夾不存在時自動建立。
+     */
+    public static ReplayRecorder toDirectory(Path dir, Executor executor) {
+        return new ReplayRecorder(replay -> executor.execute(() -> {
+            try {
+                Files.createDirectories(dir);
+                replay.save(dir.resolve(replay.suggestedFileName()));
+            } catch (IOException e) {
+                System.err.println("⚠️ Failed to save replay: " + e.getMessage());
+            }
+        }));
+    }
+
+    void begin(long gameSeed, boolean multi, String name, long millis, long fingerprint) {
+        recording = true;
+        seed = gameSeed;
+        multiTarget = multi;
+        playerName = name == null ? "" : name;
+        startMillis = millis;
+        dictionaryFingerprint = fingerprint;
+        count = 0;
+    }
+
+    void record(long tick, char ch) {
+        if (!recording) {
+            return;
+        }
+        if (count == chars.length) {
+            ticks = Arrays.copyOf(ticks, count * 2);
+            chars = Arrays.copyOf(chars, count * 2);
+        }
+        ticks[count] = tick;
+        chars[count] = ch;
+        count++;
+    }
+
+    void finish(long finalTick, long score) {
+        if (!recording) {
+            return;
+        }
+        recording = false;
+        sink.accept(new Replay(seed, startMillis, multiTarget, GameConfig.SIM_STEP_NANOS, dictionaryFingerprint,
+                playerName, Arrays.copyOf(ticks, count), Arrays.copyOf(chars, count), finalTick, score));
+    }
+}
@@ -1,26 +1,172 @@
 package typinggame;
 
+import java.nio.ByteBuffer;
 import java.util.Date;
+import java.util.Locale;
 
-public class ScoreEntry implements Comparable<ScoreEntry> {
-    private String playerName;
-    private long score;
-    private Date date;
+/**
+ * Immutable leaderboard record: who, how long they survived, when, and how they typed.
+ *
+ * 只有基本型別欄位（時間是 epoch millis，不是可變的 Date），每筆約 48 bytes。
+ * 名字照呼叫端給的 String 保存；大量保留紀錄的地方自己去重（同一個 {@link PlayerDictionary} 讀回的紀錄、
+ * {@link MemoryLeaderboard} 的每位玩家），同一位玩家的紀錄共用同一個 String。
+ * WPM 以 0.1、正確率以 0.01% 為單位儲存，與固定寬度的二進位格式一致，編碼再解碼後完全相等。
+ *
+ * 二進位格式固定 {@link #BYTES} bytes (big-endian)：
+ *   int playerId, long epochMillis, long score, int wordsCleared, char wpm×10, char accuracy×10000, float maxSpeed
+ * playerId 由呼叫端的 {@link PlayerDictionary} 對應（檔案或連線各自帶著自己的字典）。
+ */
+public final class ScoreEntry implements Comparable<ScoreEntry> {
+
+    /** 固定寬度編碼的大小。 */
+    public static final int BYTES = 32;
+    /** 跑分統計（wordsCleared, wpm, accuracy, maxSpeed）的編碼大小。 */
+    static final int STATS_BYTES = 4 + 2 + 2 + 4;
+
+    private static final double MAX_WPM = Character.MAX_VALUE / 10.0;
+
+    private final String playerName;
+    private final long score;          // 存活秒數
+    private final long epochMillis;
+    private final int wordsCleared;
+    private final char wpmTenths;
+    private final char accuracyBasisPoints; // 0..10000
+    private final float maxSpeed;
 
     public ScoreEntry(String playerName, long score) {
+        this(playerName, score, System.currentTimeMillis());
+    }
+
+    public ScoreEntry(String playerName, long score, long epochMillis) {
+        this(playerName, score, epochMillis, 0, 0.0, 0.0, 0.0);
+    }
+
+    /**
+     * @param wpm      每分鐘字數（5 個字元算一個字）
+     * @param accuracy 正確率 0~1
+     * @param maxSpeed 這一場達到的最高速度（px / 模擬步）
+     */
+    public ScoreEntry(String playerName, long score, long epochMillis,
+                      int wordsCleared, double wpm, double accuracy, double maxSpeed) {
+        this(playerName, score, epochMillis, wordsCleared,
+                (char) Math.round(clamp(wpm, MAX_WPM) * 10),
+                (char) Math.round(clamp(accuracy, 1.0) * 10_000),
+                (float) maxSpeed);
+    }
+
+    private ScoreEntry(String playerName, long score, long epochMillis,
+                       int wordsCleared, char wpmTenths, char accuracyBasisPoints, float maxSpeed) {
+        if (playerName == null) {
+            throw new IllegalArgumentException("playerName is null");
+        }
         this.playerName = playerName;
         this.score = score;
-        this.date = new Date();
+        this.epochMillis = epochMillis;
+        this.wordsCleared = Math.max(0, wordsCleared);
+        this.wpmTenths = wpmTenths;
+        this.accuracyBasisPoints = (char) Math.min(accuracyBasisPoints, 10_000);
+        this.maxSpeed = maxSpeed;
+    }
+
+    /** 同一筆紀錄改用 name 這個（內容相同的）String 實例，給保留大量紀錄的 storage 共用名字。 */
+    ScoreEntry withPlayerName(String name) {
+        if (name == playerName) {
+            return this;
+        }
+        if (!name.equals(playerName)) {
+            throw new IllegalArgumentException("Different player name: " + name + " != " + playerName);
+        }
+        return new ScoreEntry(name, score, epochMillis, wordsCleared, wpmTenths, accuracyBasisPoints, maxSpeed);
+    }
+
+    private static double clamp(double value, double max) {
+        return value > 0 ? Math.min(value, max) : 0.0; // NaN 也變成 0
     }
 
     // Getters
     public String getPlayerName() { return playerName; }
     public long getScore() { return score; }
-    public Date getDate() { return date; }
+    public long getEpochMillis() { return epochMillis; }
+    public int getWordsCleared() { return wordsCleared; }
+    public double getWpm() { return wpmTenths / 10.0; }
+    public double getAccuracy() { return accuracyBasisPoints / 10_000.0; }
+    public double getMaxSpeed() { return maxSpeed; }
+
+    /** 每次回傳新的 Date（給需要 Date 的 API，例如 MongoDB driver）。 */
+    public Date getDate() {
+        return new Date(epochMillis);
+    }
+
+    // ------------------------------------------------------------------ 二進位格式
+
+    /** 寫入固定 {@link #BYTES} bytes；名字以 players 中的 id 表示。 */
+    public void writeTo(ByteBuffer buf, PlayerDictionary players) {
+        buf.putInt(players.idOf(playerName))
+                .putLong(epochMillis)
+                .putLong(score);
+        writeStats(buf);
+    }
+
+    /** 讀回 {@link #writeTo} 寫入的 {@link #BYTES} bytes。 */
+    public static ScoreEntry readFrom(ByteBuffer buf, PlayerDictionary players) {
+        String name = players.nameOf(buf.getInt());
+        long millis = buf.getLong();
+        long score = buf.getLong();
+        return readStats(name, score, millis, buf);
+    }
+
+    /** 只寫跑分統計 ({@link #STATS_BYTES} bytes)，其餘欄位由呼叫端自己的格式處理。 */
+    void writeStats(ByteBuffer buf) {
+        buf.putInt(wordsCleared)
+                .putChar(wpmTenths)
+                .putChar(accuracyBasisPoints)
+                .putFloat(maxSpeed);
+    }
+
+    static ScoreEntry readStats(String playerName, long score, long epochMillis, ByteBuffer buf) {
+        int words = buf.getInt();
+        char wpm = buf.getChar();
+        char accuracy = buf.getChar();
+        float speed = buf.getFloat();
+        return new ScoreEntry(playerName, score, epochMillis, words, wpm, accuracy, speed);
+    }
+
+    // ------------------------------------------------------------------
 
     @Override
     public int compareTo(ScoreEntry other) {
         // 分數高的排前面
         return Long.compare(other.score, this.score);
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ScoreEntry)) {
+            return false;
+        }
+        ScoreEntry e = (ScoreEntry) o;
+        return score == e.score && epochMillis == e.epochMillis && wordsCleared == e.wordsCleared
+                && wpmTenths == e.wpmTenths && accuracyBasisPoints == e.accuracyBasisPoints
+                && Float.compare(maxSpeed, e.maxSpeed) == 0 && playerName.equals(e.playerName);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = playerName.hashCode();
+        h = 31 * h + Long.hashCode(score);
+        h = 31 * h + Long.hashCode(epochMillis);
+        h = 31 * h + wordsCleared;
+        h = 31 * h + wpmTenths;
+        h = 31 * h + accuracyBasisPoints;
+        return 31 * h + Float.floatToIntBits(maxSpeed);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%s %ds @%d (%d words, %.1f wpm, %.2f%%, speed %.1f)",
+                playerName, score, epochMillis, wordsCleared, getWpm(), getAccuracy() * 100, maxSpeed);
+    }
+}
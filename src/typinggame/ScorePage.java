@@ -0,0 +1,76 @@
+package typinggame;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a leaderboard query plus the cursor for the next page.
+ *
+ * 游標 (keyset pagination)：記下這一頁最後一筆的排序鍵 (分數或時間) 與同鍵時的次序鍵，
+ * 下一頁直接從索引中那個位置之後接著讀，不用 skip 前面的筆數，翻到多後面都一樣快，
+ * 翻頁期間有新分數寫入也不會重複或漏掉。游標對呼叫端是不透明的字串，只能原樣傳回同一個 storage。
+ */
+public final class ScorePage {
+
+    private static final ScorePage EMPTY = new ScorePage(Collections.emptyList(), null);
+
+    private final List<ScoreEntry> entries;
+    private final String nextCursor;
+
+    public ScorePage(List<ScoreEntry> entries, String nextCursor) {
+        this.entries = Collections.unmodifiableList(entries);
+        this.nextCursor = nextCursor;
+    }
+
+    public static ScorePage empty() {
+        return EMPTY;
+    }
+
+    public List<ScoreEntry> getEntries() {
+        return entries;
+    }
+
+    /** 下一頁的游標；已經是最後一頁時為 null。 */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+
+    // ------------------------------------------------------------------ 游標編碼（給 storage 實作使用）
+
+    /** 編成 "value:key"。 */
+    static String cursor(long value, Object key) {
+        return value + ":" + key;
+    }
+
+    static long cursorValue(String cursor) {
+        try {
+            return Long.parseLong(cursor.substring(0, separator(cursor)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+
+    static String cursorKey(String cursor) {
+        return cursor.substring(separator(cursor) + 1);
+    }
+
+    static long cursorLongKey(String cursor) {
+        try {
+            return Long.parseLong(cursorKey(cursor));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+
+    private static int separator(String cursor) {
+        int i = cursor.indexOf(':');
+        if (i < 0) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        return i;
+    }
+}
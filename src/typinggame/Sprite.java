@@ -0,0 +1,44 @@
+package typinggame;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Immutable rectangular region of a sprite atlas.
+ *
+ * 只記錄在圖集中的位置與大小，繪製時從圖集複製這一塊；
+ * 多個遊戲物件（甚至多個 GameEngine）共用同一張圖集，不會各自持有一份圖片。
+ */
+public final class Sprite {
+    private final BufferedImage atlas;
+    private final int x;
+    private final int y;
+    private final int width;
+    private final int height;
+
+    Sprite(BufferedImage atlas, int x, int y, int width, int height) {
+        this.atlas = atlas;
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /** 以 (dx, dy) 為左上角繪製。 */
+    public void draw(Graphics g, int dx, int dy) {
+        g.drawImage(atlas, dx, dy, dx + width, dy + height, x, y, x + width, y + height, null);
+    }
+
+    @Override
+    public String toString() {
+        return "Sprite[" + x + "," + y + " " + width + "x" + height + "]";
+    }
+}
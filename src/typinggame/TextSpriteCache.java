@@ -0,0 +1,228 @@
+package typinggame;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of pre-rendered text images.
+ *
+ * 以 (文字, 字型, 狀態, 字距) 為 key，第一次遇到時把整串字畫進一張透明圖片，
+ * 之後每幀只需 drawImage，不必再經過字型排版與點陣化。超過容量時淘汰最久沒用到的圖片。
+ * 查詢用同一個 probe key，命中時不會配置新物件。
+ *
+ * 非執行緒安全：只在繪製執行緒上使用。
+ */
+public final class TextSpriteCache {
+
+    /** 文字狀態，決定顏色。 */
+    public enum State {
+        UNTYPED(Color.DARK_GRAY),
+        CORRECT(new Color(0, 150, 0)),
+        WRONG(new Color(220, 40, 40));
+
+        final Color color;
+
+        State(Color color) {
+            this.color = color;
+        }
+    }
+
+    private static final int PAD = 2; // 反鋸齒或斜體字可能超出字寬，左右各留一點空間
+
+    private static final TextSpriteCache SHARED = new TextSpriteCache(GameConfig.TEXT_SPRITE_CACHE_SIZE);
+
+    /** 遊戲畫面共用的快取。 */
+    public static TextSpriteCache shared() {
+        return SHARED;
+    }
+
+    /** 一張預先畫好的文字圖片。 */
+    public static final class Sprite {
+        private final BufferedImage image;
+        private final int ascent;
+        private final int[] charX; // 第 i 個字元的起點（相對於文字起點），最後一格是總寬度
+
+        Sprite(BufferedImage image, int ascent, int[] charX) {
+            this.image = image;
+            this.ascent = ascent;
+            this.charX = charX;
+        }
+
+        /** 文字寬度（不含留白）。 */
+        public int getWidth() {
+            return charX[charX.length - 1];
+        }
+
+        public int getHeight() {
+            return image.getHeight();
+        }
+
+        /** 前 chars 個字元的寬度。 */
+        public int prefixWidth(int chars) {
+            return charX[Math.max(0, Math.min(chars, charX.length - 1))];
+        }
+
+        /** 以 (x, baselineY) 為文字起點繪製，與 drawString 對齊。 */
+        public void draw(Graphics g, int x, int baselineY) {
+            g.drawImage(image, x - PAD, baselineY - ascent, null);
+        }
+
+        /** 只繪製第 from 到 to 個字元（不含 to），用來把兩種狀態的圖片拼在一起。 */
+        public void drawRange(Graphics g, int x, int baselineY, int from, int to) {
+            int sx1 = from == 0 ? 0 : prefixWidth(from) + PAD;
+            int sx2 = to >= charX.length - 1 ? image.getWidth() : prefixWidth(to) + PAD;
+            if (sx2 <= sx1) {
+                return;
+            }
+            int dx = x - PAD;
+            int dy = baselineY - ascent;
+            g.drawImage(image, dx + sx1, dy, dx + sx2, dy + image.getHeight(),
+                    sx1, 0, sx2, image.getHeight(), null);
+        }
+    }
+
+    /** 快取的 key；查詢時重複使用同一個 probe，存入時才複製一份。 */
+    private static final class Key {
+        String text;
+        Font font;
+        State state;
+        int tracking;
+        int hash;
+
+        Key set(String text, Font font, State state, int tracking) {
+            this.text = text;
+            this.font = font;
+            this.state = state;
+            this.tracking = tracking;
+            int h = text.hashCode();
+            h = 31 * h + font.hashCode();
+            h = 31 * h + state.ordinal();
+            this.hash = 31 * h + tracking;
+            return this;
+        }
+
+        Key copy() {
+            return new Key().set(text, font, state, tracking);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return hash == k.hash && state == k.state && tracking == k.tracking
+                    && text.equals(k.text) && font.equals(k.font);
+        }
+    }
+
+    private final int capacity;
+    private final Map<Key, Sprite> sprites;
+    private final Key probe = new Key();
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public TextSpriteCache(int capacity) {
+        this.capacity = capacity;
+        // accessOrder = true：get() 會把項目移到最後，最舊的在最前面
+        this.sprites = new LinkedHashMap<Key, Sprite>(capacity * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Sprite> eldest) {
+                if (size() > TextSpriteCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public Sprite get(String text, Font font, State state) {
+        return get(text, font, state, 0);
+    }
+
+    /** tracking：字元之間額外加上的像素。 */
+    public Sprite get(String text, Font font, State state, int tracking) {
+        Sprite sprite = sprites.get(probe.set(text, font, state, tracking));
+        if (sprite != null) {
+            hits++;
+        } else {
+            misses++;
+            sprite = render(text, font, state.color, tracking);
+            sprites.put(probe.copy(), sprite);
+        }
+        probe.text = null; // 不要讓 probe 留住字串
+        return sprite;
+    }
+
+    private static Sprite render(String text, Font font, Color color, int tracking) {
+        // 先用一張 1x1 的圖片取得 FontMetrics
+        BufferedImage scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D sg = scratch.createGraphics();
+        FontMetrics fm = sg.getFontMetrics(font);
+        sg.dispose();
+
+        int n = text.length();
+        int[] charX = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            charX[i + 1] = charX[i] + fm.charWidth(text.charAt(i)) + (i < n - 1 ? tracking : 0);
+        }
+
+        int w = Math.max(1, charX[n] + PAD * 2);
+        int h = Math.max(1, fm.getAscent() + fm.getDescent());
+        BufferedImage img = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = img.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g2.setFont(font);
+        g2.setColor(color);
+        if (tracking == 0) {
+            g2.drawString(text, PAD, fm.getAscent());
+        } else {
+            for (int i = 0; i < n; i++) {
+                g2.drawString(String.valueOf(text.charAt(i)), PAD + charX[i], fm.getAscent());
+            }
+        }
+        g2.dispose();
+        return new Sprite(AcceleratedImages.toCompatible(img), fm.getAscent(), charX);
+    }
+
+    public void clear() {
+        sprites.clear();
+    }
+
+    public int size() {
+        return sprites.size();
+    }
+
+    public long getHitCount() {
+        return hits;
+    }
+
+    public long getMissCount() {
+        return misses;
+    }
+
+    public long getEvictionCount() {
+        return evictions;
+    }
+
+    public double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TextSpriteCache[size=%d/%d hits=%d misses=%d evictions=%d hitRate=%.2f]",
+                size(), capacity, hits, misses, evictions, getHitRate());
+    }
+}
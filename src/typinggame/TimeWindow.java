@@ -0,0 +1,40 @@
+package typinggame;
+
+/**
+ * Time range of a leaderboard query.
+ *
+ * 以 UTC 的日期切分（與 {@link MongoLeaderboard} 的 day 欄位一致），一週從星期一開始；
+ * 判斷依據是分數本身的日期，而不是存入的時間。
+ */
+public enum TimeWindow {
+    DAILY,
+    WEEKLY,
+    ALL_TIME;
+
+    static final long DAY_MILLIS = 86_400_000L;
+
+    /** epoch millis 所在的日期（從 1970-01-01 起算的天數，UTC）。 */
+    public static long epochDay(long millis) {
+        return Math.floorDiv(millis, DAY_MILLIS);
+    }
+
+    /** 在 nowMillis 這個時間點，區間的第一天 (epoch day)；ALL_TIME 為 Long.MIN_VALUE。 */
+    public long firstDay(long nowMillis) {
+        long today = epochDay(nowMillis);
+        switch (this) {
+            case DAILY:
+                return today;
+            case WEEKLY:
+                // 1970-01-01 是星期四，+3 之後 0 = 星期一
+                return today - Math.floorMod(today + 3, 7);
+            default:
+                return Long.MIN_VALUE;
+        }
+    }
+
+    /** 這個日期的分數在 nowMillis 時是否落在區間內（區間到今天為止）。 */
+    public boolean contains(long millis, long nowMillis) {
+        long day = epochDay(millis);
+        return day >= firstDay(nowMillis) && (this == ALL_TIME || day <= epochDay(nowMillis));
+    }
+}
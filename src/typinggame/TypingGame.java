@@ -7,6 +7,9 @@ import javax.swing.*;
  */
 public class TypingGame {
     public static void main(String[] args) {
+        // 玩家輸入名字的同時，在背景平行載入圖片
+        Assets.preload();
+
         SwingUtilities.invokeLater(() -> {
             // 1. 彈出輸入視窗
             String name = JOptionPane.showInputDialog(null, 
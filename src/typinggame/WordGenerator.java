@@ -1,15 +1,9 @@
 package typinggame;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.List;
+import java.net.URL;
+import java.util.Arrays;
 import java.util.Random;
-import java.util.stream.Collectors;
 
 /**
  * WordGenerator - 強化版
@@ -23,32 +17,69 @@ public class WordGenerator {
         "apple", "music", "write", "learn", "happy", "smile", "world"
     };
 
-    private final List<String> words;
+    // 字典只載入、建索引一次，同一個 process 裡的多個 engine (例如無視窗模擬) 共用
+    private static volatile WordIndex sharedIndex;
+
+    private final WordIndex index;
+    private final WordIndex.RecentWindow recent;
     private final Random random = new Random();
 
     public WordGenerator() {
-        this.words = new ArrayList<>();
-        loadDictionary();
+        this(sharedIndex());
+    }
+
+    /** 使用指定的字典索引（例如大型字庫或效能量測）。 */
+    public WordGenerator(WordIndex index) {
+        this.index = index;
+        this.recent = new WordIndex.RecentWindow(GameConfig.WORD_REPEAT_WINDOW, index.size());
+    }
+
+    /**
+     * 新的一場遊戲：以 seed 重設亂數並忘掉最近出現過的字，
+     * 同一個 seed 之後抽出的單字序列一定相同（重播用）。
+     */
+    public void reseed(long seed) {
+        random.setSeed(seed);
+        recent.clear();
+    }
+
+    /** 目前字典的雜湊，見 {@link WordIndex#fingerprint()}。 */
+    public long dictionaryFingerprint() {
+        return index.fingerprint();
     }
 
-    /** 嘗試載入 dictionary.json */
-    private void loadDictionary() {
+    private static WordIndex sharedIndex() {
+        WordIndex loaded = sharedIndex;
+        if (loaded == null) {
+            synchronized (WordGenerator.class) {
+                loaded = sharedIndex;
+                if (loaded == null) {
+                    loaded = loadDictionary();
+                    sharedIndex = loaded;
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /** 嘗試載入 dictionary.json（透過 {@link DictionaryLoader}，第二次之後直接讀二進位快取） */
+    private static WordIndex loadDictionary() {
         try {
-            InputStream is = null;
+            URL source = null;
             String loadSource = "";
 
             // 1. 第一招：嘗試從 Classpath (bin 資料夾) 讀取 (標準發布模式)
-            is = getClass().getResourceAsStream("/typinggame/assets/dictionary.json");
-            if (is != null) {
+            source = WordGenerator.class.getResource("/typinggame/assets/dictionary.json");
+            if (source != null) {
                 loadSource = "Classpath (bin)";
             }
 
             // 2. 第二招：如果第一招失敗，嘗試直接讀取 src 資料夾 (VS Code 開發模式)
-            if (is == null) {
+            if (source == null) {
                 // 這裡指定 src 的相對路徑
                 File devFile = new File("src/typinggame/assets/dictionary.json");
                 if (devFile.exists()) {
-                    is = new FileInputStream(devFile);
+                    source = devFile.toURI().toURL();
                     loadSource = "Source Folder (src)";
                 } else {
                     // 印出目前的工作目錄，方便除錯
@@ -57,73 +88,54 @@ public class WordGenerator {
             }
             
             // 3. 如果兩招都失敗
-            if (is == null) {
+            if (source == null) {
                 System.err.println("❌ Error: Dictionary file NOT found in bin or src.");
-                useFallback();
-                return;
+                return useFallback();
             }
 
             // 讀取並解析
             System.out.println("✅ Dictionary found in: " + loadSource); // 顯示成功訊息
-            String jsonContent = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))
-                    .lines().collect(Collectors.joining("\n"));
-
-            parseJsonAndAddWords(jsonContent);
+            WordIndex index = DictionaryLoader.load(source);
 
-            System.out.println("Loaded " + words.size() + " words from dictionary.");
+            System.out.println("Loaded " + index.size() + " words from dictionary.");
             
-            if (words.isEmpty()) {
-                useFallback();
+            if (index.size() == 0) {
+                return useFallback();
             }
+            return index;
 
         } catch (Exception e) {
             System.err.println("Error loading dictionary: " + e.getMessage());
             e.printStackTrace();
-            useFallback();
+            return useFallback();
         }
     }
 
-    private void parseJsonAndAddWords(String json) {
-        int arrayStart = json.indexOf('[');
-        int arrayEnd = json.lastIndexOf(']');
-
-        if (arrayStart >= 0 && arrayEnd > arrayStart) {
-            String arrayContent = json.substring(arrayStart + 1, arrayEnd);
-            String[] rawTokens = arrayContent.split(",");
-
-            for (String token : rawTokens) {
-                String word = token.trim().replaceAll("[\"']", "").trim();
-                if (!word.isEmpty() && word.matches("[a-zA-Z]+")) {
-                    words.add(word.toLowerCase());
-                }
-            }
-        }
-    }
-
-    private void useFallback() {
+    private static WordIndex useFallback() {
         System.out.println("⚠️ Using Fallback Words (Basic List)");
-        for (String w : FALLBACK_WORDS) {
-            words.add(w);
-        }
+        return new WordIndex(Arrays.asList(FALLBACK_WORDS));
     }
 
     public String next() {
-        if (words.isEmpty()) return "error";
-        return words.get(random.nextInt(words.size()));
+        if (index.size() == 0) return "error";
+        return index.pick(random);
     }
 
+    /**
+     * 依難度抽字：長度區間隨難度提高，直接從索引的對應區間均勻抽樣，
+     * 並避開最近出現過的字。
+     */
     public String next(int difficultyLevel) {
         int minLen = Math.min(3 + difficultyLevel, 10);
         int maxLen = Math.min(minLen + 4, 15);
 
-        String candidate = null;
-        for (int i = 0; i < 20; i++) {
-            String w = words.get(random.nextInt(words.size()));
-            if (w.length() >= minLen && w.length() <= maxLen) {
-                candidate = w;
-                break;
-            }
-        }
-        return (candidate != null) ? candidate : next();
+        String w = index.pick(minLen, maxLen, random, recent);
+        return (w != null) ? w : next();
+    }
+
+    /** 依加權長度區間抽字（例如 80% 目前難度、20% 較簡單的字）。 */
+    public String next(WordIndex.Band... bands) {
+        String w = index.pick(bands, random, recent);
+        return (w != null) ? w : next();
     }
 }
\ No newline at end of file
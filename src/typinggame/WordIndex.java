@@ -0,0 +1,279 @@
+package typinggame;
+
+import java.nio.CharBuffer;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Immutable word index grouped by length.
+ *
+ * 單字依長度排好 (counting sort, O(n))，並以 prefix offset 陣列記錄每個長度的起點：
+ * 長度介於 [minLen, maxLen] 的單字剛好是第 offsets[minLen] .. offsets[maxLen + 1] 個字，
+ * 因此每次抽字都是 O(1) 的均勻抽樣，不需要反覆丟棄重抽。
+ *
+ * 字元資料緊密排列在一個 {@link CharBuffer} 中（可以是 heap 陣列或 memory-mapped 快取檔），
+ * 同長度的字連續存放，第 i 個字的位置可由 charBase[len] + (i - offsets[len]) * len 算出，
+ * 不需要每個字一個 String 物件；只有真正抽到的字才建立 String。
+ */
+public final class WordIndex {
+
+    /** 加權長度區間：抽字時先依 weight 選區間，再在區間內均勻抽。 */
+    public static final class Band {
+        final int minLen;
+        final int maxLen;
+        final double weight;
+
+        public Band(int minLen, int maxLen, double weight) {
+            if (minLen > maxLen || weight < 0) {
+                throw new IllegalArgumentException("Invalid band: [" + minLen + ", " + maxLen + "] w=" + weight);
+            }
+            this.minLen = minLen;
+            this.maxLen = maxLen;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * 避免短時間內重複出現同一個字：記住最近 size 個抽到的位置。
+     * 每個 WordGenerator 各自一份（非 thread-safe）。
+     */
+    public static final class RecentWindow {
+        private static final int MAX_RETRIES = 8;
+
+        private final int[] ring;
+        private final BitSet marked;
+        private int next;
+        private int filled;
+
+        public RecentWindow(int size, int wordCount) {
+            this.ring = new int[Math.max(0, size)];
+            this.marked = new BitSet(wordCount);
+        }
+
+        boolean contains(int idx) {
+            return marked.get(idx);
+        }
+
+        void remember(int idx) {
+            if (ring.length == 0) {
+                return;
+            }
+            if (filled == ring.length) {
+                marked.clear(ring[next]);
+            } else {
+                filled++;
+            }
+            ring[next] = idx;
+            marked.set(idx);
+            next = (next + 1) % ring.length;
+        }
+
+        /** 忘掉所有記錄（新的一場遊戲）。 */
+        void clear() {
+            marked.clear();
+            next = 0;
+            filled = 0;
+        }
+    }
+
+    private final CharBuffer chars; // 依長度排序後緊密排列的字元
+    private final int[] offsets;    // offsets[len] = 第一個長度為 len 的字的序號，長度 maxLength + 2
+    private final int[] charBase;   // charBase[len] = 長度為 len 的字在 chars 中的起點
+    private volatile long fingerprint; // 0 = 還沒算過
+
+    public WordIndex(List<String> source) {
+        int maxLen = 0;
+        for (String w : source) {
+            maxLen = Math.max(maxLen, w.length());
+        }
+
+        // counting sort：先數每個長度的數量，再轉成 prefix offsets
+        int[] offsets = new int[maxLen + 2];
+        for (String w : source) {
+            offsets[w.length() + 1]++;
+        }
+        for (int len = 1; len < offsets.length; len++) {
+            offsets[len] += offsets[len - 1];
+        }
+
+        int[] charBase = charBases(offsets);
+        char[] packed = new char[charBase[maxLen + 1]];
+        int[] cursor = charBase.clone();
+        for (String w : source) {
+            int len = w.length();
+            w.getChars(0, len, packed, cursor[len]);
+            cursor[len] += len;
+        }
+
+        this.chars = CharBuffer.wrap(packed);
+        this.offsets = offsets;
+        this.charBase = charBase;
+    }
+
+    /**
+     * 直接使用已依長度排好的字元資料（例如 {@link DictionaryLoader} 的快取檔）。
+     * chars 的內容必須符合 offsets 描述的排列方式。
+     */
+    WordIndex(CharBuffer chars, int[] offsets) {
+        this.chars = chars;
+        this.offsets = offsets;
+        this.charBase = charBases(offsets);
+        if (chars.limit() != charBase[charBase.length - 1]) {
+            throw new IllegalArgumentException("Packed data does not match length offsets");
+        }
+    }
+
+    /** charBase[len] = 所有長度小於 len 的字總字元數；最後一格為總字元數。 */
+    private static int[] charBases(int[] offsets) {
+        int[] base = new int[offsets.length];
+        for (int len = 1; len < offsets.length; len++) {
+            int count = offsets[len] - offsets[len - 1];
+            base[len] = base[len - 1] + count * (len - 1);
+        }
+        return base;
+    }
+
+    public int size() {
+        return offsets[offsets.length - 1];
+    }
+
+    public int maxLength() {
+        return offsets.length - 2;
+    }
+
+    /** 長度介於 [minLen, maxLen] 的單字數。 */
+    public int count(int minLen, int maxLen) {
+        return end(maxLen) - start(minLen);
+    }
+
+    public String get(int idx) {
+        int len = lengthOf(idx);
+        int from = charBase[len] + (idx - offsets[len]) * len;
+        return chars.subSequence(from, from + len).toString();
+    }
+
+    /** 第 idx 個字的長度：在 offsets 上二分搜尋 (長度種類很少，成本可忽略)。 */
+    private int lengthOf(int idx) {
+        int lo = 0;
+        int hi = offsets.length - 2;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (offsets[mid] <= idx) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * 整個字典內容的 64-bit 雜湊 (FNV-1a)，第一次呼叫時才計算。
+     * 重播 ({@link Replay}) 用來確認抽字的來源與錄製時相同。
+     */
+    public long fingerprint() {
+        long h = fingerprint;
+        if (h == 0) {
+            h = 0xcbf29ce484222325L;
+            for (int offset : offsets) {
+                h = (h ^ offset) * 0x100000001b3L;
+            }
+            CharBuffer data = chars.duplicate();
+            while (data.hasRemaining()) {
+                h = (h ^ data.get()) * 0x100000001b3L;
+            }
+            fingerprint = h == 0 ? 1 : h;
+        }
+        return fingerprint;
+    }
+
+    /** 給快取檔寫出使用。 */
+    int[] lengthOffsets() {
+        return offsets.clone();
+    }
+
+    CharBuffer packedChars() {
+        return chars.duplicate();
+    }
+
+    /** 從整個字典均勻抽一個字。 */
+    public String pick(Random random) {
+        int n = size();
+        return n == 0 ? null : get(random.nextInt(n));
+    }
+
+    /**
+     * 從長度 [minLen, maxLen] 均勻抽一個字。區間內沒有字時往外擴張
+     * （先往長的方向，再往短的方向），不會悄悄退回任意長度。
+     */
+    public String pick(int minLen, int maxLen, Random random, RecentWindow recent) {
+        if (size() == 0) {
+            return null;
+        }
+        int lo = start(minLen);
+        int hi = end(maxLen);
+        while (lo == hi) {
+            if (maxLen <= maxLength()) {
+                hi = end(++maxLen);
+            } else if (minLen > 0) {
+                lo = start(--minLen);
+            } else {
+                return null;
+            }
+        }
+        return get(pickIndex(lo, hi, random, recent));
+    }
+
+    /** 依權重選擇區間後抽字；所有區間都沒有字時回傳 null。 */
+    public String pick(Band[] bands, Random random, RecentWindow recent) {
+        double total = 0;
+        for (Band b : bands) {
+            if (count(b.minLen, b.maxLen) > 0) {
+                total += b.weight;
+            }
+        }
+        if (total <= 0) {
+            return null;
+        }
+        double r = random.nextDouble() * total;
+        Band chosen = null;
+        for (Band b : bands) {
+            if (count(b.minLen, b.maxLen) > 0) {
+                chosen = b;
+                r -= b.weight;
+                if (r < 0) {
+                    break;
+                }
+            }
+        }
+        return get(pickIndex(start(chosen.minLen), end(chosen.maxLen), random, recent));
+    }
+
+    private int pickIndex(int lo, int hi, Random random, RecentWindow recent) {
+        int span = hi - lo;
+        int idx = lo + random.nextInt(span);
+        if (recent != null) {
+            // 區間比視窗大才重抽，否則必然重複；重抽次數有上限，維持 O(1)
+            if (span > recent.filled) {
+                for (int i = 0; i < RecentWindow.MAX_RETRIES && recent.contains(idx); i++) {
+                    idx = lo + random.nextInt(span);
+                }
+            }
+            recent.remember(idx);
+        }
+        return idx;
+    }
+
+    private int start(int minLen) {
+        return offsets[clamp(minLen)];
+    }
+
+    private int end(int maxLen) {
+        return offsets[clamp(maxLen + 1)];
+    }
+
+    private int clamp(int len) {
+        return Math.max(0, Math.min(len, offsets.length - 1));
+    }
+}
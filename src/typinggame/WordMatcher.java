@@ -0,0 +1,322 @@
+package typinggame;
+
+import java.util.Arrays;
+
+/**
+ * Incremental prefix matcher over the words of all active obstacles (multi-target typing).
+ *
+ * 畫面上所有還沒打完的單字放在同一棵 trie 裡，每個節點記錄：
+ *   count     經過這個節點的單字數（0 代表這個前綴已經沒有目標）
+ *   minKey    子樹中最小的 key；key 依生成順序遞增，所以就是「最靠近玩家」的那個障礙物
+ * 每打一個字只需從目前節點走一步 ({@link #advance(char)})，與畫面上的單字數量無關。
+ * 新增 / 移除單字的成本是 O(單字長度)，只在障礙物生成或消失時發生。
+ *
+ * key 由呼叫端提供，必須嚴格遞增（GameEngine 使用障礙物的生成序號）。
+ */
+final class WordMatcher {
+
+    /** {@link #advance(char)} 的結果。 */
+    static final int MISMATCH = -1; // 沒有任何單字以目前輸入開頭
+    static final int PARTIAL = 0;   // 仍是某些單字的前綴
+    static final int COMPLETE = 1;  // 剛好打完鎖定的單字（可用 completedKey() 取得）
+
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+    private static final long NO_KEY = Long.MAX_VALUE;
+
+    // 字母對應到子節點欄位：a-z 固定在前 26 欄，其他字母出現時才加欄
+    private char[] extraChars = new char[0];
+    private int stride = 26;
+
+    // --- trie 節點（平行陣列） ---
+    private int[] children;   // node * stride + letter → 子節點，NONE 為沒有
+    private int[] parent;
+    private int[] count;
+    private long[] minKey;
+    private String[] minWord;
+    // 剛好在此結束的單字（同一個字可能同時出現多次），以 key 遞增的串列保存
+    private int[] endHead;
+    private int nodeCount;
+
+    // --- 結尾串列的節點池 ---
+    private long[] cellKey;
+    private String[] cellWord;
+    private int[] cellNext;
+    private int freeCell = NONE;
+    private int cellCount;
+
+    // --- 目前的輸入狀態 ---
+    private int state = ROOT;
+    private int depth;
+    private long completedKey = NO_KEY;
+
+    WordMatcher() {
+        children = new int[64 * stride];
+        Arrays.fill(children, NONE);
+        parent = new int[64];
+        count = new int[64];
+        minKey = new long[64];
+        minWord = new String[64];
+        endHead = new int[64];
+        cellKey = new long[16];
+        cellWord = new String[16];
+        cellNext = new int[16];
+        newNode(NONE);
+    }
+
+    // ------------------------------------------------------------------ 單字集合
+
+    /** 加入一個單字；key 必須大於之前加入過的所有 key。 */
+    void add(long key, String word) {
+        int node = ROOT;
+        touch(node, key, word);
+        for (int i = 0; i < word.length(); i++) {
+            int letter = letterIndex(Character.toLowerCase(word.charAt(i)), true);
+            int child = children[node * stride + letter];
+            if (child == NONE) {
+                child = newNode(node);
+                children[node * stride + letter] = child;
+            }
+            node = child;
+            touch(node, key, word);
+        }
+        appendEnd(node, key, word);
+    }
+
+    private void touch(int node, long key, String word) {
+        if (count[node]++ == 0 || key < minKey[node]) {
+            minKey[node] = key;
+            minWord[node] = word;
+        }
+    }
+
+    /** 移除之前以 key 加入的單字；不存在時不做事。目前輸入因此失去所有目標時會自動重設。 */
+    void remove(long key, String word) {
+        int node = find(word);
+        if (node == NONE || !removeEnd(node, key)) {
+            return;
+        }
+        // 由下往上：count 減一，最小 key 被移除的節點重新計算
+        for (int n = node; n != NONE; n = parent[n]) {
+            count[n]--;
+            if (minKey[n] == key) {
+                recomputeMin(n);
+            }
+        }
+        if (count[state] == 0) {
+            reset();
+        }
+    }
+
+    /** 清空所有單字（節點留著重複使用）。 */
+    void clear() {
+        for (int n = 0; n < nodeCount; n++) {
+            count[n] = 0;
+            minKey[n] = NO_KEY;
+            minWord[n] = null;
+            int c = endHead[n];
+            while (c != NONE) {
+                int next = cellNext[c];
+                freeCell(c);
+                c = next;
+            }
+            endHead[n] = NONE;
+        }
+        reset();
+    }
+
+    int size() {
+        return count[ROOT];
+    }
+
+    // ------------------------------------------------------------------ 輸入
+
+    /**
+     * 目前輸入再加上一個字母：O(1)。
+     * MISMATCH 時狀態不變（由呼叫端決定要不要 reset）；COMPLETE 時狀態回到起點。
+     * 只有打完的正是鎖定目標（此前綴下最靠近玩家的單字）才算 COMPLETE：例如 "health" 比 "he" 近時，
+     * 打到 h-e 仍是 PARTIAL，讓玩家把 health 打完，而不是清掉後面的 he。
+     */
+    int advance(char c) {
+        int letter = letterIndex(Character.toLowerCase(c), false);
+        int child = letter < 0 ? NONE : children[state * stride + letter];
+        if (child == NONE || count[child] == 0) {
+            return MISMATCH;
+        }
+        // 串列依 key 遞增，第一個就是在此結束的單字中最靠近玩家的（同一個字出現多次時也是）
+        if (endHead[child] != NONE && cellKey[endHead[child]] == minKey[child]) {
+            completedKey = cellKey[endHead[child]];
+            reset();
+            return COMPLETE;
+        }
+        state = child;
+        depth++;
+        return PARTIAL;
+    }
+
+    /** 退一格 (Backspace)。 */
+    void backspace() {
+        if (state != ROOT) {
+            state = parent[state];
+            depth--;
+        }
+    }
+
+    void reset() {
+        state = ROOT;
+        depth = 0;
+    }
+
+    /** 已輸入的字數。 */
+    int depth() {
+        return depth;
+    }
+
+    /** 上一次 COMPLETE 的單字 key。 */
+    long completedKey() {
+        return completedKey;
+    }
+
+    /** 目前鎖定的目標：符合輸入前綴、且最靠近玩家的單字；沒有輸入時就是最近的單字。 */
+    String lockedWord() {
+        return count[state] == 0 ? null : minWord[state];
+    }
+
+    long lockedKey() {
+        return count[state] == 0 ? NO_KEY : minKey[state];
+    }
+
+    // ------------------------------------------------------------------ 內部
+
+    private int find(String word) {
+        int node = ROOT;
+        for (int i = 0; i < word.length() && node != NONE; i++) {
+            int letter = letterIndex(Character.toLowerCase(word.charAt(i)), false);
+            node = letter < 0 ? NONE : children[node * stride + letter];
+        }
+        return node;
+    }
+
+    private void recomputeMin(int node) {
+        long best = NO_KEY;
+        String bestWord = null;
+        if (endHead[node] != NONE) {
+            best = cellKey[endHead[node]];
+            bestWord = cellWord[endHead[node]];
+        }
+        int base = node * stride;
+        for (int i = 0; i < stride; i++) {
+            int child = children[base + i];
+            if (child != NONE && count[child] > 0 && minKey[child] < best) {
+                best = minKey[child];
+                bestWord = minWord[child];
+            }
+        }
+        minKey[node] = best;
+        minWord[node] = bestWord;
+    }
+
+    private int letterIndex(char c, boolean create) {
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a';
+        }
+        for (int i = 0; i < extraChars.length; i++) {
+            if (extraChars[i] == c) {
+                return 26 + i;
+            }
+        }
+        if (!create) {
+            return -1;
+        }
+        // 新的字母：每個節點多一欄（很少發生，只在生成障礙物時）
+        extraChars = Arrays.copyOf(extraChars, extraChars.length + 1);
+        extraChars[extraChars.length - 1] = c;
+        restride(stride + 1);
+        return stride - 1;
+    }
+
+    private void restride(int newStride) {
+        int[] wider = new int[parent.length * newStride];
+        Arrays.fill(wider, NONE);
+        for (int n = 0; n < nodeCount; n++) {
+            System.arraycopy(children, n * stride, wider, n * newStride, stride);
+        }
+        children = wider;
+        stride = newStride;
+    }
+
+    private int newNode(int parentNode) {
+        if (nodeCount == parent.length) {
+            int cap = parent.length * 2;
+            int[] wider = new int[cap * stride];
+            Arrays.fill(wider, NONE);
+            System.arraycopy(children, 0, wider, 0, children.length);
+            children = wider;
+            parent = Arrays.copyOf(parent, cap);
+            count = Arrays.copyOf(count, cap);
+            minKey = Arrays.copyOf(minKey, cap);
+            minWord = Arrays.copyOf(minWord, cap);
+            endHead = Arrays.copyOf(endHead, cap);
+        }
+        int n = nodeCount++;
+        parent[n] = parentNode;
+        count[n] = 0;
+        minKey[n] = NO_KEY;
+        endHead[n] = NONE;
+        return n;
+    }
+
+    private void appendEnd(int node, long key, String word) {
+        int cell = allocCell();
+        cellKey[cell] = key;
+        cellWord[cell] = word;
+        cellNext[cell] = NONE;
+        // key 遞增，接在串列最後
+        if (endHead[node] == NONE) {
+            endHead[node] = cell;
+        } else {
+            int c = endHead[node];
+            while (cellNext[c] != NONE) {
+                c = cellNext[c];
+            }
+            cellNext[c] = cell;
+        }
+    }
+
+    private boolean removeEnd(int node, long key) {
+        int prev = NONE;
+        for (int c = endHead[node]; c != NONE; prev = c, c = cellNext[c]) {
+            if (cellKey[c] == key) {
+                if (prev == NONE) {
+                    endHead[node] = cellNext[c];
+                } else {
+                    cellNext[prev] = cellNext[c];
+                }
+                freeCell(c);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int allocCell() {
+        if (freeCell != NONE) {
+            int c = freeCell;
+            freeCell = cellNext[c];
+            return c;
+        }
+        if (cellCount == cellKey.length) {
+            int cap = cellCount * 2;
+            cellKey = Arrays.copyOf(cellKey, cap);
+            cellWord = Arrays.copyOf(cellWord, cap);
+            cellNext = Arrays.copyOf(cellNext, cap);
+        }
+        return cellCount++;
+    }
+
+    private void freeCell(int c) {
+        cellWord[c] = null;
+        cellNext[c] = freeCell;
+        freeCell = c;
+    }
+}